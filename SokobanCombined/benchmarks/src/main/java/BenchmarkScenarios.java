@@ -0,0 +1,100 @@
+import sokoban.bench.Scenario;
+import sokoban.bench.ScenarioFactory;
+
+// makes the levels the benchmarks run on. A level is a square of the given size
+// walled in on every side, with the player in the top left corner facing along the
+// given axis. Ahead of the player is nothing for a plain move, a box for a push, or
+// a run of ice up to the far wall for an ice move. A yellow trophy sits next to a
+// yellow target, so the level is not won.
+public class BenchmarkScenarios implements ScenarioFactory {
+  public Scenario create(String kind, String axis, int size) {
+    if (size < 8) {
+      throw new IllegalArgumentException("a benchmark level needs at least 8 rows");
+    }
+    boolean vertical;
+    if (axis.equals("horizontal")) {
+      vertical = false;
+    }
+    else if (axis.equals("vertical")) {
+      vertical = true;
+    }
+    else {
+      throw new IllegalArgumentException("not an axis: " + axis);
+    }
+
+    char[][] ground = new char[size][size];
+    char[][] content = new char[size][size];
+    for (int y = 0; y < size; y += 1) {
+      for (int x = 0; x < size; x += 1) {
+        ground[y][x] = '_';
+        boolean edge = y == 0 || x == 0 || y == size - 1 || x == size - 1;
+        content[y][x] = edge ? 'W' : '_';
+      }
+    }
+    content[1][1] = '>';
+    ground[size - 2][size - 2] = 'Y';
+    content[size - 3][size - 2] = 'y';
+
+    int dy = vertical ? 1 : 0;
+    int dx = vertical ? 0 : 1;
+    if (kind.equals("push")) {
+      content[1 + dy][1 + dx] = 'B';
+    }
+    else if (kind.equals("ice")) {
+      for (int k = 1; k < size - 2; k += 1) {
+        ground[1 + (k * dy)][1 + (k * dx)] = 'I';
+      }
+    }
+    else if (!kind.equals("plain")) {
+      throw new IllegalArgumentException("not a kind of move: " + kind);
+    }
+    return new LevelScenario(join(ground), join(content), vertical);
+  }
+
+  // returns the rows of the given grid joined by newlines, as a Level reads them
+  static String join(char[][] grid) {
+    StringBuilder text = new StringBuilder();
+    for (int y = 0; y < grid.length; y += 1) {
+      if (y > 0) {
+        text.append('\n');
+      }
+      text.append(grid[y]);
+    }
+    return text.toString();
+  }
+}
+
+// represents a level prepared for benchmarking, along with the strings it was built
+// from and the direction of its move
+class LevelScenario implements Scenario {
+  String ground;
+  String content;
+  boolean vertical;
+  Level level;
+
+  LevelScenario(String ground, String content, boolean vertical) {
+    this.ground = ground;
+    this.content = content;
+    this.vertical = vertical;
+    this.level = new Level(ground, content);
+  }
+
+  public Object build() {
+    return new Level(this.ground, this.content);
+  }
+
+  public Object move() {
+    if (this.vertical) {
+      return this.level.newLevelVertical(1, 0);
+    }
+    return this.level.newLevelHorizontal(0, 1);
+  }
+
+  public boolean levelWon() {
+    return this.level.levelWon();
+  }
+
+  public Object render() {
+    return this.level.render();
+  }
+}
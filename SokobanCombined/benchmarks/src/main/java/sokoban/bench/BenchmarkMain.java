@@ -0,0 +1,23 @@
+package sokoban.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// runs the benchmarks with the GC profiler always on, so every result comes with its
+// allocation rate (gc.alloc.rate.norm is the bytes allocated per operation). Any JMH
+// command line options are passed along, for example a regular expression to run
+// only some of the benchmarks, or -rf json -rff baseline.json to save a baseline
+public class BenchmarkMain {
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,95 @@
+package sokoban.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// the baseline benchmarks of a Level: building one from strings, moving the player,
+// checking for a win and rendering. Every benchmark returns its result so JMH keeps
+// the work from being optimized away
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LevelBenchmarks {
+
+  // a level of each size, for the benchmarks that only depend on its size
+  @State(Scope.Benchmark)
+  public static class Sized {
+    @Param({ "8", "16", "32", "64" })
+    public int size;
+
+    Scenario scenario;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.scenario = ScenarioFactory.load().create("plain", "horizontal", this.size);
+    }
+  }
+
+  // a level for each kind of move along each axis
+  @State(Scope.Benchmark)
+  public static class Moving {
+    @Param({ "plain", "push", "ice" })
+    public String kind;
+
+    @Param({ "horizontal", "vertical" })
+    public String axis;
+
+    @Param({ "8", "32" })
+    public int size;
+
+    Scenario scenario;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.scenario = ScenarioFactory.load().create(this.kind, this.axis, this.size);
+    }
+  }
+
+  // a level of each size small enough to render many times a second
+  @State(Scope.Benchmark)
+  public static class Rendered {
+    @Param({ "8", "16", "32" })
+    public int size;
+
+    Scenario scenario;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.scenario = ScenarioFactory.load().create("plain", "horizontal", this.size);
+    }
+  }
+
+  @Benchmark
+  public Object construct(Sized state) {
+    return state.scenario.build();
+  }
+
+  @Benchmark
+  public Object move(Moving state) {
+    return state.scenario.move();
+  }
+
+  @Benchmark
+  public boolean levelWon(Sized state) {
+    return state.scenario.levelWon();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object render(Rendered state) {
+    return state.scenario.render();
+  }
+}
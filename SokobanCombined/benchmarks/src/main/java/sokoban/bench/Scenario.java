@@ -0,0 +1,20 @@
+package sokoban.bench;
+
+// represents one level prepared for benchmarking, with the operations the benchmarks
+// measure. The game lives in the unnamed package, which no named package can refer
+// to, and JMH refuses benchmarks in the unnamed package, so the benchmarks reach the
+// game only through this interface. Results are returned as Objects for the
+// benchmarks to hand to a Blackhole.
+public interface Scenario {
+  // returns a new level built from the strings of this scenario's level
+  Object build();
+
+  // returns the level after this scenario's move is made on its level
+  Object move();
+
+  // returns true if this scenario's level is won
+  boolean levelWon();
+
+  // returns the image of this scenario's level
+  Object render();
+}
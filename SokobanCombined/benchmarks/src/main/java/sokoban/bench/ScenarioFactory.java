@@ -0,0 +1,25 @@
+package sokoban.bench;
+
+// represents a maker of benchmark scenarios, implemented in the unnamed package next
+// to the game by BenchmarkScenarios
+public interface ScenarioFactory {
+  // the name of the class that implements this interface next to the game
+  String IMPLEMENTATION = "BenchmarkScenarios";
+
+  // returns a scenario on a square level with the given number of rows and columns,
+  // where the player makes a move of the given kind ("plain", "push" or "ice") along
+  // the given axis ("horizontal" or "vertical")
+  Scenario create(String kind, String axis, int size);
+
+  // returns the factory next to the game. The lookup happens once per benchmark
+  // setup, so the benchmarks themselves only pay for an interface call
+  static ScenarioFactory load() {
+    try {
+      return (ScenarioFactory) Class.forName(IMPLEMENTATION).getDeclaredConstructor()
+          .newInstance();
+    }
+    catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("cannot load " + IMPLEMENTATION, e);
+    }
+  }
+}
@@ -0,0 +1,416 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import tester.Tester;
+
+// represents the outcome of loading a level pack in bulk: its levels in the order of
+// the pack, and how long loading them took
+class BulkLoad {
+  ArrayList<PackLevel> levels;
+  // the size of the pack in bytes, and the number of chunks it was split into
+  long bytes;
+  int chunks;
+  int threads;
+  // the time loading took in nanoseconds
+  long nanos;
+
+  BulkLoad(ArrayList<PackLevel> levels, long bytes, int chunks, int threads, long nanos) {
+    this.levels = levels;
+    this.bytes = bytes;
+    this.chunks = chunks;
+    this.threads = threads;
+    this.nanos = nanos;
+  }
+
+  // returns the number of levels loaded per second
+  public double levelsPerSecond() {
+    if (this.nanos == 0) {
+      return 0;
+    }
+    return this.levels.size() * 1e9 / this.nanos;
+  }
+
+  // returns the number of megabytes of the pack loaded per second
+  public double megabytesPerSecond() {
+    if (this.nanos == 0) {
+      return 0;
+    }
+    return this.bytes * 1e9 / this.nanos / (1024 * 1024);
+  }
+
+  // returns a one line summary of this load
+  public String report() {
+    return this.levels.size() + " levels in " + this.chunks + " chunks on " + this.threads
+        + " threads (" + Math.round(this.levelsPerSecond()) + " levels/s, "
+        + Math.round(this.megabytesPerSecond()) + " MB/s)";
+  }
+}
+
+// loads every level of an XSB level pack on several threads at once. The pack is
+// mapped into memory and cut into chunks of about the same size, each of which starts
+// right at the first row of a board, so no level is split between chunks. A first
+// pass over the chunks on a fork/join pool counts their lines, and a second parses
+// them, each chunk with a PackScanner of its own that starts at the line and offset
+// of the chunk in the pack. A chunk is read from just after the board before it, so
+// the comment that names its first level is seen, and the levels of every chunk are
+// put back together in the order of the pack. The levels, their titles, lines and
+// offsets are the same as XsbImporter gives, only sooner; each board is built straight
+// from its rows into the flat planes of a Board, without the grid of cells
+// Utils.configureBoard makes or the dead squares of a Level.
+class BulkLoader {
+  int threads;
+  // the size of a chunk before it is moved to the start of a board
+  int chunkBytes;
+
+  BulkLoader(int threads, int chunkBytes) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("the loader needs at least one thread");
+    }
+    if (chunkBytes <= 0) {
+      throw new IllegalArgumentException("a chunk must hold at least one byte");
+    }
+    this.threads = threads;
+    this.chunkBytes = chunkBytes;
+  }
+
+  // creates a loader with a thread for every processor, which splits packs into
+  // chunks of 1 MB
+  BulkLoader() {
+    this(Runtime.getRuntime().availableProcessors(), 1 << 20);
+  }
+
+  // returns every level of the pack in the given file, which is read as single bytes
+  // and must be under 2 GB
+  public BulkLoad load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("the pack is over 2 GB");
+      }
+      return this.load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  // returns every level of the pack in the given bytes, from 0 to the limit
+  public BulkLoad load(ByteBuffer pack) {
+    long began = System.nanoTime();
+    int[] starts = this.chunkStarts(pack);
+    int chunks = starts.length - 1;
+    int[] lines = new int[chunks + 1];
+    ArrayList<PackLevel> levels;
+    ForkJoinPool pool = new ForkJoinPool(this.threads);
+    try {
+      pool.invoke(new CountLines(pack, starts, lines, 0, chunks));
+      // turn the lines of each chunk into the line each chunk starts on
+      int line = 1;
+      for (int i = 0; i <= chunks; i += 1) {
+        int count = lines[i];
+        lines[i] = line;
+        line += count;
+      }
+      levels = pool.invoke(new LoadChunks(pack, starts, lines, 0, chunks));
+    }
+    catch (IllegalArgumentException e) {
+      // a task that fails on another thread is rethrown wrapped in a copy of its
+      // exception, once for every join on the way up, and the message of the original
+      // is the one that names the line
+      IllegalArgumentException original = e;
+      while (original.getCause() instanceof IllegalArgumentException) {
+        original = (IllegalArgumentException) original.getCause();
+      }
+      throw original;
+    }
+    finally {
+      pool.shutdown();
+    }
+    // only now is the number of each level in the whole pack known
+    for (int i = 0; i < levels.size(); i += 1) {
+      PackLevel level = levels.get(i);
+      if (level.title == null || level.title.isEmpty()) {
+        level.title = "level " + (i + 1);
+      }
+    }
+    return new BulkLoad(levels, pack.limit(), chunks, this.threads,
+        System.nanoTime() - began);
+  }
+
+  // returns the offsets the chunks of the given pack start at, each at the first row
+  // of a board except the first, followed by the end of the pack
+  int[] chunkStarts(ByteBuffer pack) {
+    int[] starts = new int[16];
+    int count = 1;
+    int last = 0;
+    for (long at = this.chunkBytes; at < pack.limit(); at += this.chunkBytes) {
+      int start = boardStart(pack, (int) Math.max(at, last + 1L));
+      if (start == pack.limit()) {
+        break;
+      }
+      if (count + 1 == starts.length) {
+        starts = Arrays.copyOf(starts, starts.length * 2);
+      }
+      starts[count] = start;
+      count += 1;
+      last = start;
+    }
+    starts[count] = pack.limit();
+    return Arrays.copyOf(starts, count + 1);
+  }
+
+  // returns the offset of the first line at or after the given offset that is the
+  // first row of a board, or the end of the pack if there is none
+  static int boardStart(ByteBuffer pack, int at) {
+    int start = at;
+    if (start > 0 && pack.get(start - 1) != '\n') {
+      start = lineEnd(pack, start) + 1;
+    }
+    boolean previous = start > 0 && start <= pack.limit()
+        && isBoardRow(pack, lineBefore(pack, start), start - 1);
+    while (start < pack.limit()) {
+      int end = lineEnd(pack, start);
+      boolean board = isBoardRow(pack, start, end);
+      if (board && !previous) {
+        return start;
+      }
+      previous = board;
+      start = end + 1;
+    }
+    return pack.limit();
+  }
+
+  // returns the offset of the line just after the last row of a board before the
+  // given offset of the start of a line, or 0 if no board comes before it
+  static int afterLastBoard(ByteBuffer pack, int start) {
+    int at = start;
+    while (at > 0) {
+      int before = lineBefore(pack, at);
+      if (isBoardRow(pack, before, at - 1)) {
+        return at;
+      }
+      at = before;
+    }
+    return 0;
+  }
+
+  // returns the offset of the newline that ends the line at the given offset, or the
+  // end of the pack if the line is the last and has none
+  static int lineEnd(ByteBuffer pack, int from) {
+    int at = from;
+    while (at < pack.limit() && pack.get(at) != '\n') {
+      at += 1;
+    }
+    return at;
+  }
+
+  // returns the offset of the line before the line at the given offset
+  static int lineBefore(ByteBuffer pack, int start) {
+    int at = start - 1;
+    while (at > 0 && pack.get(at - 1) != '\n') {
+      at -= 1;
+    }
+    return at;
+  }
+
+  // determines if the bytes from the given offset up to the given end are a row of a
+  // board, ignoring carriage returns like a PackScanner does
+  static boolean isBoardRow(ByteBuffer pack, int from, int to) {
+    boolean wall = false;
+    for (int i = from; i < to; i += 1) {
+      int c = pack.get(i) & 0xFF;
+      if (c == '\r') {
+        continue;
+      }
+      if (c >= 128 || XsbImporter.CONTENT_CODES[c] == -1) {
+        return false;
+      }
+      wall = wall || c == '#';
+    }
+    return wall;
+  }
+
+  // returns the number of newlines between the given offsets
+  static int newlines(ByteBuffer pack, int from, int to) {
+    int count = 0;
+    for (int i = from; i < to; i += 1) {
+      if (pack.get(i) == '\n') {
+        count += 1;
+      }
+    }
+    return count;
+  }
+}
+
+// counts the newlines in a range of the chunks of a pack, splitting the range in half
+// until it is one chunk, and stores each count at the index of its chunk
+class CountLines extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  ByteBuffer pack;
+  int[] starts;
+  int[] lines;
+  int from;
+  int to;
+
+  CountLines(ByteBuffer pack, int[] starts, int[] lines, int from, int to) {
+    this.pack = pack;
+    this.starts = starts;
+    this.lines = lines;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: counts the newlines of each chunk in this range
+  protected void compute() {
+    if (this.to - this.from > 1) {
+      int middle = (this.from + this.to) >>> 1;
+      invokeAll(new CountLines(this.pack, this.starts, this.lines, this.from, middle),
+          new CountLines(this.pack, this.starts, this.lines, middle, this.to));
+    }
+    else if (this.to > this.from) {
+      this.lines[this.from] = BulkLoader.newlines(this.pack, this.starts[this.from],
+          this.starts[this.from + 1]);
+    }
+  }
+}
+
+// parses a range of the chunks of a pack, splitting the range in half until it is
+// one chunk, and returns their levels in order. The level that is not named by a
+// comment or a title is left with a null title, since its number in the pack is not
+// known yet
+class LoadChunks extends RecursiveTask<ArrayList<PackLevel>> {
+  private static final long serialVersionUID = 1L;
+
+  ByteBuffer pack;
+  int[] starts;
+  // the line of the pack each chunk starts on
+  int[] lines;
+  int from;
+  int to;
+
+  LoadChunks(ByteBuffer pack, int[] starts, int[] lines, int from, int to) {
+    this.pack = pack;
+    this.starts = starts;
+    this.lines = lines;
+    this.from = from;
+    this.to = to;
+  }
+
+  // returns the levels of the chunks in this range
+  protected ArrayList<PackLevel> compute() {
+    if (this.to - this.from > 1) {
+      int middle = (this.from + this.to) >>> 1;
+      LoadChunks left = new LoadChunks(this.pack, this.starts, this.lines, this.from, middle);
+      left.fork();
+      ArrayList<PackLevel> right = new LoadChunks(this.pack, this.starts, this.lines, middle,
+          this.to).compute();
+      ArrayList<PackLevel> levels = left.join();
+      levels.addAll(right);
+      return levels;
+    }
+
+    ArrayList<PackLevel> levels = new ArrayList<PackLevel>();
+    if (this.to == this.from) {
+      return levels;
+    }
+    int start = this.starts[this.from];
+    int end = this.starts[this.from + 1];
+    // the comments between the board before this chunk and its first board name it
+    int read = BulkLoader.afterLastBoard(this.pack, start);
+    int line = this.lines[this.from] - BulkLoader.newlines(this.pack, read, start);
+    PackScanner scanner = new PackScanner(levels::add, line, read, false, true);
+    for (int i = read; i < end; i += 1) {
+      scanner.accept((char) (this.pack.get(i) & 0xFF));
+    }
+    scanner.finish();
+    return levels;
+  }
+}
+
+class ExamplesBulkLoader {
+  ExamplesXsbImporter packs = new ExamplesXsbImporter();
+
+  // returns a pack of the given number of copies of the small pack, each followed by
+  // a level without a title
+  String bigPack(int copies) {
+    StringBuilder pack = new StringBuilder();
+    for (int i = 0; i < copies; i += 1) {
+      pack.append(this.packs.pack).append("\r\n\n")
+          .append("#####\n" + "#@ $.#\n" + "#####\n")
+          .append(i % 3 == 0 ? "\n" : "");
+    }
+    return pack.toString();
+  }
+
+  // returns a buffer of the given pack text
+  ByteBuffer bytes(String pack) {
+    return ByteBuffer.wrap(pack.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  boolean testBulkMatchesImporter(Tester t) {
+    String pack = this.bigPack(150);
+    ArrayList<PackLevel> expected = new XsbImporter().parse(pack);
+    BulkLoad small = new BulkLoader(4, 100).load(this.bytes(pack));
+    BulkLoad one = new BulkLoader(1, 1 << 20).load(this.bytes(pack));
+    return t.checkExpect(expected.size(), 600)
+        && t.checkExpect(small.levels, expected)
+        && t.checkExpect(small.chunks > 100, true)
+        && t.checkExpect(one.levels, expected)
+        && t.checkExpect(one.chunks, 1)
+        && t.checkExpect(small.levels.get(3).title, "level 4")
+        && t.checkExpect(small.levels.get(599).title, "level 600")
+        && t.checkExpect(small.levels.get(4).title, "First");
+  }
+
+  boolean testBulkChunkStarts(Tester t) {
+    ByteBuffer pack = this.bytes(this.packs.pack);
+    int first = this.packs.pack.indexOf("#####");
+    int second = this.packs.pack.indexOf("  ####");
+    int third = this.packs.pack.indexOf("####\n#@*#");
+    return t.checkExpect(new BulkLoader(2, 1).chunkStarts(pack),
+        new int[] { 0, first, second, third, pack.limit() })
+        && t.checkExpect(new BulkLoader(2, second + 1).chunkStarts(pack),
+            new int[] { 0, third, pack.limit() })
+        && t.checkExpect(BulkLoader.afterLastBoard(pack, third),
+            this.packs.pack.indexOf("Title:"))
+        && t.checkExpect(BulkLoader.afterLastBoard(pack, first), 0)
+        && t.checkExpect(new BulkLoader(2, 10).load(this.bytes("")).levels.size(), 0);
+  }
+
+  boolean testBulkLoadFile(Tester t) throws IOException {
+    Path file = Files.createTempFile("pack", ".sok");
+    try {
+      String pack = this.bigPack(40);
+      Files.write(file, pack.getBytes(StandardCharsets.ISO_8859_1));
+      BulkLoad load = new BulkLoader(3, 512).load(file);
+      return t.checkExpect(load.levels, new XsbImporter().readAll(file))
+          && t.checkExpect(load.bytes, (long) pack.length())
+          && t.checkExpect(load.levelsPerSecond() > 0, true)
+          && t.checkExpect(load.report().startsWith("160 levels in "), true)
+          && t.checkExpect(load.report().contains(" levels/s, "), true);
+    }
+    finally {
+      Files.delete(file);
+    }
+  }
+
+  boolean testBulkErrors(Tester t) {
+    String pack = this.bigPack(30) + "\n####\n" + "#@@#\n" + "####\n\n" + this.bigPack(30);
+    int line = this.bigPack(30).split("\n", -1).length + 1;
+    return t.checkException(
+        new IllegalArgumentException("line " + line + ": the level has 2 players instead of one"),
+        new BulkLoader(4, 64), "load", this.bytes(pack))
+        && t.checkConstructorException(
+            new IllegalArgumentException("the loader needs at least one thread"), "BulkLoader",
+            0, 10)
+        && t.checkConstructorException(
+            new IllegalArgumentException("a chunk must hold at least one byte"), "BulkLoader",
+            2, 0);
+  }
+}
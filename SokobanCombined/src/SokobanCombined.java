@@ -18,6 +18,9 @@ interface IGroundContent {
   // to slide
   boolean canSlide();
 
+  // returns the code that represents this piece of ground content on a packed Board
+  byte groundCode();
+
 }
 
 //represents a blank piece of ground content
@@ -37,16 +40,26 @@ class BlankGroundContent implements IGroundContent {
   public boolean canSlide() {
     return false;
   }
+
+  // returns the code of a blank piece of ground content
+  public byte groundCode() {
+    return Board.GROUND_BLANK;
+  }
 }
 
 //represents a target, a piece of ground content, that is not movable and is of a given color
 class Target implements IGroundContent {
-  String color;
+  PieceColor color;
 
-  Target(String color) {
+  Target(PieceColor color) {
     this.color = color;
   }
 
+  // creates a target of the color with the given name
+  Target(String color) {
+    this(PieceColor.fromName(color));
+  }
+
   // Checks to see if the target is empty, meaning it does not have a a trophy of
   // the same color on top of it
   public boolean emptyTarget(ILevelContent c) {
@@ -55,27 +68,18 @@ class Target implements IGroundContent {
 
   // renders this Target as an image
   public WorldImage renderPiece() {
-    if (this.color.equals("green")) {
-      return new FromFileImage("green_target.png");
-    }
-    else if (this.color.equals("red")) {
-      return new FromFileImage("red_target.png");
-    }
-    else if (this.color.equals("blue")) {
-      return new FromFileImage("blue_target.png");
-    }
-    else if (this.color.equals("yellow")) {
-      return new FromFileImage("yellow_target.png");
-    }
-    else {
-      throw new RuntimeException("Cannot render!");
-    }
+    return new FromFileImage(this.color.targetImage);
   }
 
   // returns false since a player or movable object cannot slide on a target
   public boolean canSlide() {
     return false;
   }
+
+  // returns the code of a target, which is offset by the index of its color
+  public byte groundCode() {
+    return (byte) (Board.GROUND_TARGET + this.color.ordinal());
+  }
 }
 
 // represents a piece of ice on which a player and movable objects can slide
@@ -96,6 +100,11 @@ class Ice implements IGroundContent {
     return true;
   }
 
+  // returns the code of a piece of ice
+  public byte groundCode() {
+    return Board.GROUND_ICE;
+  }
+
 }
 
 // represents a piece of the level content in Sokoban
@@ -117,13 +126,16 @@ interface ILevelContent {
   ILevelContent changeToGiven(ILevelContent given);
 
   // Returns true if the color does not match the given color
-  boolean wrongColor(String color);
+  boolean wrongColor(PieceColor color);
 
   // Returns true if this level content can be pushed by a player
   boolean canBePushed();
 
   // Returns true if this level content is a hole
   boolean canBeLost();
+
+  // returns the code that represents this level content on a packed Board
+  byte contentCode();
 }
 
 // to represent a piece of level content in a Sokoban level
@@ -146,9 +158,9 @@ abstract class ALevelContent implements ILevelContent {
     return false;
   }
 
-  // returns a BlankLevelContnet
+  // returns the shared BlankLevelContnet
   public ILevelContent changeToBlank() {
-    return new BlankLevelContent();
+    return Pieces.BLANK;
   }
 
   // changes this level content to the given level content
@@ -159,7 +171,7 @@ abstract class ALevelContent implements ILevelContent {
   // Returns true since a every class except trophies not have a color and
   // therefore is the
   // wrong color and the method is overridden in the trophy case
-  public boolean wrongColor(String color) {
+  public boolean wrongColor(PieceColor color) {
     return true;
   }
 
@@ -190,44 +202,45 @@ class BlankLevelContent extends ALevelContent {
   public boolean canHoldPlayer() {
     return true;
   }
+
+  // returns the code of a blank piece of level content
+  public byte contentCode() {
+    return Board.CONTENT_BLANK;
+  }
 }
 
 // represents a trophy, a piece of level content, that is movable and is of a given color
 class Trophy extends ALevelContent {
-  String color;
+  PieceColor color;
 
-  Trophy(String color) {
+  Trophy(PieceColor color) {
     this.color = color;
   }
 
+  // creates a trophy of the color with the given name
+  Trophy(String color) {
+    this(PieceColor.fromName(color));
+  }
+
   // renders this Trophy as an image
   public WorldImage renderPiece() {
-    if (this.color.equals("green")) {
-      return new FromFileImage("green_trophy.png");
-    }
-    else if (this.color.equals("red")) {
-      return new FromFileImage("red_trophy.png");
-    }
-    else if (this.color.equals("blue")) {
-      return new FromFileImage("blue_trophy.png");
-    }
-    else if (this.color.equals("yellow")) {
-      return new FromFileImage("yellow_trophy.png");
-    }
-    else {
-      throw new RuntimeException("Cannot render!");
-    }
+    return new FromFileImage(this.color.trophyImage);
   }
 
   // Returns true if the trophy is the wrong color and false if the colors match
-  public boolean wrongColor(String color) {
-    return !(this.color.equals(color));
+  public boolean wrongColor(PieceColor color) {
+    return this.color != color;
   }
 
   // A trophy can be pushed by the player
   public boolean canBePushed() {
     return true;
   }
+
+  // returns the code of a trophy, which is offset by the index of its color
+  public byte contentCode() {
+    return (byte) (Board.CONTENT_TROPHY + this.color.ordinal());
+  }
 }
 
 // represents a box, a piece of level content, that is movable
@@ -242,6 +255,11 @@ class Box extends ALevelContent {
   public boolean canBePushed() {
     return true;
   }
+
+  // returns the code of a box
+  public byte contentCode() {
+    return Board.CONTENT_BOX;
+  }
 }
 
 // represents a wall, a piece of ground content, that is not movable
@@ -251,6 +269,11 @@ class Wall extends ALevelContent {
   public WorldImage renderPiece() {
     return new FromFileImage("wall.png");
   }
+
+  // returns the code of a wall
+  public byte contentCode() {
+    return Board.CONTENT_WALL;
+  }
 }
 
 // represents a player, a piece of level content, that is movable in the given direction
@@ -265,6 +288,11 @@ class Player extends ALevelContent {
   public boolean movableOnKey() {
     return true;
   }
+
+  // returns the code of a player
+  public byte contentCode() {
+    return Board.CONTENT_PLAYER;
+  }
 }
 
 // represents a hole, a piece of level content, that is not movable and 
@@ -280,6 +308,91 @@ class Hole extends ALevelContent {
   public boolean canBeLost() {
     return true;
   }
+
+  // returns the code of a hole
+  public byte contentCode() {
+    return Board.CONTENT_HOLE;
+  }
+}
+
+// represents the colors of targets and trophies; a trophy satisfies a target of the
+// same color, and a color's ordinal is its offset in the codes of a packed Board
+enum PieceColor {
+  YELLOW("yellow"), GREEN("green"), BLUE("blue"), RED("red");
+
+  String name;
+  String targetImage;
+  String trophyImage;
+
+  PieceColor(String name) {
+    this.name = name;
+    this.targetImage = name + "_target.png";
+    this.trophyImage = name + "_trophy.png";
+  }
+
+  // returns the color with the given name
+  static PieceColor fromName(String name) {
+    for (PieceColor color : PieceColor.values()) {
+      if (color.name.equals(name)) {
+        return color;
+      }
+    }
+    throw new IllegalArgumentException("not a color of a target or trophy: " + name);
+  }
+}
+
+// the shared instances of every piece of ground and level content. Pieces hold no
+// state besides their color, so every board and cell uses these instead of making
+// its own, and they are looked up by their code on a packed Board
+class Pieces {
+  static final IGroundContent BLANK_GROUND = new BlankGroundContent();
+  static final IGroundContent ICE = new Ice();
+  static final ILevelContent BLANK = new BlankLevelContent();
+  static final ILevelContent WALL = new Wall();
+  static final ILevelContent PLAYER = new Player();
+  static final ILevelContent BOX = new Box();
+  static final ILevelContent HOLE = new Hole();
+
+  // the ground content and level content pieces, indexed by their code
+  static final IGroundContent[] GROUND = Pieces.groundByCode();
+  static final ILevelContent[] CONTENT = Pieces.contentByCode();
+
+  // returns every piece of ground content at the index of its code
+  static IGroundContent[] groundByCode() {
+    PieceColor[] colors = PieceColor.values();
+    IGroundContent[] ground = new IGroundContent[Board.GROUND_TARGET + colors.length];
+    ground[Board.GROUND_BLANK] = BLANK_GROUND;
+    ground[Board.GROUND_ICE] = ICE;
+    for (PieceColor color : colors) {
+      ground[Board.GROUND_TARGET + color.ordinal()] = new Target(color);
+    }
+    return ground;
+  }
+
+  // returns every piece of level content at the index of its code
+  static ILevelContent[] contentByCode() {
+    PieceColor[] colors = PieceColor.values();
+    ILevelContent[] content = new ILevelContent[Board.CONTENT_TROPHY + colors.length];
+    content[Board.CONTENT_BLANK] = BLANK;
+    content[Board.CONTENT_WALL] = WALL;
+    content[Board.CONTENT_PLAYER] = PLAYER;
+    content[Board.CONTENT_BOX] = BOX;
+    content[Board.CONTENT_HOLE] = HOLE;
+    for (PieceColor color : colors) {
+      content[Board.CONTENT_TROPHY + color.ordinal()] = new Trophy(color);
+    }
+    return content;
+  }
+
+  // returns the shared target of the given color
+  static IGroundContent target(PieceColor color) {
+    return GROUND[Board.GROUND_TARGET + color.ordinal()];
+  }
+
+  // returns the shared trophy of the given color
+  static ILevelContent trophy(PieceColor color) {
+    return CONTENT[Board.CONTENT_TROPHY + color.ordinal()];
+  }
 }
 
 // represents a unit of the board containing a piece of ground content and a piece of level 
@@ -309,7 +422,7 @@ class Cell {
 
   // creates a new cell with this cell's contents edited
   public Cell editCellCompleteBlank() {
-    return new Cell(this.y, this.x, new BlankGroundContent(), this.l.changeToBlank());
+    return new Cell(this.y, this.x, Pieces.BLANK_GROUND, this.l.changeToBlank());
   }
 
   // creates a new cell with this cell's contents edited
@@ -320,7 +433,7 @@ class Cell {
   // creates a new cell with this cell's contents edited
   public Cell editCellGivenBlankGround(Cell given) {
     if (this.cellCanSlide()) {
-      return new Cell(this.y, this.x, new BlankGroundContent(), this.l.changeToGiven(given.l));
+      return new Cell(this.y, this.x, Pieces.BLANK_GROUND, this.l.changeToGiven(given.l));
     }
     else {
       return new Cell(this.y, this.x, this.g, this.l.changeToGiven(given.l));
@@ -355,490 +468,1264 @@ class Cell {
   }
 }
 
-// represents a level in the game Sokoban
+// represents an immutable sequence of bytes stored as a tree of fixed-size chunks, so
+// that a changed copy shares every chunk it does not touch with the original
+class Plane {
+  // a chunk (leaf) holds 1 << LEAF_BITS bytes and a node has 1 << BRANCH_BITS children
+  static final int LEAF_BITS = 6;
+  static final int BRANCH_BITS = 5;
+  static final int LEAF_MASK = (1 << LEAF_BITS) - 1;
+  static final int BRANCH_MASK = (1 << BRANCH_BITS) - 1;
+
+  int length;
+  // the number of levels of nodes above the chunks
+  int depth;
+  // a byte[] chunk when the depth is 0, otherwise an Object[] node
+  Object root;
+
+  Plane(int length, int depth, Object root) {
+    this.length = length;
+    this.depth = depth;
+    this.root = root;
+  }
+
+  // creates a plane holding a copy of the given bytes
+  Plane(byte[] bytes) {
+    this.length = bytes.length;
+    int chunks = Math.max(1, (bytes.length + LEAF_MASK) >>> LEAF_BITS);
+    int depth = 0;
+    while ((1 << (BRANCH_BITS * depth)) < chunks) {
+      depth += 1;
+    }
+    this.depth = depth;
+    this.root = this.build(bytes, depth, 0);
+  }
 
-// INVARIANT: 
-class Level {
-  int height;
-  int width;
-  ArrayList<ArrayList<Cell>> board;
-  Posn playerPos;
+  // builds the subtree with the given depth whose first chunk is the given chunk
+  Object build(byte[] bytes, int depth, int firstChunk) {
+    if (depth == 0) {
+      byte[] chunk = new byte[1 << LEAF_BITS];
+      int start = firstChunk << LEAF_BITS;
+      if (start < bytes.length) {
+        System.arraycopy(bytes, start, chunk, 0, Math.min(chunk.length, bytes.length - start));
+      }
+      return chunk;
+    }
+    Object[] node = new Object[1 << BRANCH_BITS];
+    int span = 1 << (BRANCH_BITS * (depth - 1));
+    for (int i = 0; i < node.length; i += 1) {
+      int chunk = firstChunk + i * span;
+      if ((chunk << LEAF_BITS) < this.length || (chunk == 0)) {
+        node[i] = this.build(bytes, depth - 1, chunk);
+      }
+    }
+    return node;
+  }
 
-  // main constructor that initializes the level with a given board (which is an
-  // ArrayList<ArrayList<Cell>>)
-  Level(int height, int width, ArrayList<ArrayList<Cell>> board, Posn playerPos) {
-    this.height = height;
-    this.width = width;
-    this.board = board;
-    this.playerPos = playerPos;
+  // returns the byte at the given index
+  public byte get(int i) {
+    Object node = this.root;
+    int chunk = i >>> LEAF_BITS;
+    for (int level = this.depth - 1; level >= 0; level -= 1) {
+      node = ((Object[]) node)[(chunk >>> (BRANCH_BITS * level)) & BRANCH_MASK];
+    }
+    return ((byte[]) node)[i & LEAF_MASK];
   }
 
-  // other constructor that takes in two level-description strings (one
-  // representing ground content and the other representing the level content) and
-  // populates the board
-  Level(String groundCont, String levelCont) {
-    this.height = new Utils().getHeight(groundCont);
-    this.width = new Utils().getWidth(groundCont);
-    this.board = new Utils().configureBoard(groundCont, levelCont, 0, groundCont.indexOf("\n"));
-    this.playerPos = new Posn(getPlayerInBoard().x, getPlayerInBoard().y);
+  // returns a plane with the given bytes changed at the first n of the given indices,
+  // which must be sorted; only the chunks and nodes on the paths to those indices
+  // are copied
+  public Plane with(int[] indices, byte[] values, int n) {
+    if (n == 0) {
+      return this;
+    }
+    return new Plane(this.length, this.depth,
+        this.set(this.root, this.depth - 1, indices, values, 0, n));
   }
 
-  // returns true if every target has a trophy on top of it, whose color matches
-  // the target’s color
-  public boolean levelWon() {
-    // this nested for loop is used to iterate through the board. The outer loop
-    // iterates over the rows. The inner loop iterates within the rows and checks if
-    // each cell contains a target without a matching trophy. If the condition is
-    // true, then the game has not been won and the method returns false.
-    // The loop correctly iterates using the board's height and width.
-    for (int i = 0; i <= this.height; i += 1) {
-      for (int j = 0; j <= this.width; j += 1) {
-        Cell curr = this.board.get(i).get(j);
-        // returns false if the current cell's ground content is an empty target or the
-        // trophy color doesn't match the target color
-        if (curr.g.emptyTarget(curr.l)) {
-          return false;
-        }
+  // returns a copy of the given subtree with the changes between from (inclusive)
+  // and to (exclusive) made in it
+  Object set(Object node, int level, int[] indices, byte[] values, int from, int to) {
+    if (level < 0) {
+      byte[] chunk = ((byte[]) node).clone();
+      for (int k = from; k < to; k += 1) {
+        chunk[indices[k] & LEAF_MASK] = values[k];
       }
+      return chunk;
     }
-    // returns true if we iterated through and there are no targets without trophies
-    // of a matching color
-    return true;
+    Object[] copy = ((Object[]) node).clone();
+    int shift = LEAF_BITS + BRANCH_BITS * level;
+    int k = from;
+    // changes to the same child are next to each other since the indices are sorted,
+    // so each child on a changed path is copied exactly once
+    while (k < to) {
+      int child = (indices[k] >>> shift) & BRANCH_MASK;
+      int end = k + 1;
+      while (end < to && ((indices[end] >>> shift) & BRANCH_MASK) == child) {
+        end += 1;
+      }
+      copy[child] = this.set(copy[child], level - 1, indices, values, k, end);
+      k = end;
+    }
+    return copy;
   }
 
-  // renders the level as a WorldImage
-  public WorldImage render() {
-    WorldImage finalImage = new EmptyImage();
-    // this nested for loop is used to iterate through the board. The outer loop
-    // iterates over the rows and places the row images above one another. The inner
-    // loop iterates within the rows and places the cells (converted to images)
-    // beside one another. The loop correctly iterates using the board's height and
-    // width.
+  // returns the indices, in increasing order, at which this plane and the given
+  // plane of the same length hold different bytes. Chunks and nodes the two planes
+  // share are skipped without being read, so comparing a board with the board one
+  // move later only visits the paths that move copied
+  public int[] diff(Plane other) {
+    if (other.length != this.length) {
+      throw new IllegalArgumentException("planes of different lengths cannot be compared");
+    }
+    ArrayList<Integer> found = new ArrayList<Integer>();
+    this.diff(this.root, other.root, this.depth - 1, 0, found);
+    int[] indices = new int[found.size()];
+    for (int k = 0; k < indices.length; k += 1) {
+      indices[k] = found.get(k);
+    }
+    return indices;
+  }
 
-    for (int i = 0; i <= this.height; i += 1) {
-      WorldImage rowImage = new EmptyImage();
-      for (int j = 0; j <= this.width; j += 1) {
-        rowImage = new BesideImage(rowImage,
-            new Utils().cellToWorldImage(this.board.get(i).get(j)));
+  // EFFECT: adds to found the indices at which the given subtrees, whose first byte
+  // is at the given index, hold different bytes
+  void diff(Object mine, Object theirs, int level, int first, ArrayList<Integer> found) {
+    if (mine == theirs) {
+      return;
+    }
+    if (level < 0) {
+      byte[] a = (byte[]) mine;
+      byte[] b = (byte[]) theirs;
+      for (int i = 0; i < a.length && first + i < this.length; i += 1) {
+        if (a[i] != b[i]) {
+          found.add(first + i);
+        }
       }
-      finalImage = new AboveImage(finalImage, rowImage);
+      return;
+    }
+    Object[] a = (Object[]) mine;
+    Object[] b = (Object[]) theirs;
+    int span = 1 << (LEAF_BITS + BRANCH_BITS * level);
+    for (int child = 0; child < a.length && a[child] != null; child += 1) {
+      this.diff(a[child], b[child], level - 1, first + child * span, found);
     }
-
-    return finalImage;
   }
 
-  // returns a new level with this height and this width and an edited board
-  // according to the horizontal move
-  public Level newLevelHorizontal(int dy, int dx) {
-
-    int playerY = this.playerPos.y;
-    int playerX = this.playerPos.x;
-
-    return this.editBoardHorizontal(playerY, playerX, dy, dx);
+  // returns the bytes of this plane as a new array
+  public byte[] toArray() {
+    byte[] bytes = new byte[this.length];
+    this.copy(this.root, this.depth - 1, 0, bytes);
+    return bytes;
   }
 
-  // returns a new level with this height and this width and an edited board
-  // according to the vertical move
-  public Level newLevelVertical(int dy, int dx) {
-
-    int playerY = this.playerPos.y;
-    int playerX = this.playerPos.x;
-
-    return this.editBoardVertical(playerY, playerX, dy, dx);
+  // EFFECT: copies the chunks of the given subtree, whose first byte is at the given
+  // index, into the given bytes, a whole chunk at a time
+  void copy(Object node, int level, int first, byte[] bytes) {
+    if (level < 0) {
+      System.arraycopy((byte[]) node, 0, bytes, first,
+          Math.min(1 << LEAF_BITS, this.length - first));
+      return;
+    }
+    Object[] children = (Object[]) node;
+    int span = 1 << (LEAF_BITS + BRANCH_BITS * level);
+    for (int child = 0; child < children.length && first + child * span < this.length;
+        child += 1) {
+      this.copy(children[child], level - 1, first + child * span, bytes);
+    }
   }
+}
 
-  public ArrayList<ArrayList<Cell>> moveToBlankHorizontal(ArrayList<ArrayList<Cell>> newBoard,
-      int y, int x, int dy, int dx) {
-
-    ArrayList<Cell> newCurrRow = newBoard.get(y);
-
-    Cell curr = newBoard.get(y).get(x);
-    Cell oneAwayHorizontal = newBoard.get(y).get(x + dx);
-
-    Cell newCurr = curr.editCellBlank();
-    Cell newOneAway = oneAwayHorizontal.editCellGiven(curr);
-
-    newCurrRow.set(x, newCurr);
-    newCurrRow.set(x + dx, newOneAway);
-    newBoard.set(y, newCurrRow);
-
-    return newBoard;
+// represents the packed planes of a Sokoban board: every tile is one byte of ground
+// content and one byte of level content, stored row by row at index y * cols + x.
+// A board is never changed, a BoardEditor makes a new board that shares the parts
+// of the planes it did not change
+class Board implements TileCodes {
+  // codes for the ground plane, a target's code is offset by the index of its color
+  static final byte GROUND_BLANK = 0;
+  static final byte GROUND_ICE = 1;
+  static final byte GROUND_TARGET = 2;
+
+  // codes for the content plane, a trophy's code is offset by the index of its color
+  static final byte CONTENT_BLANK = 0;
+  static final byte CONTENT_WALL = 1;
+  static final byte CONTENT_PLAYER = 2;
+  static final byte CONTENT_BOX = 3;
+  static final byte CONTENT_HOLE = 4;
+  static final byte CONTENT_TROPHY = 5;
+
+  int rows;
+  int cols;
+  Plane ground;
+  Plane content;
+  // the index of the tile holding the player, or -1 if there is no player
+  int player;
+  // the number of targets of each color without a trophy of that color on top
+  int[] unsatisfied;
+  // the Zobrist hash of every non-blank code on this board, see zobrist
+  long hash;
+
+  Board(int rows, int cols, Plane ground, Plane content, int player, int[] unsatisfied,
+      long hash) {
+    if (ground.length != rows * cols || content.length != rows * cols) {
+      throw new IllegalArgumentException("planes do not match the dimensions of the board");
+    }
+    this.rows = rows;
+    this.cols = cols;
+    this.ground = ground;
+    this.content = content;
+    this.player = player;
+    this.unsatisfied = unsatisfied;
+    this.hash = hash;
   }
 
-  public ArrayList<ArrayList<Cell>> pushHorizontal(ArrayList<ArrayList<Cell>> newBoard, int y,
-      int x, int dy, int dx) {
+  // creates a board from the given planes, finding the player, counting the empty
+  // targets and hashing every tile in them
+  Board(int rows, int cols, Plane ground, Plane content) {
+    this(rows, cols, ground, content, Board.findPlayer(content),
+        Board.countUnsatisfied(ground, content), Board.hashOf(ground, content));
+  }
 
-    ArrayList<Cell> newCurrRow = newBoard.get(y);
+  // creates a board from the given arrays of ground and content codes
+  Board(int rows, int cols, byte[] ground, byte[] content) {
+    this(rows, cols, new Plane(ground), new Plane(content));
+  }
 
-    Cell curr = newBoard.get(y).get(x);
-    Cell oneAwayHorizontal = newBoard.get(y).get(x + dx);
-    Cell twoAwayHorizontal = newBoard.get(y).get(x + (2 * dx));
+  // returns the index of the tile at the given coordinate in the planes
+  public int index(int y, int x) {
+    return y * this.cols + x;
+  }
 
-    Cell newCurr = curr.editCellBlank();
-    Cell newOneAway = oneAwayHorizontal.editCellGiven(curr);
-    Cell newTwoAway = twoAwayHorizontal.editCellGiven(oneAwayHorizontal);
+  // determines if the given coordinate is on this board
+  public boolean inBounds(int y, int x) {
+    return y >= 0 && y < this.rows && x >= 0 && x < this.cols;
+  }
 
-    newCurrRow.set(x, newCurr);
-    newCurrRow.set(x + dx, newOneAway);
-    newCurrRow.set(x + (2 * dx), newTwoAway);
-    newBoard.set(y, newCurrRow);
+  // returns the ground code of the tile at the given coordinate
+  public byte groundAt(int y, int x) {
+    return this.ground.get(this.index(y, x));
+  }
 
-    return newBoard;
+  // returns the content code of the tile at the given coordinate
+  public byte contentAt(int y, int x) {
+    return this.content.get(this.index(y, x));
   }
 
-  public ArrayList<ArrayList<Cell>> moveToBlankVertical(ArrayList<ArrayList<Cell>> newBoard, int y,
-      int x, int dy, int dx) {
+  // returns the ground code of the tile at the given index
+  public byte ground(int index) {
+    return this.ground.get(index);
+  }
 
-    ArrayList<Cell> newCurrRow = newBoard.get(y);
-    ArrayList<Cell> newRowOneAway = newBoard.get(y + dy);
+  // returns the content code of the tile at the given index
+  public byte content(int index) {
+    return this.content.get(index);
+  }
 
-    Cell curr = newBoard.get(y).get(x);
-    Cell oneAwayVertical = newBoard.get(y + dy).get(x);
+  // returns an editor that makes changed copies of this board
+  public BoardEditor edit() {
+    return new BoardEditor(this);
+  }
 
-    Cell newCurr = curr.editCellBlank();
-    Cell newOneAway = oneAwayVertical.editCellGiven(curr);
+  // returns the index of the tile holding the player, or -1 if there is no player
+  public int findPlayer() {
+    return this.player;
+  }
 
-    newCurrRow.set(x, newCurr);
-    newRowOneAway.set(x, newOneAway);
-    newBoard.set(y, newCurrRow);
-    newBoard.set(y + dy, newRowOneAway);
+  // returns the index of the first tile of the given content plane holding the
+  // player, or -1 if there is no player
+  static int findPlayer(Plane content) {
+    for (int i = 0; i < content.length; i += 1) {
+      if (content.get(i) == CONTENT_PLAYER) {
+        return i;
+      }
+    }
+    return -1;
+  }
 
-    return newBoard;
+  // returns the number of targets of each color in the given planes that do not
+  // have a trophy of their color on top
+  static int[] countUnsatisfied(Plane ground, Plane content) {
+    int[] unsatisfied = new int[PieceColor.values().length];
+    for (int i = 0; i < ground.length; i += 1) {
+      byte g = ground.get(i);
+      if (emptyTarget(g, content.get(i))) {
+        unsatisfied[g - GROUND_TARGET] += 1;
+      }
+    }
+    return unsatisfied;
   }
 
-  public ArrayList<ArrayList<Cell>> pushVertical(ArrayList<ArrayList<Cell>> newBoard, int y, int x,
-      int dy, int dx) {
+  // returns the Zobrist key of the given code on the tile with the given index of
+  // the ground plane (if ground is true) or the content plane. A blank has no key,
+  // and every other key is a fixed pseudo-random 64-bit value: the tile, plane and
+  // code are scrambled with the SplitMix64 finalizer instead of being looked up in a
+  // table, so boards of any size share the same keys
+  static long zobrist(int index, byte code, boolean ground) {
+    if (code == 0) {
+      return 0;
+    }
+    long z = ((long) index << 5 | (ground ? 16 : 0) | code) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  // returns the Zobrist hash of the given planes: the exclusive or of the keys of
+  // every code on them. This covers the position of every box, trophy (with its
+  // color), hole and the player, so a move only has to update the keys of the
+  // tiles it changes
+  static long hashOf(Plane ground, Plane content) {
+    long hash = 0;
+    for (int i = 0; i < ground.length; i += 1) {
+      hash ^= zobrist(i, ground.get(i), true) ^ zobrist(i, content.get(i), false);
+    }
+    return hash;
+  }
 
-    ArrayList<Cell> newCurrRow = newBoard.get(y);
-    ArrayList<Cell> newRowOneAway = newBoard.get(y + dy);
-    ArrayList<Cell> newRowTwoAway = newBoard.get(y + (2 * dy));
+  // returns the number of targets on this board without a trophy of their color
+  public int unsatisfiedTargets() {
+    int total = 0;
+    for (int count : this.unsatisfied) {
+      total += count;
+    }
+    return total;
+  }
 
-    Cell curr = newBoard.get(y).get(x);
-    Cell oneAwayVertical = newBoard.get(y + dy).get(x);
-    Cell twoAwayVertical = newBoard.get(y + (2 * dy)).get(x);
+  // returns the number of targets of the given color index on this board without a
+  // trophy of that color
+  public int unsatisfiedTargets(int color) {
+    return this.unsatisfied[color];
+  }
 
-    Cell newCurr = curr.editCellBlank();
-    Cell newOneAway = oneAwayVertical.editCellGiven(curr);
-    Cell newTwoAway = twoAwayVertical.editCellGiven(oneAwayVertical);
+  // returns the board after the player tries to move one tile in the direction
+  // (dy, dx), or this board if the player cannot move or there is no player
+  public Board move(int dy, int dx) {
+    if (this.player == -1) {
+      return this;
+    }
+    return this.move(this.player / this.cols, this.player % this.cols, dy, dx);
+  }
+
+  // returns the board after the content at (y, x) tries to move one tile in the
+  // direction (dy, dx). The whole move, including every tile slid across on ice, is
+  // resolved in one loop over an editor and committed once.
+  // A step succeeds in the first of these cases that holds, where one and two are
+  // the tiles one and two steps ahead of the mover:
+  // - one is blank ice: the mover slides onto it and keeps going
+  // - one is a pushable piece on ice and two is blank: the piece is pushed onto two
+  //   and the mover keeps going behind it
+  // - one is a pushable piece and two is blank ice: the piece slides along the ice
+  //   on its own and the mover takes its place
+  // - one is blank: the mover steps onto it
+  // - one is a pushable piece and two is blank: the piece is pushed onto two
+  // - one is a hole: the mover falls in and both disappear
+  // - one is a pushable piece and two is a hole: the piece fills the hole
+  // As with the original board, a mover never moves when two is off the board.
+  public Board move(int y, int x, int dy, int dx) {
+    BoardEditor editor = this.edit();
+    this.resolve(editor, y, x, dy, dx);
+    return editor.commit();
+  }
+
+  // EFFECT: makes the move of the content at (y, x) one tile in the direction
+  // (dy, dx) to the given tiles, which have the dimensions of this board, following
+  // the rules described at move. Only the dimensions of this board are used, so the
+  // same rules drive both an editor of this board and the flat tiles of a GameEngine
+  void resolve(Tiles editor, int y, int x, int dy, int dx) {
+    int start = this.index(y, x);
+    byte mover = editor.content(start);
+    boolean moved = false;
+    boolean lost = false;
+    boolean sliding = true;
+
+    while (sliding && this.inBounds(y + (2 * dy), x + (2 * dx))) {
+      int one = this.index(y + dy, x + dx);
+      int two = this.index(y + (2 * dy), x + (2 * dx));
+      byte oneAwayGround = editor.ground(one);
+      byte oneAway = editor.content(one);
+      byte twoAwayGround = editor.ground(two);
+      byte twoAway = editor.content(two);
+      // the mover itself is only placed once the move is over, so the tile it steps
+      // onto is left blank
+      sliding = false;
+
+      // if the adjacent tile is ice, the mover slides on
+      if (canSlide(oneAwayGround) && canHoldPlayer(oneAway)) {
+        sliding = true;
+      }
+      // if the adjacent tile is ice with a pushable piece and the next tile is blank
+      else if (canBePushed(oneAway) && canSlide(oneAwayGround) && canHoldPlayer(twoAway)) {
+        editor.setContent(two, oneAway);
+        editor.setContent(one, CONTENT_BLANK);
+        sliding = true;
+      }
+      // if the adjacent tile can be pushed and the next tile is ice
+      else if (canBePushed(oneAway) && canSlide(twoAwayGround) && canHoldPlayer(twoAway)) {
+        editor.setContent(one, CONTENT_BLANK);
+        sliding = this.slidePiece(editor, y + dy, x + dx, dy, dx, oneAway);
+      }
+      // if the adjacent tile is blank, the mover steps onto it and stops
+      else if (canHoldPlayer(oneAway)) {
+        sliding = false;
+      }
+      // if the adjacent tile can be pushed and the next tile is blank
+      else if (canBePushed(oneAway) && canHoldPlayer(twoAway)) {
+        editor.setContent(two, oneAway);
+        editor.setContent(one, CONTENT_BLANK);
+      }
+      // if the adjacent tile is a hole, the mover is lost along with it
+      else if (canBeLost(oneAway)) {
+        editor.setContent(one, CONTENT_BLANK);
+        lost = true;
+        break;
+      }
+      // if the adjacent tile can be pushed and the next tile is a hole
+      else if (canBePushed(oneAway) && canBeLost(twoAway)) {
+        editor.setContent(two, CONTENT_BLANK);
+        editor.setContent(one, CONTENT_BLANK);
+      }
+      // the mover is blocked
+      else {
+        break;
+      }
 
-    newCurrRow.set(x, newCurr);
-    newRowOneAway.set(x, newOneAway);
-    newRowTwoAway.set(x, newTwoAway);
-    newBoard.set(y, newCurrRow);
-    newBoard.set(y + dy, newRowOneAway);
-    newBoard.set(y + (2 * dy), newRowTwoAway);
+      y += dy;
+      x += dx;
+      moved = true;
+    }
 
-    return newBoard;
+    if (lost || moved) {
+      editor.setContent(start, CONTENT_BLANK);
+    }
+    if (moved && !lost) {
+      editor.setContent(this.index(y, x), mover);
+    }
   }
 
-  // Creates a new level with correctly updated cells based on the current board
-  // and the dy and dx which moves the player horizontally on the board
-  public Level editBoardHorizontal(int y, int x, int dy, int dx) {
-
-    if (y + (2 * dy) > this.height || x + (2 * dx) > this.width || x + (2 * dx) < 0
-        || y + (2 * dy) < 0) {
-      return this;
+  // EFFECT: slides the given piece, which was just pushed off the tile (y, x) onto
+  // the ice ahead of it, and returns true if the mover following it keeps sliding.
+  // The piece slides across the run of blank ice and stops on the tile after it if
+  // that tile is blank, fills it if it is a hole, and otherwise stops on the last
+  // piece of ice. While another pushable piece sits on ice further ahead, the piece
+  // only moves one tile so that the mover keeps pushing it.
+  boolean slidePiece(Tiles editor, int y, int x, int dy, int dx, byte piece) {
+    int run = 1;
+    while (this.inBounds(y + ((run + 1) * dy), x + ((run + 1) * dx))
+        && canSlide(editor.ground(this.index(y + ((run + 1) * dy), x + ((run + 1) * dx))))
+        && canHoldPlayer(editor.content(this.index(y + ((run + 1) * dy), x + ((run + 1) * dx))))) {
+      run += 1;
     }
 
-    int w = this.width;
-    int h = this.height;
-    Posn playerPosn = this.playerPos;
-
-    ArrayList<ArrayList<Cell>> newBoard = new ArrayList<ArrayList<Cell>>();
+    int lastIce = this.index(y + (run * dy), x + (run * dx));
+    if (this.iceWithMovable(editor, y + dy, x + dx, dy, dx)) {
+      editor.setContent(this.index(y + dy, x + dx), piece);
+      return true;
+    }
+    else if (!this.inBounds(y + ((run + 1) * dy), x + ((run + 1) * dx))) {
+      editor.setContent(lastIce, piece);
+    }
+    else {
+      int afterIce = this.index(y + ((run + 1) * dy), x + ((run + 1) * dx));
+      if (canHoldPlayer(editor.content(afterIce))) {
+        editor.setContent(afterIce, piece);
+      }
+      else if (canBeLost(editor.content(afterIce))) {
+        editor.setGround(afterIce, GROUND_BLANK);
+        editor.setContent(afterIce, CONTENT_BLANK);
+      }
+      else {
+        editor.setContent(lastIce, piece);
+      }
+    }
+    return false;
+  }
 
-    for (ArrayList<Cell> AL : this.board) {
-      ArrayList<Cell> newRow = new ArrayList<Cell>();
-      for (Cell c : AL) {
-        Cell newCell = new Cell(c.y, c.x, c.g, c.l);
-        newRow.add(newCell);
+  // determines if there is a pushable piece on ice anywhere from the tile (y, x) to
+  // the edge of the board in the direction (dy, dx)
+  boolean iceWithMovable(Tiles editor, int y, int x, int dy, int dx) {
+    for (; this.inBounds(y, x); y += dy, x += dx) {
+      int i = this.index(y, x);
+      if (canBePushed(editor.content(i)) && canSlide(editor.ground(i))) {
+        return true;
       }
-      newBoard.add(newRow);
     }
+    return false;
+  }
 
-    ArrayList<Cell> newCurrRow = newBoard.get(y);
+  // determines if the given ground code can cause movable content to slide
+  static boolean canSlide(byte g) {
+    return g == GROUND_ICE;
+  }
 
-    Cell curr = newBoard.get(y).get(x);
-    Cell oneAwayHorizontal = newBoard.get(y).get(x + dx);
-    Cell twoAwayHorizontal = newBoard.get(y).get(x + (2 * dx));
+  // determines if the given content code can hold a player
+  static boolean canHoldPlayer(byte c) {
+    return c == CONTENT_BLANK;
+  }
 
-    // if the adjacent cell is ice
-    if (oneAwayHorizontal.cellCanSlide() && oneAwayHorizontal.cellCanHoldPlayer()) {
+  // determines if the given content code can be pushed by a player
+  static boolean canBePushed(byte c) {
+    return c == CONTENT_BOX || c >= CONTENT_TROPHY;
+  }
 
-      newBoard = this.moveToBlankHorizontal(newBoard, y, x, dy, dx);
-      Level tempLevel = new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+  // determines if the given content code can cause movable content to be lost
+  static boolean canBeLost(byte c) {
+    return c == CONTENT_HOLE;
+  }
 
-      return tempLevel.newLevelHorizontal(dy, dx);
+  // determines if the given ground code is a target without a trophy of the same
+  // color given as the content code on top of it
+  static boolean emptyTarget(byte g, byte c) {
+    return g >= GROUND_TARGET && c != CONTENT_TROPHY + (g - GROUND_TARGET);
+  }
 
-    }
-    // if the adjacent cell is ice and the next cell is blank
-    else if (oneAwayHorizontal.iceWithMovable() && twoAwayHorizontal.cellCanHoldPlayer()) {
+}
 
-      newBoard = this.pushHorizontal(newBoard, y, x, dy, dx);
-      Level tempLevel = new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+// represents the ground and content codes of each tile of a board by its index
+interface TileCodes {
+  // returns the ground code of the tile at the given index
+  byte ground(int index);
 
-      return tempLevel.newLevelHorizontal(dy, dx);
+  // returns the content code of the tile at the given index
+  byte content(int index);
+}
 
-    }
-    // if the adjacent cell can be pushed and the next cell is ice
-    else if (oneAwayHorizontal.cellCanBePushed() && twoAwayHorizontal.cellCanSlide()
-        && twoAwayHorizontal.cellCanHoldPlayer()) {
+// represents tiles that a move can be made on, which the move kernel of a Board reads
+// and changes
+interface Tiles extends TileCodes {
+  // EFFECT: changes the ground code of the tile at the given index
+  void setGround(int index, byte g);
 
-      int factor = this.countIceHorizontal(newCurrRow, dx) + 1;
-      Cell afterIce = newBoard.get(y).get(x + dx + (dx * factor));
+  // EFFECT: changes the content code of the tile at the given index
+  void setContent(int index, byte c);
+}
 
-      Cell newCurr = curr.editCellBlank();
-      Cell newOneAway = oneAwayHorizontal.editCellGiven(curr);
+// represents the pending changes to a Board: reads see the changes made so far, and
+// committing them makes a new board that copies only the changed paths of its planes
+class BoardEditor implements Tiles {
+  Board base;
+  // an open-addressing table of the changed tiles, a slot holds the index + 1 of
+  // its tile or 0 when it is empty
+  int[] slots;
+  byte[] grounds;
+  byte[] contents;
+  int size;
+  // the index of the tile holding the player after the pending changes
+  int player;
+
+  BoardEditor(Board base) {
+    this.base = base;
+    this.slots = new int[16];
+    this.grounds = new byte[16];
+    this.contents = new byte[16];
+    this.size = 0;
+    this.player = base.player;
+  }
+
+  // returns the slot of the given tile index, or the empty slot where it belongs
+  int slotOf(int index) {
+    int mask = this.slots.length - 1;
+    int hash = index * 0x9E3779B1;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (this.slots[slot] != 0 && this.slots[slot] != index + 1) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
 
-      newCurrRow.set(x, newCurr);
-      newCurrRow.set(x + dx, newOneAway);
+  // returns the pending ground code of the tile at the given index
+  public byte ground(int index) {
+    int slot = this.slotOf(index);
+    return this.slots[slot] == 0 ? this.base.ground.get(index) : this.grounds[slot];
+  }
 
-      if (afterIce.cellCanHoldPlayer() && !this.iceWithMovableHorizontal(newCurrRow, dx)) {
+  // returns the pending content code of the tile at the given index
+  public byte content(int index) {
+    int slot = this.slotOf(index);
+    return this.slots[slot] == 0 ? this.base.content.get(index) : this.contents[slot];
+  }
 
-        Cell newAfterIce = afterIce.editCellGivenBlankGround(oneAwayHorizontal);
-        newCurrRow.set(x + dx + (dx * factor), newAfterIce);
-        newBoard.set(y, newCurrRow);
+  // returns the pending ground code of the tile at the given coordinate
+  public byte groundAt(int y, int x) {
+    return this.ground(this.base.index(y, x));
+  }
 
-        return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
-      }
-      // if the adjacent cell is ice with a pushable object on it
-      else if (this.iceWithMovableHorizontal(newCurrRow, dx)) {
+  // returns the pending content code of the tile at the given coordinate
+  public byte contentAt(int y, int x) {
+    return this.content(this.base.index(y, x));
+  }
 
-        Cell newTwoAway = twoAwayHorizontal.editCellGiven(oneAwayHorizontal);
-        newCurrRow.set(x + (2 * dx), newTwoAway);
-        newBoard.set(y, newCurrRow);
+  // EFFECT: changes the pending ground code of the tile at the given index
+  public void setGround(int index, byte g) {
+    this.put(index, g, this.content(index));
+  }
 
-        Level tempLevel = new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+  // EFFECT: changes the pending content code of the tile at the given index
+  public void setContent(int index, byte c) {
+    this.put(index, this.ground(index), c);
+  }
 
-        return tempLevel.newLevelHorizontal(dy, dx);
-      }
-      else if (afterIce.cellCanBeLost() && !this.iceWithMovableHorizontal(newCurrRow, dx)) {
+  // EFFECT: changes the pending ground code of the tile at the given coordinate
+  public void setGround(int y, int x, byte g) {
+    this.setGround(this.base.index(y, x), g);
+  }
 
-        Cell newAfterIce = afterIce.editCellCompleteBlank();
-        newCurrRow.set(x + dx + (dx * factor), newAfterIce);
-        newBoard.set(y, newCurrRow);
+  // EFFECT: changes the pending content code of the tile at the given coordinate
+  public void setContent(int y, int x, byte c) {
+    this.setContent(this.base.index(y, x), c);
+  }
 
-        return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+  // EFFECT: records both codes of the tile at the given index, growing the table
+  // when it is half full
+  void put(int index, byte g, byte c) {
+    int slot = this.slotOf(index);
+    if (this.slots[slot] == 0) {
+      if ((this.size + 1) * 2 > this.slots.length) {
+        this.grow();
+        slot = this.slotOf(index);
       }
-      else {
-
-        Cell afterIceAlt = newBoard.get(y).get(x + (dx * factor));
-        Cell newAfterIce = afterIceAlt.editCellGiven(oneAwayHorizontal);
-        newCurrRow.set(x + (dx * factor), newAfterIce);
-        newBoard.set(y, newCurrRow);
+      this.slots[slot] = index + 1;
+      this.size += 1;
+    }
+    this.grounds[slot] = g;
+    this.contents[slot] = c;
+    if (c == Board.CONTENT_PLAYER) {
+      this.player = index;
+    }
+    else if (index == this.player) {
+      this.player = -1;
+    }
+  }
 
-        return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+  // EFFECT: doubles the capacity of the table of changed tiles
+  void grow() {
+    int[] oldSlots = this.slots;
+    byte[] oldGrounds = this.grounds;
+    byte[] oldContents = this.contents;
+    this.slots = new int[oldSlots.length * 2];
+    this.grounds = new byte[oldSlots.length * 2];
+    this.contents = new byte[oldSlots.length * 2];
+    for (int i = 0; i < oldSlots.length; i += 1) {
+      if (oldSlots[i] != 0) {
+        int slot = this.slotOf(oldSlots[i] - 1);
+        this.slots[slot] = oldSlots[i];
+        this.grounds[slot] = oldGrounds[i];
+        this.contents[slot] = oldContents[i];
       }
     }
-    // if the adjacent cell is blank
-    else if (oneAwayHorizontal.cellCanHoldPlayer()) {
-
-      newBoard = this.moveToBlankHorizontal(newBoard, y, x, dy, dx);
+  }
 
-      return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+  // returns the board with the pending changes made, or the original board if
+  // nothing actually changed
+  public Board commit() {
+    int[] indices = new int[this.size];
+    int n = 0;
+    for (int slot : this.slots) {
+      if (slot != 0) {
+        indices[n] = slot - 1;
+        n += 1;
+      }
     }
-    // if the adjacent cell is a content that can be pushed and the following cell
-    // is blank
-    else if (oneAwayHorizontal.cellCanBePushed() && twoAwayHorizontal.cellCanHoldPlayer()) {
-
-      newBoard = this.pushHorizontal(newBoard, y, x, dy, dx);
-
-      return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+    Arrays.sort(indices, 0, n);
+
+    // only the tiles whose codes differ from the base make it into the new planes,
+    // and only they can change the count of empty targets
+    int[] unsatisfied = this.base.unsatisfied.clone();
+    long hash = this.base.hash;
+    int[] groundIndices = new int[n];
+    byte[] groundValues = new byte[n];
+    int groundChanges = 0;
+    int[] contentIndices = new int[n];
+    byte[] contentValues = new byte[n];
+    int contentChanges = 0;
+    for (int k = 0; k < n; k += 1) {
+      int slot = this.slotOf(indices[k]);
+      byte oldGround = this.base.ground.get(indices[k]);
+      byte oldContent = this.base.content.get(indices[k]);
+      if (Board.emptyTarget(oldGround, oldContent)) {
+        unsatisfied[oldGround - Board.GROUND_TARGET] -= 1;
+      }
+      if (Board.emptyTarget(this.grounds[slot], this.contents[slot])) {
+        unsatisfied[this.grounds[slot] - Board.GROUND_TARGET] += 1;
+      }
+      if (this.grounds[slot] != oldGround) {
+        hash ^= Board.zobrist(indices[k], oldGround, true)
+            ^ Board.zobrist(indices[k], this.grounds[slot], true);
+        groundIndices[groundChanges] = indices[k];
+        groundValues[groundChanges] = this.grounds[slot];
+        groundChanges += 1;
+      }
+      if (this.contents[slot] != oldContent) {
+        hash ^= Board.zobrist(indices[k], oldContent, false)
+            ^ Board.zobrist(indices[k], this.contents[slot], false);
+        contentIndices[contentChanges] = indices[k];
+        contentValues[contentChanges] = this.contents[slot];
+        contentChanges += 1;
+      }
     }
-    // if the adjacent cell is a hole
-    else if (oneAwayHorizontal.cellCanBeLost()) {
 
-      Cell newCurr = curr.editCellBlank();
-      Cell newOneAway = oneAwayHorizontal.editCellBlank();
-
-      newCurrRow.set(x, newCurr);
-      newCurrRow.set(x + dx, newOneAway);
-      newBoard.set(y, newCurrRow);
-
-      return new Level(h, w, newBoard, new Posn(-1, -1));
+    if (groundChanges == 0 && contentChanges == 0) {
+      return this.base;
     }
-    // if the adjacent cell is a movable content and the following cell is a hole
-    else if (oneAwayHorizontal.cellCanBePushed() && twoAwayHorizontal.cellCanBeLost()) {
-
-      Cell newCurr = curr.editCellBlank();
-      Cell newOneAway = oneAwayHorizontal.editCellGiven(curr);
-      Cell newTwoAway = twoAwayHorizontal.editCellBlank();
+    return new Board(this.base.rows, this.base.cols,
+        this.base.ground.with(groundIndices, groundValues, groundChanges),
+        this.base.content.with(contentIndices, contentValues, contentChanges), this.player,
+        unsatisfied, hash);
+  }
+}
 
-      newCurrRow.set(x, newCurr);
-      newCurrRow.set(x + dx, newOneAway);
-      newCurrRow.set(x + (2 * dx), newTwoAway);
-      newBoard.set(y, newCurrRow);
+// represents the deadlock analysis of a board. The dead squares of each trophy color
+// are worked out once from the walls and targets, and then the analysis tells, for
+// any board with the same walls, whether it can no longer be won.
+// A trophy on a live square could still be pushed onto a target of its color if the
+// other pieces were out of the way. Going backwards from every target, a trophy could
+// have been pushed onto a live square from the tile behind it if both that tile and
+// the tile the player stood on are not walls. Holes count as floor, since another
+// piece may fill them first, and ice counts as floor too: a piece pushed onto ice
+// slides to the end of the run of ice or the tile after it, but another piece can
+// stop it on any tile of the run, and every end of a slide is also reached one
+// tile at a time. So only tiles that no push can ever lead from are dead.
+class Deadlocks {
+  // the dimensions of the boards this analysis is for
+  int rows;
+  int cols;
+  // live[c][i] is true if a trophy of the color with index c on the tile with index
+  // i could still reach a target of that color
+  boolean[][] live;
+
+  // builds the dead squares of every color for the walls and targets of the board
+  Deadlocks(Board board) {
+    this.rows = board.rows;
+    this.cols = board.cols;
+    this.live = new boolean[PieceColor.values().length][];
+    for (int color = 0; color < this.live.length; color += 1) {
+      this.live[color] = this.pullFromTargets(board, color);
+    }
+  }
 
-      return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+  // returns the tiles from which a trophy of the given color index could be pushed
+  // onto one of the targets of that color on the given board, by pulling it
+  // backwards from those targets
+  boolean[] pullFromTargets(Board board, int color) {
+    boolean[] live = new boolean[board.rows * board.cols];
+    int[] queue = new int[live.length];
+    int size = 0;
+    for (int i = 0; i < live.length; i += 1) {
+      if (board.ground.get(i) == Board.GROUND_TARGET + color) {
+        live[i] = true;
+        queue[size] = i;
+        size += 1;
+      }
     }
-    else {
-      return this;
+    for (int next = 0; next < size; next += 1) {
+      int y = queue[next] / board.cols;
+      int x = queue[next] % board.cols;
+      for (int d = 0; d < Solver.MOVES.length(); d += 1) {
+        int dy = Solver.DY[d];
+        int dx = Solver.DX[d];
+        // the trophy was pushed from (y - dy, x - dx) by a player on (y - 2dy, x - 2dx)
+        if (board.inBounds(y - (2 * dy), x - (2 * dx))
+            && board.contentAt(y - dy, x - dx) != Board.CONTENT_WALL
+            && board.contentAt(y - (2 * dy), x - (2 * dx)) != Board.CONTENT_WALL
+            && !live[board.index(y - dy, x - dx)]) {
+          live[board.index(y - dy, x - dx)] = true;
+          queue[size] = board.index(y - dy, x - dx);
+          size += 1;
+        }
+      }
     }
+    return live;
   }
 
-  // Creates a new level with correctly updated cells based on the current board
-  // and the dy and dx which moves the player vertically on the board
-  public Level editBoardVertical(int y, int x, int dy, int dx) {
+  // determines if a trophy of the given color index on the tile with the given index
+  // can never reach a target of its color
+  public boolean deadSquare(int color, int index) {
+    return !this.live[color][index];
+  }
 
-    int w = this.width;
-    int h = this.height;
-    Posn playerPosn = this.playerPos;
+  // determines if the given board can no longer be won
+  public boolean isLost(Board board) {
+    return this.isLost(board, board.player, board.unsatisfied);
+  }
 
-    // condition to ensure that you cannot move the player out of bounds
-    if (y + (2 * dy) > this.height || x + (2 * dx) > this.width || x + (2 * dx) < 0
-        || y + (2 * dy) < 0) {
-      return this;
+  // determines if the given tiles, with the player on the tile with the given index
+  // (or -1 if there is none) and the given number of empty targets of each color,
+  // can no longer be won. This looks at every tile
+  public boolean isLost(TileCodes tiles, int player, int[] unsatisfied) {
+    if (player == -1) {
+      return true;
     }
-
-    // avoid aliasing
-    ArrayList<ArrayList<Cell>> newBoard = new ArrayList<ArrayList<Cell>>();
-
-    for (ArrayList<Cell> AL : this.board) {
-      ArrayList<Cell> newRow = new ArrayList<Cell>();
-      for (Cell c : AL) {
-        Cell newCell = new Cell(c.y, c.x, c.g, c.l);
-        newRow.add(newCell);
+    BitSet frozen = new BitSet(this.rows * this.cols);
+    TileSet asWall = new TileSet();
+    TileSet group = new TileSet();
+    for (int i = 0; i < this.rows * this.cols; i += 1) {
+      // a piece found frozen along with one before it is not checked again
+      if (Board.canBePushed(tiles.content(i)) && !frozen.get(i)) {
+        this.freeze(tiles, i, frozen, asWall, group);
       }
-      newBoard.add(newRow);
     }
+    return this.lost(tiles, unsatisfied, frozen, true);
+  }
 
-    ArrayList<Cell> newCurrRow = newBoard.get(y);
-    ArrayList<Cell> newRowOneAway = newBoard.get(y + dy);
-    ArrayList<Cell> newRowTwoAway = newBoard.get(y + (2 * dy));
+  // determines if the board after a move from the given board, which could still be
+  // won, can no longer be won
+  public boolean isLost(Board before, Board after) {
+    int[] changed = before.content.diff(after.content);
+    byte[] was = new byte[changed.length];
+    for (int k = 0; k < changed.length; k += 1) {
+      was[k] = before.content.get(changed[k]);
+    }
+    return this.isLost(after, after.player, after.unsatisfied, changed, was, changed.length);
+  }
+
+  // determines if the given tiles, reached by moves from tiles that could still be
+  // won, can no longer be won, where the first count of the given tiles are the ones
+  // the moves changed, each once, with the content codes they had before. Only those
+  // tiles are looked at: a piece can only become frozen when it or a piece next to
+  // it is pushed, and a trophy can only be given up by pushing it onto a dead square
+  // or into a hole
+  public boolean isLost(TileCodes after, int player, int[] unsatisfied, int[] changed,
+      byte[] was, int count) {
+    if (player == -1) {
+      return true;
+    }
+    BitSet frozen = new BitSet();
+    TileSet asWall = new TileSet();
+    TileSet group = new TileSet();
+    boolean recount = false;
+    int piecesBefore = 0;
+    int piecesAfter = 0;
+    for (int k = 0; k < count; k += 1) {
+      int i = changed[k];
+      byte is = after.content(i);
+      if (Board.canBePushed(was[k])) {
+        piecesBefore += 1;
+      }
+      if (Board.canBePushed(is)) {
+        piecesAfter += 1;
+        if (!frozen.get(i)) {
+          this.freeze(after, i, frozen, asWall, group);
+        }
+        recount = recount
+            || (is >= Board.CONTENT_TROPHY && this.deadSquare(is - Board.CONTENT_TROPHY, i));
+      }
+    }
+    // a piece fell into a hole
+    recount = recount || piecesAfter < piecesBefore;
+    return this.lost(after, unsatisfied, frozen, recount);
+  }
+
+  // determines if the given tiles, with the given number of empty targets of each
+  // color, whose pieces on the given tiles can never be pushed again, can no longer
+  // be won. That is the case if one of those pieces sits on a target it does not
+  // satisfy, or, if recount is true, when for some color there are fewer trophies
+  // that can still reach a target of that color than targets of that color waiting
+  // for one
+  boolean lost(TileCodes tiles, int[] unsatisfied, BitSet frozen, boolean recount) {
+    for (int i = frozen.nextSetBit(0); i >= 0; i = frozen.nextSetBit(i + 1)) {
+      byte g = tiles.ground(i);
+      byte c = tiles.content(i);
+      if (g >= Board.GROUND_TARGET && Board.emptyTarget(g, c)) {
+        return true;
+      }
+      recount = recount || c >= Board.CONTENT_TROPHY;
+    }
+    if (!recount) {
+      return false;
+    }
+    int[] available = new int[this.live.length];
+    for (int i = 0; i < this.rows * this.cols; i += 1) {
+      int color = tiles.content(i) - Board.CONTENT_TROPHY;
+      if (color >= 0 && this.live[color][i]
+          && tiles.ground(i) != Board.GROUND_TARGET + color && !frozen.get(i)) {
+        available[color] += 1;
+      }
+    }
+    for (int color = 0; color < available.length; color += 1) {
+      if (available[color] < unsatisfied[color]) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-    Cell curr = newBoard.get(y).get(x);
-    Cell oneAwayVertical = newBoard.get(y + dy).get(x);
-    Cell twoAwayVertical = newBoard.get(y + (2 * dy)).get(x);
+  // EFFECT: adds to frozen the piece on the tile with the given index and every
+  // piece that holds it in place, if it can never be pushed again. asWall and group
+  // are sets to work in, which are emptied first
+  void freeze(TileCodes tiles, int index, BitSet frozen, TileSet asWall, TileSet group) {
+    asWall.clear();
+    group.clear();
+    if (this.frozen(tiles, index, frozen, asWall, group)) {
+      for (int k = 0; k < group.size; k += 1) {
+        frozen.set(group.members[k]);
+      }
+    }
+  }
 
-    if (oneAwayVertical.cellCanSlide() && oneAwayVertical.cellCanHoldPlayer()) {
+  // determines if the piece on the tile with the given index can never be pushed
+  // again: along each axis, one of its neighbours is a wall, off the board, or a
+  // piece that can never be pushed again, such as one already in frozen. While a
+  // piece is checked it counts as a wall to its neighbours, so it is added to
+  // asWall, and the pieces found frozen are added to group. A piece next to the one
+  // being checked is checked first on a stack of its own instead of by recursion,
+  // since a cluster of pieces can be as large as the board
+  boolean frozen(TileCodes tiles, int index, BitSet frozen, TileSet asWall,
+      TileSet group) {
+    // the pieces being checked, each with the neighbour it looks at next: 0 and 1
+    // along the row, then 2 and 3 along the column
+    int[] pieces = new int[16];
+    byte[] sides = new byte[16];
+    pieces[0] = index;
+    sides[0] = 0;
+    int depth = 1;
+    asWall.add(index);
+    // what the last piece to finish its check found, for the piece under it
+    boolean found = false;
+    boolean returned = false;
+    while (depth > 0) {
+      int piece = pieces[depth - 1];
+      int side = sides[depth - 1];
+      boolean blocks;
+      if (returned) {
+        blocks = found;
+        returned = false;
+      }
+      else {
+        int next = this.neighbour(piece, side);
+        byte c = next == -1 ? Board.CONTENT_WALL : tiles.content(next);
+        if (c == Board.CONTENT_WALL || asWall.contains(next) || frozen.get(next)) {
+          blocks = true;
+        }
+        else if (Board.canBePushed(c)) {
+          if (depth == pieces.length) {
+            pieces = Arrays.copyOf(pieces, depth * 2);
+            sides = Arrays.copyOf(sides, depth * 2);
+          }
+          pieces[depth] = next;
+          sides[depth] = 0;
+          depth += 1;
+          asWall.add(next);
+          continue;
+        }
+        else {
+          blocks = false;
+        }
+      }
+      if (blocks && side < 2) {
+        // the row is blocked, so the column is next
+        sides[depth - 1] = 2;
+      }
+      else if (blocks) {
+        // the column is blocked too
+        group.add(piece);
+        found = true;
+        returned = true;
+        depth -= 1;
+      }
+      else if (side == 0 || side == 2) {
+        sides[depth - 1] = (byte) (side + 1);
+      }
+      else {
+        // the piece can be pushed one way or the other along this axis
+        found = false;
+        returned = true;
+        depth -= 1;
+      }
+    }
+    return found;
+  }
+
+  // returns the index of the tile next to the tile with the given index on the given
+  // side: 0 left, 1 right, 2 above or 3 below, or -1 if it is off the board
+  int neighbour(int index, int side) {
+    int y = index / this.cols;
+    int x = index % this.cols;
+    switch (side) {
+      case 0:
+        return x > 0 ? index - 1 : -1;
+      case 1:
+        return x < this.cols - 1 ? index + 1 : -1;
+      case 2:
+        return y > 0 ? index - this.cols : -1;
+      default:
+        return y < this.rows - 1 ? index + this.cols : -1;
+    }
+  }
+}
 
-      newBoard = this.moveToBlankVertical(newBoard, y, x, dy, dx);
-      Level tempLevel = new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+// represents a set of tile indices in an open-addressing table, like the pending
+// changes of a BoardEditor, so it costs as much as its members rather than the board.
+// The members are also kept in the order they were added
+class TileSet {
+  // slot i holds the index + 1 of a member, or 0 if it is empty
+  int[] slots;
+  int[] members;
+  int size;
+
+  TileSet() {
+    this.slots = new int[16];
+    this.members = new int[8];
+    this.size = 0;
+  }
+
+  // returns the slot of the given tile index, or the empty slot where it belongs
+  int slotOf(int index) {
+    int mask = this.slots.length - 1;
+    int hash = index * 0x9E3779B1;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (this.slots[slot] != 0 && this.slots[slot] != index + 1) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
 
-      return tempLevel.newLevelVertical(dy, dx);
+  // determines if the given tile index is in this set
+  public boolean contains(int index) {
+    return this.slots[this.slotOf(index)] != 0;
+  }
 
+  // EFFECT: adds the given tile index to this set, growing the table when it is half
+  // full. Returns false if it was already in the set
+  public boolean add(int index) {
+    if (this.contains(index)) {
+      return false;
     }
-    else if (oneAwayVertical.iceWithMovable() && twoAwayVertical.cellCanHoldPlayer()) {
-
-      newBoard = this.pushVertical(newBoard, y, x, dy, dx);
-      Level tempLevel = new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+    if (this.size == this.members.length) {
+      this.members = Arrays.copyOf(this.members, this.size * 2);
+    }
+    this.members[this.size] = index;
+    this.size += 1;
+    if (this.size * 2 > this.slots.length) {
+      this.slots = new int[this.slots.length * 2];
+      for (int k = 0; k < this.size; k += 1) {
+        this.slots[this.slotOf(this.members[k])] = this.members[k] + 1;
+      }
+    }
+    else {
+      this.slots[this.slotOf(index)] = index + 1;
+    }
+    return true;
+  }
 
-      return tempLevel.newLevelVertical(dy, dx);
+  // EFFECT: removes every member, emptying only the slots in use. They are emptied
+  // from the last added to the first, so every member still to be found is reached
+  // along the slots it was added behind
+  public void clear() {
+    for (int k = this.size - 1; k >= 0; k -= 1) {
+      this.slots[this.slotOf(this.members[k])] = 0;
     }
-    else if (oneAwayVertical.cellCanBePushed() && twoAwayVertical.cellCanSlide()
-        && twoAwayVertical.cellCanHoldPlayer()) {
+    this.size = 0;
+  }
+}
 
-      int factor = this.countIceVertical(newBoard, dy) + 1;
-      ArrayList<Cell> afterIceRow = newBoard.get(y + dy + (dy * factor));
-      Cell afterIce = newBoard.get(y + dy + (dy * factor)).get(x);
+// represents a level in the game Sokoban
 
-      Cell newCurr = curr.editCellBlank();
-      Cell newOneAway = oneAwayVertical.editCellGiven(curr);
-      newCurrRow.set(x, newCurr);
-      newRowOneAway.set(x, newOneAway);
-      newBoard.set(y, newCurrRow);
-      newBoard.set(y + dy, newRowOneAway);
+// INVARIANT: the board has height + 1 rows and width + 1 columns, and the
+// playerPos is the tile holding the player or (-1, -1) if there is no player
+class Level {
+  int height;
+  int width;
+  Board board;
+  Posn playerPos;
+  // the dead squares of the walls and targets of the board, which no move changes,
+  // so every level reached from this one by moves shares them
+  Deadlocks deadlocks;
 
-      if (afterIce.cellCanHoldPlayer()) {
+  // constructor that initializes the level with a given packed board and the
+  // deadlock analysis of its walls and targets
+  Level(int height, int width, Board board, Posn playerPos, Deadlocks deadlocks) {
+    this.height = height;
+    this.width = width;
+    this.board = board;
+    this.playerPos = playerPos;
+    this.deadlocks = deadlocks;
+  }
 
-        Cell newAfterIce = afterIce.editCellGivenBlankGround(oneAwayVertical);
-        afterIceRow.set(x, newAfterIce);
-        newBoard.set(y + dy + (dy * factor), afterIceRow);
+  // main constructor that initializes the level with a given packed board
+  Level(int height, int width, Board board, Posn playerPos) {
+    this(height, width, board, playerPos, new Deadlocks(board));
+  }
 
-        return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
-      }
-      else if (afterIce.cellCanBeLost() && !this.iceWithMovableVertical(newBoard, dy)) {
+  // constructor that initializes the level with a given board of cells (which is
+  // an ArrayList<ArrayList<Cell>>) by packing it
+  Level(int height, int width, ArrayList<ArrayList<Cell>> board, Posn playerPos) {
+    this(height, width, new Utils().cellsToBoard(board), playerPos);
+  }
 
-        Cell newAfterIce = afterIce.editCellBlank();
-        afterIceRow.set(x, newAfterIce);
-        newBoard.set(y + dy + (dy * factor), afterIceRow);
+  // constructor that initializes the level with the given packed board, finding
+  // where its player is
+  Level(Board board) {
+    this(board.rows - 1, board.cols - 1, board, board.player == -1 ? new Posn(-1, -1)
+        : new Posn(board.player % board.cols, board.player / board.cols));
+  }
 
-        return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
-      }
+  // other constructor that takes in two level-description strings (one
+  // representing ground content and the other representing the level content) and
+  // populates the board, parsing both in one pass with a LevelParser
+  Level(String groundCont, String levelCont) {
+    this(new LevelParser().parse(groundCont, levelCont));
+  }
 
-      else if (this.iceWithMovableVertical(newBoard, dy)) {
+  // returns true if every target has a trophy on top of it, whose color matches
+  // the target’s color
+  public boolean levelWon() {
+    // the board keeps a running count of the targets without a trophy of a matching
+    // color, updated only for the tiles each move changes, so there is no need to
+    // look at every tile
+    long nanos = GameMetrics.LEVEL_WON.startNanos();
+    long bytes = GameMetrics.LEVEL_WON.startBytes();
+    boolean won = this.board.unsatisfiedTargets() == 0;
+    GameMetrics.LEVEL_WON.stop(nanos, bytes);
+    return won;
+  }
 
-        Cell newTwoAway = twoAwayVertical.editCellGiven(oneAwayVertical);
-        newRowTwoAway.set(x, newTwoAway);
-        newBoard.set(y + (2 * dy), newRowTwoAway);
-        Level tempLevel = new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+  // renders the level as a WorldImage
+  public WorldImage render() {
+    long nanos = GameMetrics.RENDER.startNanos();
+    long bytes = GameMetrics.RENDER.startBytes();
+    WorldImage finalImage = new EmptyImage();
+    // this nested for loop is used to iterate through the board. The outer loop
+    // iterates over the rows and places the row images above one another. The inner
+    // loop iterates within the rows and places the cells (converted to images)
+    // beside one another. The loop correctly iterates using the board's height and
+    // width.
 
-        return tempLevel.newLevelHorizontal(dy, dx);
+    for (int i = 0; i <= this.height; i += 1) {
+      WorldImage rowImage = new EmptyImage();
+      for (int j = 0; j <= this.width; j += 1) {
+        rowImage = new BesideImage(rowImage, new Utils().cellToWorldImage(this.cellAt(i, j)));
       }
-      else {
+      finalImage = new AboveImage(finalImage, rowImage);
+    }
 
-        ArrayList<Cell> afterIceRowAlt = newBoard.get(y + (dy * factor));
-        Cell afterIceAlt = newBoard.get(y + (dy * factor)).get(x);
+    GameMetrics.RENDER.stop(nanos, bytes);
+    return finalImage;
+  }
 
-        Cell newAfterIce = afterIceAlt.editCellGiven(oneAwayVertical);
-        afterIceRowAlt.set(x, newAfterIce);
-        newBoard.set(y + (dy * factor), afterIceRowAlt);
+  // returns the cell at the given coordinate of this level's board
+  public Cell cellAt(int y, int x) {
+    return new Cell(y, x, new Utils().codeToGroundContent(this.board.groundAt(y, x)),
+        new Utils().codeToLevelContent(this.board.contentAt(y, x)));
+  }
 
-        return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
-      }
+  // returns the given row of this level's board as cells
+  public ArrayList<Cell> row(int y) {
+    ArrayList<Cell> row = new ArrayList<Cell>();
+    for (int x = 0; x < this.board.cols; x += 1) {
+      row.add(this.cellAt(y, x));
     }
+    return row;
+  }
 
-    else if (oneAwayVertical.cellCanHoldPlayer()) {
-
-      newBoard = this.moveToBlankVertical(newBoard, y, x, dy, dx);
-
-      return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+  // returns this level's board as rows of cells
+  public ArrayList<ArrayList<Cell>> cells() {
+    ArrayList<ArrayList<Cell>> cells = new ArrayList<ArrayList<Cell>>();
+    for (int y = 0; y < this.board.rows; y += 1) {
+      cells.add(this.row(y));
     }
-    // if the adjacent cell is a movable content piece and the following cell is
-    // blank
-    else if (oneAwayVertical.cellCanBePushed() && twoAwayVertical.cellCanHoldPlayer()) {
+    return cells;
+  }
 
-      newBoard = this.pushVertical(newBoard, y, x, dy, dx);
+  // returns a new level with this height and this width and an edited board
+  // according to the horizontal move
+  public Level newLevelHorizontal(int dy, int dx) {
+    long nanos = GameMetrics.NEW_LEVEL.startNanos();
+    long bytes = GameMetrics.NEW_LEVEL.startBytes();
 
-      return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
-    }
-    // if the adjacent cell is a hole
-    else if (oneAwayVertical.cellCanBeLost()) {
+    int playerY = this.playerPos.y;
+    int playerX = this.playerPos.x;
 
-      Cell newCurr = curr.editCellBlank();
-      Cell newOneAway = oneAwayVertical.editCellBlank();
+    Level next = this.editBoardHorizontal(playerY, playerX, dy, dx);
+    GameMetrics.NEW_LEVEL.stop(nanos, bytes);
+    return next;
+  }
 
-      newCurrRow.set(x, newCurr);
-      newRowOneAway.set(x, newOneAway);
-      newBoard.set(y, newCurrRow);
-      newBoard.set(y + dy, newRowOneAway);
+  // returns a new level with this height and this width and an edited board
+  // according to the vertical move
+  public Level newLevelVertical(int dy, int dx) {
+    long nanos = GameMetrics.NEW_LEVEL.startNanos();
+    long bytes = GameMetrics.NEW_LEVEL.startBytes();
 
-      return new Level(h, w, newBoard, new Posn(-1, -1));
-    }
-    // if the adjacent cell is a movable content piece and the following cell is a
-    // hole
-    else if (oneAwayVertical.cellCanBePushed() && twoAwayVertical.cellCanBeLost()) {
+    int playerY = this.playerPos.y;
+    int playerX = this.playerPos.x;
+
+    Level next = this.editBoardVertical(playerY, playerX, dy, dx);
+    GameMetrics.NEW_LEVEL.stop(nanos, bytes);
+    return next;
+  }
 
-      Cell newCurr = curr.editCellBlank();
-      Cell newOneAway = oneAwayVertical.editCellGiven(curr);
-      Cell newTwoAway = twoAwayVertical.editCellBlank();
+  // Creates a new level with correctly updated cells based on the current board
+  // and the dy and dx which moves the player horizontally on the board
+  public Level editBoardHorizontal(int y, int x, int dy, int dx) {
+    return this.editBoard(y, x, dy, dx);
+  }
 
-      newCurrRow.set(x, newCurr);
-      newRowOneAway.set(x, newOneAway);
-      newRowTwoAway.set(x, newTwoAway);
-      newBoard.set(y, newCurrRow);
-      newBoard.set(y + dy, newRowOneAway);
-      newBoard.set(y + (2 * dy), newRowTwoAway);
+  // Creates a new level with correctly updated cells based on the current board
+  // and the dy and dx which moves the player vertically on the board
+  public Level editBoardVertical(int y, int x, int dy, int dx) {
+    return this.editBoard(y, x, dy, dx);
+  }
 
-      return new Level(h, w, newBoard, new Posn(playerPosn.x + dx, playerPosn.y + dy));
+  // Creates a new level with correctly updated cells based on the current board
+  // and the dy and dx which moves the player in any direction on the board; the
+  // whole move is resolved by the board's move kernel
+  public Level editBoard(int y, int x, int dy, int dx) {
+    if (!this.board.inBounds(y, x)) {
+      return this;
     }
-    else {
+    long nanos = GameMetrics.EDIT_BOARD.startNanos();
+    long bytes = GameMetrics.EDIT_BOARD.startBytes();
+    Level next = this.withBoard(this.board.move(y, x, dy, dx));
+    GameMetrics.EDIT_BOARD.stop(nanos, bytes);
+    return next;
+  }
+
+  // returns true if this level can no longer be won: the player fell into a hole, a
+  // piece that can never be pushed again covers a target it does not satisfy, or
+  // too few trophies of some color can still reach a target of that color
+  public boolean isLost() {
+    return this.deadlocks.isLost(this.board);
+  }
+
+  // returns true if the given level, reached from this level by a move, can no longer
+  // be won, given whether this level could no longer be won. A level that is lost
+  // stays lost whatever moves follow, and otherwise only the tiles the move changed
+  // are looked at
+  public boolean isLostAfter(boolean lost, Level next) {
+    if (next.board == this.board) {
+      return lost;
+    }
+    return lost || this.deadlocks.isLost(this.board, next.board);
+  }
+
+  // returns the 64-bit Zobrist hash of the state of this level, which is the same for
+  // any two levels with the same pieces in the same places
+  public long stateHash() {
+    return this.board.hash;
+  }
 
+  // returns a level with this height and this width and the given board, or this
+  // level if the board did not change
+  public Level withBoard(Board next) {
+    if (next == this.board) {
       return this;
     }
+    else if (next.player == -1) {
+      return new Level(this.height, this.width, next, new Posn(-1, -1), this.deadlocks);
+    }
+    else {
+      return new Level(this.height, this.width, next,
+          new Posn(next.player % next.cols, next.player / next.cols), this.deadlocks);
+    }
   }
 
   // returns the cell containing the player in this level's board
   // if there is no player it returns a blank cell with coordinates (-1, -1)
   // this method is only called at level instantiation, to set the player's coord
   public Cell getPlayerInBoard() {
-    for (int i = 0; i <= this.height; i += 1) {
-      for (int j = 0; j <= this.width; j += 1) {
-        if (this.board.get(i).get(j).locatePlayer()) {
-          return this.board.get(i).get(j);
-        }
-      }
+    int index = this.board.findPlayer();
+    if (index == -1) {
+      return new Cell(-1, -1, Pieces.BLANK_GROUND, Pieces.BLANK);
     }
-    return new Cell(-1, -1, new BlankGroundContent(), new BlankLevelContent());
+    return this.cellAt(index / this.board.cols, index % this.board.cols);
   }
 
   // determines if the world should end which occurs either when the player has
@@ -903,28 +1790,184 @@ class Level {
     }
     return false;
   }
+
+}
+
+// represents the change one move made to a board: the tiles it changed with their
+// codes before and after the move, and where the player was before and after it.
+// A delta holds only the few tiles a move touches, never a copy of the board
+class MoveDelta {
+  // the changed tiles in increasing order, and the codes of each before and after
+  int[] indices;
+  byte[] groundBefore;
+  byte[] groundAfter;
+  byte[] contentBefore;
+  byte[] contentAfter;
+  // the index of the tile holding the player before and after, or -1 if none
+  int playerBefore;
+  int playerAfter;
+
+  // creates the delta of the move that turned the board before into the board after
+  MoveDelta(Board before, Board after) {
+    int[] grounds = before.ground.diff(after.ground);
+    int[] contents = before.content.diff(after.content);
+    // merge the two sorted lists of changed tiles
+    int[] indices = new int[grounds.length + contents.length];
+    int n = 0;
+    int g = 0;
+    int c = 0;
+    while (g < grounds.length || c < contents.length) {
+      if (c == contents.length || (g < grounds.length && grounds[g] < contents[c])) {
+        indices[n] = grounds[g];
+        g += 1;
+      }
+      else if (g == grounds.length || contents[c] < grounds[g]) {
+        indices[n] = contents[c];
+        c += 1;
+      }
+      else {
+        indices[n] = grounds[g];
+        g += 1;
+        c += 1;
+      }
+      n += 1;
+    }
+    this.indices = Arrays.copyOf(indices, n);
+    this.groundBefore = new byte[n];
+    this.groundAfter = new byte[n];
+    this.contentBefore = new byte[n];
+    this.contentAfter = new byte[n];
+    for (int k = 0; k < n; k += 1) {
+      this.groundBefore[k] = before.ground.get(this.indices[k]);
+      this.groundAfter[k] = after.ground.get(this.indices[k]);
+      this.contentBefore[k] = before.content.get(this.indices[k]);
+      this.contentAfter[k] = after.content.get(this.indices[k]);
+    }
+    this.playerBefore = before.player;
+    this.playerAfter = after.player;
+  }
+
+  // creates a delta from its tiles and their codes, as read back from a save
+  MoveDelta(int[] indices, byte[] groundBefore, byte[] groundAfter, byte[] contentBefore,
+      byte[] contentAfter, int playerBefore, int playerAfter) {
+    this.indices = indices;
+    this.groundBefore = groundBefore;
+    this.groundAfter = groundAfter;
+    this.contentBefore = contentBefore;
+    this.contentAfter = contentAfter;
+    this.playerBefore = playerBefore;
+    this.playerAfter = playerAfter;
+  }
+
+  // returns the given board, which is the board after this move, as it was before
+  public Board undo(Board board) {
+    return this.apply(board, this.groundBefore, this.contentBefore);
+  }
+
+  // returns the given board, which is the board before this move, as it is after
+  public Board redo(Board board) {
+    return this.apply(board, this.groundAfter, this.contentAfter);
+  }
+
+  // returns the given board with the changed tiles set to the given codes
+  Board apply(Board board, byte[] grounds, byte[] contents) {
+    BoardEditor editor = board.edit();
+    // both codes of a tile are set at once, so the editor only sees the final
+    // content of each tile when it tracks the player
+    for (int k = 0; k < this.indices.length; k += 1) {
+      editor.put(this.indices[k], grounds[k], contents[k]);
+    }
+    return editor.commit();
+  }
+}
+
+// represents a list of move deltas that is never changed, so a world and the worlds
+// made from it can share the same list. The empty list is null
+class DeltaList {
+  MoveDelta first;
+  DeltaList rest;
+  int size;
+
+  DeltaList(MoveDelta first, DeltaList rest) {
+    this.first = first;
+    this.rest = rest;
+    if (rest == null) {
+      this.size = 1;
+    }
+    else {
+      this.size = rest.size + 1;
+    }
+  }
+}
+
+// represents the history of a game as move deltas: the moves that can be undone,
+// most recent first, and the moves that were undone and can be redone, most recently
+// undone first. Every step of the history is a few tiles, so a session of thousands
+// of moves holds no more than it changed
+class Journal {
+  DeltaList undo;
+  DeltaList redo;
+
+  Journal(DeltaList undo, DeltaList redo) {
+    this.undo = undo;
+    this.redo = redo;
+  }
+
+  // creates the empty journal of a game that has not started
+  Journal() {
+    this(null, null);
+  }
+
+  // returns the number of moves that can be undone
+  public int undoable() {
+    return this.undo == null ? 0 : this.undo.size;
+  }
+
+  // returns the number of moves that can be redone
+  public int redoable() {
+    return this.redo == null ? 0 : this.redo.size;
+  }
+
+  // returns this journal after a new move, which can no longer redo what was undone
+  public Journal record(MoveDelta delta) {
+    return new Journal(new DeltaList(delta, this.undo), null);
+  }
+
+  // returns this journal after undoing its most recent move
+  public Journal undone() {
+    return new Journal(this.undo.rest, new DeltaList(this.undo.first, this.redo));
+  }
+
+  // returns this journal after redoing its most recently undone move
+  public Journal redone() {
+    return new Journal(new DeltaList(this.redo.first, this.undo), this.redo.rest);
+  }
 }
 
 // represents a User-interface World where a user can play Sokoban
 class SokobanWorld extends World {
 
   Level curr;
-  SokobanWorld initial;
-  SokobanWorld prevWorld;
+  // the moves made so far, which can be undone and redone
+  Journal journal;
   int score;
+  // whether the current level can no longer be won, worked out once per move so
+  // that drawing a frame only reads it
+  boolean lost;
 
-  SokobanWorld(Level curr, SokobanWorld initial, SokobanWorld prevWorld, int score) {
+  SokobanWorld(Level curr, Journal journal, int score, boolean lost) {
     this.curr = curr;
-    this.initial = initial;
-    this.prevWorld = prevWorld;
+    this.journal = journal;
     this.score = score;
+    this.lost = lost;
+  }
+
+  SokobanWorld(Level curr, Journal journal, int score) {
+    this(curr, journal, score, curr.isLost());
   }
 
   SokobanWorld(Level curr) {
-    this.curr = curr;
-    this.initial = this;
-    this.prevWorld = this;
-    this.score = 0;
+    this(curr, new Journal(), 0);
   }
 
   // renders the score as an image
@@ -937,13 +1980,21 @@ class SokobanWorld extends World {
         new OverlayImage(score, backgroundScore));
   }
 
-  // makes the scene with the game level rendered
+  // makes the scene with the game level rendered, and a warning when the level can no
+  // longer be won
   public WorldScene makeScene() {
-    return new WorldScene(500, 500).placeImageXY(this.curr.render(), 250, 250)
+    WorldScene scene = new WorldScene(500, 500).placeImageXY(this.curr.render(), 250, 250)
         .placeImageXY(this.drawScore(), 30, 35);
+    if (this.lost) {
+      return scene.placeImageXY(
+          new TextImage("This level can no longer be won, press u to undo", 16, Color.RED), 250,
+          480);
+    }
+    return scene;
   }
 
-  // checks if the player has moved into a hole or if the level is won
+  // checks if the player has moved into a hole or if the level is won. A level that
+  // can no longer be won does not end the game, since the player can still undo
   public boolean shouldEnd() {
     return this.curr.shouldEnd();
   }
@@ -956,19 +2007,40 @@ class SokobanWorld extends World {
         250, 250);
   }
 
+  // returns the world after a move key turned this world's level into the given
+  // level, recording the change in the journal if the move changed the board
+  public SokobanWorld moved(Level next) {
+    boolean lost = this.curr.isLostAfter(this.lost, next);
+    if (next.board == this.curr.board) {
+      return new SokobanWorld(next, this.journal, this.score + 1, lost);
+    }
+    return new SokobanWorld(next,
+        this.journal.record(new MoveDelta(this.curr.board, next.board)), this.score + 1, lost);
+  }
+
+  // returns the world after the given key is pressed, measuring the time and the
+  // allocation of each press in GameMetrics
+  public SokobanWorld onKeyEvent(String key) {
+    OperationMetrics metrics = GameMetrics.key(key);
+    long nanos = metrics.startNanos();
+    long bytes = metrics.startBytes();
+    SokobanWorld next = this.keyPressed(key);
+    metrics.stop(nanos, bytes);
+    return next;
+  }
+
   // returns a new SokobanWorld with a player moved in the given key direction
   // a key press corresponds to a coordinate (int dy, int dx)
   // the new SokobanWorld is set with the initial level edited according to the
   // move made
-  public SokobanWorld onKeyEvent(String key) {
+  SokobanWorld keyPressed(String key) {
     // moving up means the player's y position is one less than it was before and
     // the x position does not change.
     // ex: if the player was in cell (2, 2), then after the move, the player is in
     // cell (1, 2)
     // therefore, (dy, dx) = (-1, 0)
     if (key.equals("up")) {
-      return new SokobanWorld(this.curr.newLevelVertical(-1, 0), this.initial, this,
-          this.score + 1);
+      return this.moved(this.curr.newLevelVertical(-1, 0));
     }
     // moving down means the player's y position is one more than it was before and
     // the x position does not change.
@@ -976,7 +2048,7 @@ class SokobanWorld extends World {
     // cell (3, 2)
     // therefore, (dy, dx) = (1, 0)
     else if (key.equals("down")) {
-      return new SokobanWorld(this.curr.newLevelVertical(1, 0), this.initial, this, this.score + 1);
+      return this.moved(this.curr.newLevelVertical(1, 0));
     }
     // moving left means the player's y position does not change and the x position
     // is one less than it was before.
@@ -984,8 +2056,7 @@ class SokobanWorld extends World {
     // cell (2, 1)
     // therefore, (dy, dx) = (0, -1)
     else if (key.equals("left")) {
-      return new SokobanWorld(this.curr.newLevelHorizontal(0, -1), this.initial, this,
-          this.score + 1);
+      return this.moved(this.curr.newLevelHorizontal(0, -1));
     }
 
     // moving left means the player's y position does not change and the x position
@@ -994,24 +2065,35 @@ class SokobanWorld extends World {
     // cell (2, 3)
     // therefore, (dy, dx) = (0, 1)
     else if (key.equals("right")) {
-      return new SokobanWorld(this.curr.newLevelHorizontal(0, 1), this.initial, this,
-          this.score + 1);
+      return this.moved(this.curr.newLevelHorizontal(0, 1));
     }
-    // pressing "u" allows the player to undo their previous move one time and so
-    // pressing "u"
-    // restores the previous state
+    // pressing "u" undoes the most recent move that has not been undone, as many
+    // times as there are moves to undo, and costs a move like any other
     else if (key.equals("u")) {
-      if (this == this.initial) {
+      if (this.journal.undoable() == 0) {
         return this;
       }
       else {
-        SokobanWorld prev = this.prevWorld;
-        prev.score = this.score + 1;
-
-        return prev;
+        // undoing can bring back a level that could still be won, so the board it
+        // goes back to is checked as a whole
+        MoveDelta delta = this.journal.undo.first;
+        Level back = this.curr.withBoard(delta.undo(this.curr.board));
+        return new SokobanWorld(back, this.journal.undone(), this.score + 1, back.isLost());
       }
     }
-    
+    // pressing "r" redoes the most recently undone move, until a new move is made
+    else if (key.equals("r")) {
+      if (this.journal.redoable() == 0) {
+        return this;
+      }
+      else {
+        MoveDelta delta = this.journal.redo.first;
+        Level next = this.curr.withBoard(delta.redo(this.curr.board));
+        return new SokobanWorld(next, this.journal.redone(), this.score + 1,
+            this.curr.isLostAfter(this.lost, next));
+      }
+    }
+
     // there is no movement and therefore, no reason to change the Sokoban world
     else {
       return this;
@@ -1035,22 +2117,22 @@ class Utils {
   // converts a string to the IGroundContent that the string represents
   public IGroundContent charToGroundContent(String s) {
     if (s.equals("Y")) {
-      return new Target("yellow");
+      return Pieces.target(PieceColor.YELLOW);
     }
     else if (s.equals("G")) {
-      return new Target("green");
+      return Pieces.target(PieceColor.GREEN);
     }
     else if (s.equals("B")) {
-      return new Target("blue");
+      return Pieces.target(PieceColor.BLUE);
     }
     else if (s.equals("R")) {
-      return new Target("red");
+      return Pieces.target(PieceColor.RED);
     }
     else if (s.equals("_")) {
-      return new BlankGroundContent();
+      return Pieces.BLANK_GROUND;
     }
     else if (s.equals("I")) {
-      return new Ice();
+      return Pieces.ICE;
     }
     else {
       throw new IllegalArgumentException("must only construct a GroundContent Piece");
@@ -1060,40 +2142,40 @@ class Utils {
   // converts a string to the ILevelContent that the string represents
   public ILevelContent charToLevelContent(String s) {
     if (s.equals("y")) {
-      return new Trophy("yellow");
+      return Pieces.trophy(PieceColor.YELLOW);
     }
     else if (s.equals("g")) {
-      return new Trophy("green");
+      return Pieces.trophy(PieceColor.GREEN);
     }
     else if (s.equals("b")) {
-      return new Trophy("blue");
+      return Pieces.trophy(PieceColor.BLUE);
     }
     else if (s.equals("r")) {
-      return new Trophy("red");
+      return Pieces.trophy(PieceColor.RED);
     }
     else if (s.equals(">")) {
-      return new Player();
+      return Pieces.PLAYER;
     }
     else if (s.equals("<")) {
-      return new Player();
+      return Pieces.PLAYER;
     }
     else if (s.equals("^")) {
-      return new Player();
+      return Pieces.PLAYER;
     }
     else if (s.equals("v")) {
-      return new Player();
+      return Pieces.PLAYER;
     }
     else if (s.equals("W")) {
-      return new Wall();
+      return Pieces.WALL;
     }
     else if (s.equals("_")) {
-      return new BlankLevelContent();
+      return Pieces.BLANK;
     }
     else if (s.equals("B")) {
-      return new Box();
+      return Pieces.BOX;
     }
     else if (s.equals("h")) {
-      return new Hole();
+      return Pieces.HOLE;
     }
     else {
       throw new IllegalArgumentException("must only construct a LevelContent Piece");
@@ -1172,19 +2254,16 @@ class Utils {
     return s.substring(0, length);
   }
 
-  // returns the height of a level description string by recursively counting the
-  // number of
+  // returns the height of a level description string by counting the number of
   // new lines
   public int getHeight(String s) {
-    if (s.length() == 0) {
-      return 0;
-    }
-    else if (s.charAt(0) == '\n') {
-      return 1 + getHeight(s.substring(1));
-    }
-    else {
-      return getHeight(s.substring(1));
+    int height = 0;
+    for (int i = 0; i < s.length(); i += 1) {
+      if (s.charAt(i) == '\n') {
+        height += 1;
+      }
     }
+    return height;
   }
 
   // returns the width of a level description string by finding index of \n
@@ -1198,6 +2277,40 @@ class Utils {
     }
   }
 
+  // converts a board of cells into a packed Board of ground and content codes
+  public Board cellsToBoard(ArrayList<ArrayList<Cell>> cells) {
+    int rows = cells.size();
+    int cols = rows == 0 ? 0 : cells.get(0).size();
+    byte[] ground = new byte[rows * cols];
+    byte[] content = new byte[rows * cols];
+    for (ArrayList<Cell> row : cells) {
+      if (row.size() != cols) {
+        throw new IllegalArgumentException("rows of the board do not match in length");
+      }
+      for (Cell c : row) {
+        ground[c.y * cols + c.x] = c.g.groundCode();
+        content[c.y * cols + c.x] = c.l.contentCode();
+      }
+    }
+    return new Board(rows, cols, ground, content);
+  }
+
+  // converts a ground code of a packed Board to the IGroundContent it represents
+  public IGroundContent codeToGroundContent(byte code) {
+    if (code < 0 || code >= Pieces.GROUND.length) {
+      throw new IllegalArgumentException("not a code of a GroundContent Piece");
+    }
+    return Pieces.GROUND[code];
+  }
+
+  // converts a content code of a packed Board to the ILevelContent it represents
+  public ILevelContent codeToLevelContent(byte code) {
+    if (code < 0 || code >= Pieces.CONTENT.length) {
+      throw new IllegalArgumentException("not a code of a LevelContent Piece");
+    }
+    return Pieces.CONTENT[code];
+  }
+
   // renders a cell as an image by overlaying the given cell's rendered
   // levelContent on the given cell's rendered groundContent
   public WorldImage cellToWorldImage(Cell c) {
@@ -1231,7 +2344,7 @@ class ExamplesSokoban {
     r2.add(new Cell(1, 1, new BlankGroundContent(), new Wall()));
     board.add(r1);
     board.add(r2);
-    return t.checkExpect(twoByTwo.board, board);
+    return t.checkExpect(twoByTwo.cells(), board);
   }
 
   Level testLevel3 = new Level(
@@ -1400,9 +2513,9 @@ class ExamplesSokoban {
   // LEVEL WON HELPERS
 
   boolean testWrongColor(Tester t) {
-    return t.checkExpect(testTrophyRed.wrongColor("red"), false)
-        && t.checkExpect(testTrophyRed.wrongColor("blue"), true)
-        && t.checkExpect(testBlankContent.wrongColor("blue"), true);
+    return t.checkExpect(testTrophyRed.wrongColor(PieceColor.RED), false)
+        && t.checkExpect(testTrophyRed.wrongColor(PieceColor.BLUE), true)
+        && t.checkExpect(testBlankContent.wrongColor(PieceColor.BLUE), true);
   }
 
   boolean testEmptyTarget(Tester t) {
@@ -1500,6 +2613,437 @@ class ExamplesSokoban {
         && t.checkExpect(trophy.cellCanBePushed(), true);
   }
 
+  // ---------- TESTS FOR THE PACKED BOARD ---------- //
+
+  boolean testPackedPlanes(Tester t) {
+    // the 2x2 board is stored row by row, one byte per tile in each plane
+    return t.checkExpect(this.twoByTwo.board.rows, 2) && t.checkExpect(this.twoByTwo.board.cols, 2)
+        && t.checkExpect(this.twoByTwo.board.content.toArray(),
+            new byte[] { Board.CONTENT_BLANK, Board.CONTENT_WALL, Board.CONTENT_BLANK,
+                Board.CONTENT_WALL })
+        && t.checkExpect(this.twoByTwo.board.ground.toArray(), new byte[4])
+        // targets and trophies are offset by the index of their color
+        && t.checkExpect(this.testLevel.board.groundAt(1, 3),
+            (byte) (Board.GROUND_TARGET + PieceColor.RED.ordinal()))
+        && t.checkExpect(this.testLevel.board.contentAt(2, 3),
+            (byte) (Board.CONTENT_TROPHY + PieceColor.RED.ordinal()))
+        && t.checkExpect(this.testLevel.board.findPlayer(), this.testLevel.board.index(3, 3))
+        && t.checkExpect(this.noPlayer.board.findPlayer(), -1);
+  }
+
+  boolean testPackedRoundTrip(Tester t) {
+    // unpacking a board gives back the cells the level was parsed into
+    return t.checkExpect(this.testLevel.cells(), new Utils().configureBoard(
+        this.exampleLevelGround, this.exampleLevelContents, 0, 8))
+        && t.checkExpect(this.withIce.cellAt(2, 3),
+            new Cell(2, 3, new Ice(), new BlankLevelContent()))
+        && t.checkExpect(new Utils().codeToLevelContent(new Trophy("blue").contentCode()),
+            new Trophy("blue"))
+        && t.checkExpect(new Utils().codeToGroundContent(new Target("green").groundCode()),
+            new Target("green"));
+  }
+
+  boolean testPackedPredicates(Tester t) {
+    byte redTarget = new Target("red").groundCode();
+    return t.checkExpect(Board.canSlide(Board.GROUND_ICE), true)
+        && t.checkExpect(Board.canSlide(redTarget), false)
+        && t.checkExpect(Board.canHoldPlayer(Board.CONTENT_BLANK), true)
+        && t.checkExpect(Board.canHoldPlayer(Board.CONTENT_HOLE), false)
+        && t.checkExpect(Board.canBePushed(Board.CONTENT_BOX), true)
+        && t.checkExpect(Board.canBePushed(new Trophy("yellow").contentCode()), true)
+        && t.checkExpect(Board.canBePushed(Board.CONTENT_WALL), false)
+        && t.checkExpect(Board.canBeLost(Board.CONTENT_HOLE), true)
+        && t.checkExpect(Board.emptyTarget(redTarget, new Trophy("red").contentCode()), false)
+        && t.checkExpect(Board.emptyTarget(redTarget, new Trophy("blue").contentCode()), true)
+        && t.checkExpect(Board.emptyTarget(redTarget, Board.CONTENT_BLANK), true)
+        && t.checkExpect(Board.emptyTarget(Board.GROUND_ICE, Board.CONTENT_BLANK), false);
+  }
+
+  boolean testPackedCodeExceptions(Tester t) {
+    return t.checkException(new IllegalArgumentException("not a code of a GroundContent Piece"),
+        new Utils(), "codeToGroundContent", (byte) 9)
+        && t.checkException(new IllegalArgumentException("not a code of a LevelContent Piece"),
+            new Utils(), "codeToLevelContent", (byte) 12)
+        && t.checkConstructorException(
+            new IllegalArgumentException("planes do not match the dimensions of the board"),
+            "Board", 2, 2, new byte[3], new byte[4]);
+  }
+
+  boolean testPlaneWith(Tester t) {
+    byte[] bytes = new byte[200];
+    for (int i = 0; i < bytes.length; i += 1) {
+      bytes[i] = (byte) i;
+    }
+    Plane plane = new Plane(bytes);
+    Plane changed = plane.with(new int[] { 3, 3, 150 }, new byte[] { 7, 8, 9 }, 3);
+    Object[] root = (Object[]) plane.root;
+    Object[] changedRoot = (Object[]) changed.root;
+
+    return t.checkExpect(plane.toArray(), bytes) && t.checkExpect(plane.depth, 1)
+        // the last change to the same index wins
+        && t.checkExpect(changed.get(3), (byte) 8) && t.checkExpect(changed.get(150), (byte) 9)
+        && t.checkExpect(changed.get(4), (byte) 4)
+        // the original plane is never changed
+        && t.checkExpect(plane.get(3), (byte) 3)
+        // only the chunks holding index 3 and index 150 are copied
+        && t.checkExpect(changedRoot[0] == root[0], false)
+        && t.checkExpect(changedRoot[1] == root[1], true)
+        && t.checkExpect(changedRoot[2] == root[2], false)
+        && t.checkExpect(changedRoot[3] == root[3], true)
+        && t.checkExpect(plane.with(new int[0], new byte[0], 0), plane);
+  }
+
+  boolean testMoveSharesUnchangedChunks(Tester t) {
+    String ground = "";
+    String contents = "";
+    for (int i = 0; i < 4; i += 1) {
+      ground += "________________________________________________________________";
+      contents += i == 1 ? "_>______________________________________________________________"
+          : "________________________________________________________________";
+      if (i < 3) {
+        ground += "\n";
+        contents += "\n";
+      }
+    }
+    Level wide = new Level(ground, contents);
+    Level moved = wide.newLevelHorizontal(0, 1);
+    Object[] root = (Object[]) wide.board.content.root;
+    Object[] movedRoot = (Object[]) moved.board.content.root;
+
+    return t.checkExpect(moved.playerPos, new Posn(2, 1))
+        && t.checkExpect(moved.board.contentAt(1, 2), Board.CONTENT_PLAYER)
+        && t.checkExpect(wide.board.contentAt(1, 1), Board.CONTENT_PLAYER)
+        // the ground plane does not change at all and only the player's row is copied
+        && t.checkExpect(moved.board.ground == wide.board.ground, true)
+        && t.checkExpect(movedRoot[0] == root[0], true)
+        && t.checkExpect(movedRoot[1] == root[1], false)
+        && t.checkExpect(movedRoot[2] == root[2], true)
+        && t.checkExpect(movedRoot[3] == root[3], true);
+  }
+
+  boolean testUnsatisfiedTargets(Tester t) {
+    Level won = this.testLevelAlmostWon.newLevelVertical(-1, 0);
+    int red = PieceColor.RED.ordinal();
+
+    // every target of the example level starts out empty
+    return t.checkExpect(this.testLevel.board.unsatisfied, new int[] { 1, 1, 1, 1 })
+        && t.checkExpect(this.testLevel.board.unsatisfiedTargets(), 4)
+        // a trophy of the wrong color does not satisfy a target
+        && t.checkExpect(this.wrongColors.board.unsatisfiedTargets(), 4)
+        && t.checkExpect(this.moreTarThanTrop.board.unsatisfiedTargets(red), 2)
+        && t.checkExpect(this.testLevelAlmostWon.board.unsatisfiedTargets(red), 1)
+        // pushing the red trophy onto its target only updates the red count
+        && t.checkExpect(won.board.unsatisfiedTargets(red), 0)
+        && t.checkExpect(won.board.unsatisfied, new int[4]) && t.checkExpect(won.levelWon(), true)
+        // the original level keeps its own count
+        && t.checkExpect(this.testLevelAlmostWon.board.unsatisfied, new int[] { 0, 0, 0, 1 })
+        && t.checkExpect(this.justPlayer.board.unsatisfiedTargets(), 0);
+  }
+
+  // ---------- TESTS FOR THE UNDO JOURNAL ---------- //
+
+  boolean testMoveDelta(Tester t) {
+    Board before = this.testLevelAlmostWon.board;
+    Board after = before.move(0, -1);
+    MoveDelta delta = new MoveDelta(before, after);
+    Board slid = this.withIce.board.move(0, 1);
+    MoveDelta slide = new MoveDelta(this.withIce.board, slid);
+    return t.checkExpect(delta.indices, new int[] { 26, 27 })
+        && t.checkExpect(delta.contentBefore, new byte[] { 0, 2 })
+        && t.checkExpect(delta.contentAfter, new byte[] { 2, 0 })
+        && t.checkExpect(delta.playerBefore, 27)
+        && t.checkExpect(delta.playerAfter, 26)
+        && t.checkExpect(delta.undo(after), before)
+        && t.checkExpect(delta.redo(before), after)
+        // a slide across the ice only records its two ends
+        && t.checkExpect(slide.indices.length, 2)
+        && t.checkExpect(slide.undo(slid), this.withIce.board)
+        && t.checkExpect(new MoveDelta(before, before).indices, new int[] {});
+  }
+
+  boolean testUndoRedoMany(Tester t) {
+    SokobanWorld start = new SokobanWorld(this.justPlayer);
+    SokobanWorld world = start;
+    for (int i = 0; i < 1000; i += 1) {
+      world = world.onKeyEvent("left").onKeyEvent("right");
+    }
+    SokobanWorld played = world;
+    for (int i = 0; i < 2000; i += 1) {
+      world = world.onKeyEvent("u");
+    }
+    SokobanWorld undone = world;
+    for (int i = 0; i < 1000; i += 1) {
+      world = world.onKeyEvent("r");
+    }
+    return t.checkExpect(played.journal.undoable(), 2000)
+        && t.checkExpect(undone.curr, this.justPlayer)
+        && t.checkExpect(undone.journal.undoable(), 0)
+        && t.checkExpect(undone.journal.redoable(), 2000)
+        // there is nothing more to undo
+        && t.checkExpect(undone.onKeyEvent("u"), undone)
+        && t.checkExpect(world.journal.redoable(), 1000)
+        && t.checkExpect(world.curr, this.justPlayer)
+        && t.checkExpect(world.score, 5000)
+        // a new move drops what could be redone
+        && t.checkExpect(world.onKeyEvent("up").journal.redoable(), 0)
+        && t.checkExpect(world.onKeyEvent("up").onKeyEvent("r").score, world.score + 1)
+        // a blocked move costs a move but leaves nothing to undo
+        && t.checkExpect(start.onKeyEvent("x"), start)
+        && t.checkExpect(new SokobanWorld(this.twoByTwo).onKeyEvent("up").journal.undoable(), 0)
+        && t.checkExpect(start.onKeyEvent("r"), start);
+  }
+
+  // ---------- TESTS FOR DEADLOCKS ---------- //
+
+  // the yellow trophy can only be pushed along the corridor, and the box sits in a
+  // corner
+  Level corridor = new Level("_______\n" + "_Y_____\n" + "_______\n" + "_______",
+      "WWWWWWW\n" + "W_y>__W\n" + "W____BW\n" + "WWWWWWW");
+
+  boolean testPlaneDiff(Tester t) {
+    byte[] bytes = new byte[5000];
+    Plane plane = new Plane(bytes);
+    Plane changed = plane.with(new int[] { 3, 70, 4999 }, new byte[] { 1, 2, 3 }, 3);
+    return t.checkExpect(plane.diff(changed), new int[] { 3, 70, 4999 })
+        && t.checkExpect(changed.diff(plane), new int[] { 3, 70, 4999 })
+        && t.checkExpect(plane.diff(plane), new int[] {})
+        && t.checkExpect(changed.diff(changed.with(new int[] { 70 }, new byte[] { 2 }, 1)),
+            new int[] {})
+        && t.checkExpect(this.testLevel3.board.content.diff(
+            this.testLevel3.newLevelHorizontal(0, 1).board.content), new int[] {})
+        && t.checkExpect(this.testLevel.board.content.diff(
+            this.testLevel.newLevelHorizontal(0, -1).board.content), new int[] { 25, 26, 27 })
+        && t.checkException(
+            new IllegalArgumentException("planes of different lengths cannot be compared"), plane,
+            "diff", new Plane(new byte[3]));
+  }
+
+  boolean testDeadSquares(Tester t) {
+    Deadlocks corridor = new Deadlocks(this.corridor.board);
+    int yellow = PieceColor.YELLOW.ordinal();
+    return t.checkExpect(corridor.deadSquare(yellow, this.corridor.board.index(1, 1)), false)
+        && t.checkExpect(corridor.deadSquare(yellow, this.corridor.board.index(1, 4)), false)
+        // nothing can be pushed back out of the corner or off the bottom wall
+        && t.checkExpect(corridor.deadSquare(yellow, this.corridor.board.index(2, 5)), true)
+        && t.checkExpect(corridor.deadSquare(yellow, this.corridor.board.index(2, 1)), true)
+        // there are no red targets
+        && t.checkExpect(corridor.deadSquare(PieceColor.RED.ordinal(),
+            this.corridor.board.index(1, 1)), true);
+  }
+
+  boolean testIsLost(Tester t) {
+    Level pushedPast = new Level("_______\n" + "__Y____\n" + "_______\n" + "_______",
+        "WWWWWWW\n" + "W>y___W\n" + "W_____W\n" + "WWWWWWW").newLevelHorizontal(0, 1)
+            .newLevelHorizontal(0, 1).newLevelHorizontal(0, 1);
+    Level boxOnTarget = new Level("______\n" + "____Y_\n" + "______\n" + "______\n" + "______",
+        "WWWWWW\n" + "W_>B_W\n" + "W__y_W\n" + "W____W\n" + "WWWWWW");
+    return t.checkExpect(this.corridor.isLost(), false)
+        && t.checkExpect(this.testLevelAlmostWon.isLost(), false)
+        // the yellow trophy and the box hold each other in place between the walls
+        && t.checkExpect(this.testLevel.isLost(), true)
+        && t.checkExpect(this.testLevel3.isLost(), true)
+        // there are no yellow or blue trophies
+        && t.checkExpect(this.withIceBig.isLost(), true)
+        && t.checkExpect(this.noPlayer.isLost(), true)
+        // the only yellow trophy was pushed past its target into the corner
+        && t.checkExpect(pushedPast.isLost(), true)
+        // a box pushed into the dead end covers the only target for good
+        && t.checkExpect(boxOnTarget.isLost(), false)
+        && t.checkExpect(boxOnTarget.newLevelHorizontal(0, 1).isLost(), true)
+        // there is no yellow trophy left for the yellow target
+        && t.checkExpect(this.moreTarThanTrop.isLost(), true)
+        // the green trophy is stuck in the corner on the yellow target
+        && t.checkExpect(this.wrongColors.isLost(), true);
+  }
+
+  boolean testWorldLost(Tester t) {
+    SokobanWorld start = new SokobanWorld(new Level(
+        "______\n" + "____Y_\n" + "______\n" + "______\n" + "______",
+        "WWWWWW\n" + "W_>B_W\n" + "W__y_W\n" + "W____W\n" + "WWWWWW"));
+    SokobanWorld pushed = start.onKeyEvent("right");
+    SokobanWorld undone = pushed.onKeyEvent("u");
+    SokobanWorld redone = undone.onKeyEvent("r");
+    return t.checkExpect(start.lost, false)
+        && t.checkExpect(start.onKeyEvent("down").lost, false)
+        && t.checkExpect(pushed.lost, true)
+        && t.checkExpect(pushed.onKeyEvent("down").lost, true)
+        && t.checkExpect(undone.lost, false)
+        && t.checkExpect(redone.lost, true)
+        && t.checkExpect(new SokobanWorld(this.testLevel).lost, true)
+        // the dead squares are worked out once for the level and shared by every move
+        && t.checkExpect(redone.curr.deadlocks == start.curr.deadlocks, true)
+        && t.checkExpect(pushed.curr.deadlocks, new Deadlocks(pushed.curr.board));
+  }
+
+  boolean testIsLostAfterMove(Tester t) {
+    Deadlocks corridor = new Deadlocks(this.corridor.board);
+    Board start = this.corridor.board;
+    Board toTarget = start.move(0, -1);
+    Board boxDown = start.move(1, 0).move(0, 1);
+    Board intoHole = this.withHole.board.move(1, 0);
+    Level trophyInHole = new Level("_______\n" + "_____Y_\n" + "_______",
+        "WWWWWWW\n" + "W>yh__W\n" + "WWWWWWW");
+    return t.checkExpect(corridor.isLost(start, toTarget), false)
+        && t.checkExpect(corridor.isLost(start, start.move(0, 1)), false)
+        && t.checkExpect(corridor.isLost(start.move(0, 1), start.move(0, 1).move(0, 1)), false)
+        && t.checkExpect(corridor.isLost(start.move(1, 0), boxDown), false)
+        && t.checkExpect(new Deadlocks(this.withHole.board).isLost(this.withHole.board, intoHole),
+            true)
+        && t.checkExpect(new Deadlocks(trophyInHole.board).isLost(trophyInHole.board,
+            trophyInHole.board.move(0, 1)), true)
+        && t.checkExpect(corridor.isLost(toTarget, toTarget.move(0, 1)), false);
+  }
+
+  boolean testTileSet(Tester t) {
+    TileSet set = new TileSet();
+    boolean added = true;
+    for (int i = 0; i < 1000; i += 7) {
+      added = added && set.add(i);
+    }
+    boolean filled = t.checkExpect(added, true)
+        && t.checkExpect(set.size, 143)
+        && t.checkExpect(set.add(14), false)
+        && t.checkExpect(set.contains(994), true)
+        && t.checkExpect(set.contains(995), false)
+        && t.checkExpect(set.members[2], 14);
+    set.clear();
+    boolean cleared = t.checkExpect(set.size, 0)
+        && t.checkExpect(set.contains(14), false)
+        && t.checkExpect(set.slots, new int[set.slots.length])
+        && t.checkExpect(set.add(14), true);
+    return filled && cleared;
+  }
+
+  // returns a level of the given size whose rows below the first are filled with
+  // yellow trophies, with a yellow target left empty on the first row
+  Level trophyBlock(int rows, int cols) {
+    StringBuilder ground = new StringBuilder();
+    StringBuilder content = new StringBuilder();
+    for (int y = 0; y < rows; y += 1) {
+      for (int x = 0; x < cols; x += 1) {
+        boolean edge = y == 0 || x == 0 || y == rows - 1 || x == cols - 1;
+        ground.append(y == 1 && x == 3 ? 'Y' : '_');
+        content.append(edge ? 'W' : (y == 1 ? (x == 1 ? '>' : '_') : 'y'));
+      }
+      ground.append('\n');
+      content.append('\n');
+    }
+    return new Level(ground.toString(), content.toString());
+  }
+
+  boolean testIsLostBlock(Tester t) {
+    Level block = this.trophyBlock(302, 302);
+    // every trophy holds the ones around it in place, so none can reach the target
+    return t.checkExpect(block.isLost(), true)
+        && t.checkExpect(this.trophyBlock(5, 5).isLost(), true);
+  }
+
+  // ---------- TESTS FOR STATE HASHING ---------- //
+
+  boolean testStateHash(Tester t) {
+    Level moved = this.testLevel3.newLevelVertical(1, 0).newLevelHorizontal(0, 1);
+    Level otherWay = this.testLevel3.newLevelHorizontal(0, 1).newLevelVertical(1, 0);
+    Level pushed = this.testLevelAlmostWon.newLevelVertical(-1, 0);
+    Level intoHole = this.withHole.newLevelVertical(1, 0);
+
+    // the running hash always matches the hash of the planes from scratch
+    return t.checkExpect(pushed.stateHash(),
+        Board.hashOf(pushed.board.ground, pushed.board.content))
+        && t.checkExpect(intoHole.stateHash(),
+            Board.hashOf(intoHole.board.ground, intoHole.board.content))
+        // the same state reached in a different order has the same hash
+        && t.checkExpect(this.testLevelAlmostWon.newLevelHorizontal(0, 1)
+            .newLevelHorizontal(0, -1).stateHash(), this.testLevelAlmostWon.stateHash())
+        && t.checkExpect(moved.stateHash(), otherWay.stateHash())
+        // moving the player, pushing a trophy and falling into a hole all change it
+        && t.checkExpect(pushed.stateHash() == this.testLevelAlmostWon.stateHash(), false)
+        && t.checkExpect(intoHole.stateHash() == this.withHole.stateHash(), false)
+        && t.checkExpect(this.testLevelAlmostWon.newLevelHorizontal(0, 1).stateHash()
+            == this.testLevelAlmostWon.stateHash(), false)
+        // the color of a trophy is part of the hash
+        && t.checkExpect(this.wrongColors.stateHash() == this.testLevelWon.stateHash(), false)
+        && t.checkExpect(Board.zobrist(5, Board.CONTENT_BLANK, false), 0L)
+        && t.checkExpect(Board.zobrist(5, Board.CONTENT_BOX, false)
+            == Board.zobrist(5, Board.CONTENT_BOX, true), false);
+  }
+
+  // ---------- TESTS FOR SHARED PIECES ---------- //
+
+  boolean testSharedPieces(Tester t) {
+    Utils u = new Utils();
+    return t.checkExpect(u.charToGroundContent("R") == Pieces.target(PieceColor.RED), true)
+        && t.checkExpect(u.charToGroundContent("I") == u.charToGroundContent("I"), true)
+        && t.checkExpect(u.charToLevelContent("b") == Pieces.trophy(PieceColor.BLUE), true)
+        && t.checkExpect(u.charToLevelContent("^") == u.charToLevelContent(">"), true)
+        && t.checkExpect(new Box().changeToBlank() == Pieces.BLANK, true)
+        // unpacking a board hands out the shared pieces
+        && t.checkExpect(this.testLevel.cellAt(2, 3).l == Pieces.trophy(PieceColor.RED), true)
+        && t.checkExpect(this.testLevel.cellAt(0, 2).l == Pieces.WALL, true)
+        && t.checkExpect(u.codeToGroundContent(Board.GROUND_ICE) == Pieces.ICE, true)
+        // shared pieces are still the same as ones made on their own
+        && t.checkExpect(Pieces.target(PieceColor.GREEN), new Target("green"))
+        && t.checkExpect(Pieces.trophy(PieceColor.YELLOW), new Trophy(PieceColor.YELLOW));
+  }
+
+  boolean testPieceColor(Tester t) {
+    return t.checkExpect(PieceColor.fromName("blue"), PieceColor.BLUE)
+        && t.checkExpect(new Target("red").color, PieceColor.RED)
+        && t.checkExpect(PieceColor.RED.targetImage, "red_target.png")
+        && t.checkExpect(PieceColor.YELLOW.trophyImage, "yellow_trophy.png")
+        && t.checkExpect(new Trophy("green").renderPiece(), new FromFileImage("green_trophy.png"))
+        && t.checkExpect(Pieces.target(PieceColor.BLUE).emptyTarget(Pieces.trophy(PieceColor.BLUE)),
+            false)
+        && t.checkException(new IllegalArgumentException("not a color of a target or trophy: pink"),
+            PieceColor.RED, "fromName", "pink");
+  }
+
+  // ---------- TESTS FOR THE MOVE KERNEL ---------- //
+
+  boolean testMoveKernelLongSlide(Tester t) {
+    // a corridor of 5000 pieces of ice is crossed in a single move without recursion
+    String ice = "";
+    String blank = "";
+    for (int i = 0; i < 5000; i += 1) {
+      ice += "I";
+      blank += "_";
+    }
+    Level corridor = new Level("_" + ice + "__", ">" + blank + "_W");
+    Level slid = corridor.newLevelHorizontal(0, 1);
+
+    return t.checkExpect(slid.playerPos, new Posn(5001, 0))
+        && t.checkExpect(slid.board.contentAt(0, 5001), Board.CONTENT_PLAYER)
+        && t.checkExpect(slid.board.contentAt(0, 0), Board.CONTENT_BLANK)
+        && t.checkExpect(slid.board.findPlayer(), 5001)
+        // sliding back the other way stops on the edge of the board
+        && t.checkExpect(slid.newLevelHorizontal(0, -1).playerPos, new Posn(1, 0));
+  }
+
+  boolean testMoveKernelPieceSlidesIntoHole(Tester t) {
+    // a piece pushed onto the ice slides along it and fills the hole at its end
+    Level beforeHole = new Level("__III__\n_______", ">r___h_\nWWWWWWW");
+
+    Level afterHole = beforeHole.newLevelHorizontal(0, 1);
+
+    return t.checkExpect(afterHole.board.contentAt(0, 1), Board.CONTENT_PLAYER)
+        && t.checkExpect(afterHole.board.contentAt(0, 5), Board.CONTENT_BLANK)
+        && t.checkExpect(afterHole.board.contentAt(0, 2), Board.CONTENT_BLANK)
+        && t.checkExpect(afterHole.board.groundAt(0, 5), Board.GROUND_BLANK);
+  }
+
+  boolean testMoveKernelSameInEveryDirection(Tester t) {
+    // the kernel moves the player the same way whichever way the level is turned
+    Level across = new Level("_IIII_\n______", ">____W\nWWWWWW");
+    Level down = new Level("__\nI_\nI_\nI_\nI_\n__", "vW\n_W\n_W\n_W\n_W\nWW");
+
+    return t.checkExpect(across.newLevelHorizontal(0, 1).playerPos, new Posn(4, 0))
+        && t.checkExpect(down.newLevelVertical(1, 0).playerPos, new Posn(0, 4))
+        && t.checkExpect(across.board.move(0, 1), across.newLevelHorizontal(0, 1).board)
+        && t.checkExpect(down.board.move(1, 0), down.newLevelVertical(1, 0).board)
+        // a blocked move gives back the very same board
+        && t.checkExpect(across.board.move(0, -1) == across.board, true)
+        && t.checkExpect(this.noPlayer.board.move(1, 0) == this.noPlayer.board, true);
+  }
+
   // ---------- TESTS FOR SIMPLE MOVEMENT ---------- //
 
   boolean testMovePlayerRight(Tester t) {
@@ -2113,59 +3657,59 @@ class ExamplesSokoban {
   // ---------- TESTS FOR ICE HELPERS ---------- //
   // there are 3 ice blocks to the right of the player
   boolean testCountIceHorizontal(Tester t) {
-    return t.checkExpect(withIceTrophy.countIceHorizontal(withIceBig.board.get(4), 1), 3);
+    return t.checkExpect(withIceTrophy.countIceHorizontal(withIceBig.row(4), 1), 3);
   }
 
   // there is no ice to the left of the player
   boolean testCountNoIceHorizontal(Tester t) {
-    return t.checkExpect(withSlipNSlide.countIceHorizontal(withSlipNSlide.board.get(4), -1), 0);
+    return t.checkExpect(withSlipNSlide.countIceHorizontal(withSlipNSlide.row(4), -1), 0);
   }
 
   // there is no ice beneath the player
   boolean testCountNoIceVertical(Tester t) {
-    return t.checkExpect(withVerticalIce.countIceVertical(withIceBig.board, 1), 0);
+    return t.checkExpect(withVerticalIce.countIceVertical(withIceBig.cells(), 1), 0);
   }
 
   // there are 3 ice blocks above the player, but the player can only move up 2
   // blocks,
   // so the method returns 2
   boolean testCountIceVertical(Tester t) {
-    return t.checkExpect(withVerticalIce.countIceVertical(withVerticalIce.board, -1), 2);
+    return t.checkExpect(withVerticalIce.countIceVertical(withVerticalIce.cells(), -1), 2);
   }
 
   // there is ice to the right of the player with a movable object on top of the
   // ice
   boolean testIceWithMovableHorizontal(Tester t) {
-    return t.checkExpect(withIceTrophy2.iceWithMovableHorizontal(withIceTrophy2.board.get(4), 1),
+    return t.checkExpect(withIceTrophy2.iceWithMovableHorizontal(withIceTrophy2.row(4), 1),
         true);
   }
 
   // there is NO ice to the left of the player with a movable object on top of the
   // ice
   boolean testNoIceWithMovableHorizontal(Tester t) {
-    return t.checkExpect(withVerticalIce.iceWithMovableHorizontal(withIceTrophy2.board.get(4), -1),
+    return t.checkExpect(withVerticalIce.iceWithMovableHorizontal(withIceTrophy2.row(4), -1),
         false);
   }
 
   // there is ice to the right of the player with NO movable objects on top of the
   // ice
   boolean testIceWithNoMovableHorizontal(Tester t) {
-    return t.checkExpect(withIce.iceWithMovableHorizontal(withIce.board.get(2), 1), false);
+    return t.checkExpect(withIce.iceWithMovableHorizontal(withIce.row(2), 1), false);
   }
 
   // there is ice above the player with a movable object on top of the ice
   boolean testIceWithMovableVertical(Tester t) {
-    return t.checkExpect(withVerticalIce.iceWithMovableVertical(withVerticalIce.board, -1), true);
+    return t.checkExpect(withVerticalIce.iceWithMovableVertical(withVerticalIce.cells(), -1), true);
   }
 
   // there is NO ice below the player with a movable object on top of the ice
   boolean testNoIceWithMovableVertical(Tester t) {
-    return t.checkExpect(withVerticalIce.iceWithMovableVertical(withVerticalIce.board, 1), false);
+    return t.checkExpect(withVerticalIce.iceWithMovableVertical(withVerticalIce.cells(), 1), false);
   }
 
   //there is ice below the player with NO movable object on top of the ice
   boolean testIceWithNoMovableVertical(Tester t) {
-    return t.checkExpect(withVerticalIce.iceWithMovableVertical(withVerticalIce.board, 1), false);
+    return t.checkExpect(withVerticalIce.iceWithMovableVertical(withVerticalIce.cells(), 1), false);
   }
 
   // ---------- TESTS FOR SCORE-KEEPING ---------- //
@@ -2182,8 +3726,8 @@ class ExamplesSokoban {
         "__WWW___\n" + "__W_WW__\n" + "WWWr_WWW\n" + "Wb__>ByW\n" + "WW__WWWW\n" + "_WWgW___\n"
             + "__WWW___");
 
-    SokobanWorld testWorldAfterMoveExpected = new SokobanWorld(testLevelAlmostWonRight, 
-        new SokobanWorld(testLevelAlmostWonLocal), new SokobanWorld(testLevelAlmostWonLocal), 1);
+    SokobanWorld testWorldAfterMoveExpected = new SokobanWorld(testLevelAlmostWonRight,
+        new Journal(), 1);
     
     SokobanWorld testWorld = new SokobanWorld(testLevelAlmostWonLocal);
 
@@ -2205,12 +3749,12 @@ class ExamplesSokoban {
         "__WWW___\n" + "__W_WW__\n" + "WWWr_WWW\n" + "Wb__>ByW\n" + "WW__WWWW\n" + "_WWgW___\n"
             + "__WWW___");
 
-    SokobanWorld testWorldUndone = new SokobanWorld(testLevelAlmostWonLocal);
-
-    SokobanWorld testWorld = new SokobanWorld(testLevelAlmostWonRight, testWorldUndone,
-        testWorldUndone, 1);
+    SokobanWorld testWorld = new SokobanWorld(testLevelAlmostWonLocal).onKeyEvent("right");
 
-    return t.checkExpect(testWorld.onKeyEvent("u").score, testWorldUndone.score);
+    // undoing a move costs a move of its own
+    return t.checkExpect(testWorld.curr, testLevelAlmostWonRight)
+        && t.checkExpect(testWorld.onKeyEvent("u").score, 2)
+        && t.checkExpect(testWorld.onKeyEvent("u").onKeyEvent("r").score, 3);
 
   }
 
@@ -2229,12 +3773,14 @@ class ExamplesSokoban {
         "__WWW___\n" + "__W_WW__\n" + "WWWr_WWW\n" + "Wb__>ByW\n" + "WW__WWWW\n" + "_WWgW___\n"
             + "__WWW___");
 
-    SokobanWorld testWorldUndone = new SokobanWorld(testLevelAlmostWonLocal);
+    SokobanWorld testWorld = new SokobanWorld(testLevelAlmostWonLocal).onKeyEvent("right");
+    SokobanWorld testWorldUndone = testWorld.onKeyEvent("u");
 
-    SokobanWorld testWorld = new SokobanWorld(testLevelAlmostWonRight, testWorldUndone,
-        testWorldUndone, 1);
-
-    return t.checkExpect(testWorld.onKeyEvent("u"), testWorldUndone);
+    return t.checkExpect(testWorld.curr, testLevelAlmostWonRight)
+        && t.checkExpect(testWorldUndone.curr, testLevelAlmostWonLocal)
+        && t.checkExpect(testWorldUndone.journal.undoable(), 0)
+        && t.checkExpect(testWorldUndone.journal.redoable(), 1)
+        && t.checkExpect(testWorldUndone.onKeyEvent("r").curr, testLevelAlmostWonRight);
   }
 
   boolean testMovePlayerDownAndUndo(Tester t) {
@@ -2251,12 +3797,11 @@ class ExamplesSokoban {
         "__WWW___\n" + "__W_WW__\n" + "WWWr_WWW\n" + "Wb___ByW\n" + "WW_>WWWW\n" + "_WWgW___\n"
             + "__WWW___");
 
-    SokobanWorld testWorldUndone = new SokobanWorld(testLevelAlmostWonLocal);
-
-    SokobanWorld testWorld = new SokobanWorld(testLevelAlmostWonDown, testWorldUndone,
-        testWorldUndone, 1);
+    SokobanWorld testWorld = new SokobanWorld(testLevelAlmostWonLocal).onKeyEvent("down");
 
-    return t.checkExpect(testWorld.onKeyEvent("u"), testWorldUndone);
+    return t.checkExpect(testWorld.curr, testLevelAlmostWonDown)
+        && t.checkExpect(testWorld.onKeyEvent("u").curr, testLevelAlmostWonLocal)
+        && t.checkExpect(testWorld.onKeyEvent("u").onKeyEvent("r").curr, testLevelAlmostWonDown);
   }
 
   boolean testTrophyInHoleAndUndo(Tester t) {
@@ -2268,17 +3813,16 @@ class ExamplesSokoban {
             + "__WWW___");
 
     Level testLevelWithTrophyInHole = new Level(
-        "________\n" + "___R____\n" + "________\n" + "_B____Y_\n" + "________\n" + "___G____\n"
+        "________\n" + "________\n" + "________\n" + "_B____Y_\n" + "________\n" + "___G____\n"
             + "________",
-        "__WWW___\n" + "__W_WW__\n" + "WWW>_WWW\n" + "Wb___ByW\n" + "WW_>WWWW\n" + "_WWgW___\n"
+        "__WWW___\n" + "__W_WW__\n" + "WWW>_WWW\n" + "Wb___ByW\n" + "WW__WWWW\n" + "_WWgW___\n"
             + "__WWW___");
 
-    SokobanWorld testWorldUndone = new SokobanWorld(testLevelAlmostWonLocal);
-
-    SokobanWorld testWorld = new SokobanWorld(testLevelWithTrophyInHole, testWorldUndone,
-        testWorldUndone, 1);
+    // the trophy fills the hole, and undoing brings back both the trophy and the hole
+    SokobanWorld testWorld = new SokobanWorld(testLevelAlmostWonLocal).onKeyEvent("up");
 
-    return t.checkExpect(testWorld.onKeyEvent("u"), testWorldUndone);
+    return t.checkExpect(testWorld.curr, testLevelWithTrophyInHole)
+        && t.checkExpect(testWorld.onKeyEvent("u").curr, testLevelAlmostWonLocal);
   }
   
 //TESTS FOR MOVING ON ICE 
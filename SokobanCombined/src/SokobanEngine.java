@@ -0,0 +1,666 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import tester.Tester;
+
+// represents a game of Sokoban played without a World: the state of the board is kept
+// in two flat arrays of codes that every move changes in place, by the same move
+// kernel as a Board, so bots and verification jobs can play without rendering or
+// javalib. Every change a move makes is logged with the codes it replaced, so moves
+// can be undone, and the logs only grow by doubling, so once they are large enough
+// playing a move allocates nothing.
+// INVARIANT: player, unsatisfied, remaining and hash always describe the current
+// ground and content codes, exactly as they would for a Board of them
+class GameEngine implements Tiles {
+  // the board the game started on, which gives the dimensions for the move kernel
+  Board start;
+  byte[] ground;
+  byte[] content;
+  // the index of the tile holding the player, or -1 if there is no player
+  int player;
+  // the number of targets of each color without a trophy of that color on top, and
+  // the number of those targets over all colors
+  int[] unsatisfied;
+  int remaining;
+  // the Zobrist hash of every non-blank code, see Board.zobrist
+  long hash;
+  // the log of changed tiles: the index of each and its codes before the change
+  int[] changedTiles;
+  byte[] changedGround;
+  byte[] changedContent;
+  int changes;
+  // the position in the log of changed tiles where each move that can be undone
+  // starts
+  int[] moveStarts;
+  int moves;
+  // the dead squares of the walls and targets, shared by every game of the level or
+  // worked out on the first isLost
+  Deadlocks deadlocks;
+  // lostAfter[m] tells whether the state after the first m moves that can be undone
+  // can no longer be won, as far as isLost has worked it out: one of UNKNOWN,
+  // PLAYABLE or LOST
+  byte[] lostAfter;
+
+  static final byte UNKNOWN = 0;
+  static final byte PLAYABLE = 1;
+  static final byte LOST = 2;
+
+  // creates a game of the given board, using the given dead squares of its walls and
+  // targets, where lost tells if the board can no longer be won
+  GameEngine(Board start, Deadlocks deadlocks, boolean lost) {
+    this(start);
+    this.deadlocks = deadlocks;
+    this.lostAfter[0] = lost ? LOST : PLAYABLE;
+  }
+
+  GameEngine(Board start) {
+    this.start = start;
+    this.ground = start.ground.toArray();
+    this.content = start.content.toArray();
+    this.player = start.player;
+    this.unsatisfied = start.unsatisfied.clone();
+    this.remaining = start.unsatisfiedTargets();
+    this.hash = start.hash;
+    this.changedTiles = new int[64];
+    this.changedGround = new byte[64];
+    this.changedContent = new byte[64];
+    this.changes = 0;
+    this.moveStarts = new int[16];
+    this.moves = 0;
+    this.lostAfter = new byte[17];
+  }
+
+  // returns the index of the direction named by the given move, one of "udlr"
+  static int direction(char move) {
+    switch (move) {
+      case 'u':
+        return 0;
+      case 'd':
+        return 1;
+      case 'l':
+        return 2;
+      case 'r':
+        return 3;
+      default:
+        throw new IllegalArgumentException("not a move: " + move);
+    }
+  }
+
+  // EFFECT: moves the player one tile in the direction named by the given move, one
+  // of "udlr". Returns true if the board changed, and only such a move can be undone
+  public boolean apply(char move) {
+    int d = direction(move);
+    if (this.player == -1) {
+      return false;
+    }
+    if (this.moves == this.moveStarts.length) {
+      this.moveStarts = Arrays.copyOf(this.moveStarts, this.moves * 2);
+      this.lostAfter = Arrays.copyOf(this.lostAfter, this.moves * 2 + 1);
+    }
+    int before = this.changes;
+    long hash = this.hash;
+    int cols = this.start.cols;
+    this.start.resolve(this, this.player / cols, this.player % cols, Solver.DY[d],
+        Solver.DX[d]);
+    if (this.hash == hash && this.sameAsLogged(before)) {
+      this.changes = before;
+      return false;
+    }
+    this.moveStarts[this.moves] = before;
+    this.moves += 1;
+    this.lostAfter[this.moves] = UNKNOWN;
+    return true;
+  }
+
+  // EFFECT: applies each of the given moves in order, and returns the number of
+  // them that changed the board
+  public int applyAll(CharSequence moves) {
+    int changed = 0;
+    for (int i = 0; i < moves.length(); i += 1) {
+      if (this.apply(moves.charAt(i))) {
+        changed += 1;
+      }
+    }
+    return changed;
+  }
+
+  // EFFECT: takes back the last move that changed the board and can still be
+  // undone. Returns false if there is none
+  public boolean undo() {
+    if (this.moves == 0) {
+      return false;
+    }
+    this.moves -= 1;
+    int first = this.moveStarts[this.moves];
+    // restore the tiles in the opposite order they were changed in, so a tile changed
+    // twice ends up with its codes from before the move
+    for (int k = this.changes - 1; k >= first; k -= 1) {
+      this.write(this.changedTiles[k], this.changedGround[k], this.changedContent[k]);
+    }
+    this.changes = first;
+    return true;
+  }
+
+  // returns true if the last move that can still be undone moved a box or a trophy,
+  // or dropped one into a hole
+  public boolean pushed() {
+    if (this.moves == 0) {
+      return false;
+    }
+    for (int k = this.moveStarts[this.moves - 1]; k < this.changes; k += 1) {
+      if (Board.canBePushed(this.changedContent[k])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // returns the number of moves that can be undone
+  public int undoable() {
+    return this.moves;
+  }
+
+  // EFFECT: forgets every move made so far, so they can no longer be undone and the
+  // log of changes starts over
+  public void clearHistory() {
+    this.lostAfter[0] = this.lostAfter[this.moves];
+    this.changes = 0;
+    this.moves = 0;
+  }
+
+  // returns true if every target has a trophy of its color on top
+  public boolean isWon() {
+    return this.remaining == 0;
+  }
+
+  // returns true if the game can no longer be won, see Deadlocks. Once it is known
+  // for some state in the history, only the tiles changed since then are looked
+  // at, so asking after every move costs about as much as the move. Otherwise every
+  // tile is looked at, without copying the board
+  public boolean isLost() {
+    if (this.player == -1) {
+      return true;
+    }
+    if (this.deadlocks == null) {
+      this.deadlocks = new Deadlocks(this.start);
+    }
+    int known = this.moves;
+    while (known > 0 && this.lostAfter[known] == UNKNOWN) {
+      known -= 1;
+    }
+    boolean lost;
+    if (this.lostAfter[known] == UNKNOWN) {
+      lost = this.deadlocks.isLost(this, this.player, this.unsatisfied);
+    }
+    else {
+      lost = this.lostAfter[known] == LOST || this.lostSince(this.moveStarts[known]);
+    }
+    this.lostAfter[this.moves] = lost ? LOST : PLAYABLE;
+    return lost;
+  }
+
+  // determines if the current state can no longer be won, given that the state
+  // before the changes logged from the given position on could still be won
+  boolean lostSince(int from) {
+    // sort the logged changes by tile and then by position in the log, so the first
+    // change of each tile holds its content code from before
+    long[] order = new long[this.changes - from];
+    for (int k = from; k < this.changes; k += 1) {
+      order[k - from] = ((long) this.changedTiles[k] << 32) | k;
+    }
+    Arrays.sort(order);
+    int[] changed = new int[order.length];
+    byte[] was = new byte[order.length];
+    int count = 0;
+    for (int j = 0; j < order.length; j += 1) {
+      int tile = (int) (order[j] >>> 32);
+      byte content = this.changedContent[(int) order[j]];
+      boolean first = j == 0 || tile != (int) (order[j - 1] >>> 32);
+      if (first && content != this.content[tile]) {
+        changed[count] = tile;
+        was[count] = content;
+        count += 1;
+      }
+    }
+    return this.deadlocks.isLost(this, this.player, this.unsatisfied, changed, was, count);
+  }
+
+  // returns the Zobrist hash of the current state, the same as the hash of its board
+  public long stateHash() {
+    return this.hash;
+  }
+
+  // returns a Board of the current state
+  public Board board() {
+    return new Board(this.start.rows, this.start.cols,
+        new Plane(this.ground), new Plane(this.content), this.player,
+        this.unsatisfied.clone(), this.hash);
+  }
+
+  // returns the ground code of the tile at the given index
+  public byte ground(int index) {
+    return this.ground[index];
+  }
+
+  // returns the content code of the tile at the given index
+  public byte content(int index) {
+    return this.content[index];
+  }
+
+  // EFFECT: changes the ground code of the tile at the given index, logging the
+  // codes it had before
+  public void setGround(int index, byte g) {
+    this.log(index);
+    this.write(index, g, this.content[index]);
+  }
+
+  // EFFECT: changes the content code of the tile at the given index, logging the
+  // codes it had before
+  public void setContent(int index, byte c) {
+    this.log(index);
+    this.write(index, this.ground[index], c);
+  }
+
+  // EFFECT: adds the codes the tile at the given index has now to the log of
+  // changes, doubling the log when it is full
+  void log(int index) {
+    if (this.changes == this.changedTiles.length) {
+      this.changedTiles = Arrays.copyOf(this.changedTiles, this.changes * 2);
+      this.changedGround = Arrays.copyOf(this.changedGround, this.changes * 2);
+      this.changedContent = Arrays.copyOf(this.changedContent, this.changes * 2);
+    }
+    this.changedTiles[this.changes] = index;
+    this.changedGround[this.changes] = this.ground[index];
+    this.changedContent[this.changes] = this.content[index];
+    this.changes += 1;
+  }
+
+  // EFFECT: sets both codes of the tile at the given index, updating the player,
+  // the counts of empty targets and the hash to match
+  void write(int index, byte g, byte c) {
+    byte oldGround = this.ground[index];
+    byte oldContent = this.content[index];
+    if (Board.emptyTarget(oldGround, oldContent)) {
+      this.unsatisfied[oldGround - Board.GROUND_TARGET] -= 1;
+      this.remaining -= 1;
+    }
+    if (Board.emptyTarget(g, c)) {
+      this.unsatisfied[g - Board.GROUND_TARGET] += 1;
+      this.remaining += 1;
+    }
+    this.hash ^= Board.zobrist(index, oldGround, true) ^ Board.zobrist(index, g, true)
+        ^ Board.zobrist(index, oldContent, false) ^ Board.zobrist(index, c, false);
+    this.ground[index] = g;
+    this.content[index] = c;
+    if (c == Board.CONTENT_PLAYER) {
+      this.player = index;
+    }
+    else if (index == this.player) {
+      this.player = -1;
+    }
+  }
+
+  // determines if every tile logged from the given position on has the codes it
+  // was logged with, so the changes since then made no difference
+  boolean sameAsLogged(int from) {
+    for (int k = from; k < this.changes; k += 1) {
+      int i = this.changedTiles[k];
+      if (this.ground[i] != this.changedGround[k] || this.content[i] != this.changedContent[k]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
+
+// represents the outcome of checking a solution
+class VerifierResult {
+  // true if the moves won the level
+  boolean won;
+  // the number of legal moves made, and how many of them pushed a piece
+  long moves;
+  long pushes;
+  // why the check stopped before the moves ran out, or null if it did not
+  String problem;
+
+  VerifierResult(boolean won, long moves, long pushes, String problem) {
+    this.won = won;
+    this.moves = moves;
+    this.pushes = pushes;
+    this.problem = problem;
+  }
+
+  // returns a one line summary of this result
+  public String report() {
+    String counts = this.moves + " moves with " + this.pushes + " pushes";
+    if (this.won) {
+      return "won in " + counts;
+    }
+    else if (this.problem != null) {
+      return "stopped after " + counts + ": " + this.problem;
+    }
+    else {
+      return "not won after " + counts;
+    }
+  }
+}
+
+// checks solutions by playing their moves on a GameEngine as they are read, so a
+// solution of any length is checked in constant memory: the moves are read through a
+// fixed buffer or a sliding window of a mapped file, and the engine forgets each move
+// once it is made. A solution is a sequence of u, d, l and r in either case, as in
+// the usual LURD notation where capitals mark pushes, and whitespace between moves is
+// skipped. Checking stops at the first character that is not a move, the first move
+// that is blocked, the first move that loses the level (the player falls into a hole
+// or a push leaves the level impossible to win, see Deadlocks), or as soon as the
+// level is won, and anything after that is not read
+class SolutionVerifier {
+  // the number of characters read from a Reader at a time
+  static final int BUFFER_CHARS = 8192;
+
+  // the most bytes of a file mapped at a time
+  long windowBytes;
+
+  SolutionVerifier(long windowBytes) {
+    if (windowBytes <= 0) {
+      throw new IllegalArgumentException("the window must hold at least one byte");
+    }
+    this.windowBytes = windowBytes;
+  }
+
+  // creates a verifier that maps files 64 MB at a time
+  SolutionVerifier() {
+    this(1L << 26);
+  }
+
+  // returns the outcome of playing the moves read from the given reader on the given
+  // board
+  public VerifierResult verify(Board start, Reader moves) throws IOException {
+    Verification check = new Verification(start);
+    char[] buffer = new char[BUFFER_CHARS];
+    int read = moves.read(buffer);
+    while (read != -1 && check.playing()) {
+      for (int i = 0; i < read && check.playing(); i += 1) {
+        check.play(buffer[i]);
+      }
+      read = moves.read(buffer);
+    }
+    return check.result();
+  }
+
+  // returns the outcome of playing the moves in the given file, one byte per move,
+  // on the given board
+  public VerifierResult verifyFile(Board start, Path file) throws IOException {
+    Verification check = new Verification(start);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      for (long at = 0; at < size && check.playing(); at += this.windowBytes) {
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, at,
+            Math.min(this.windowBytes, size - at));
+        while (window.hasRemaining() && check.playing()) {
+          check.play((char) (window.get() & 0xFF));
+        }
+      }
+    }
+    return check.result();
+  }
+}
+
+// represents a solution being checked, one character at a time
+class Verification {
+  GameEngine engine;
+  long moves;
+  long pushes;
+  String problem;
+
+  Verification(Board start) {
+    this.engine = new GameEngine(start);
+    this.moves = 0;
+    this.pushes = 0;
+    this.problem = null;
+  }
+
+  // returns true if more moves can still be played
+  boolean playing() {
+    return this.problem == null && !this.engine.isWon();
+  }
+
+  // EFFECT: plays the move named by the given character, or records why it cannot be
+  // played or why it lost the level
+  void play(char c) {
+    if (Character.isWhitespace(c)) {
+      return;
+    }
+    char move = Character.toLowerCase(c);
+    if (Solver.MOVES.indexOf(move) == -1) {
+      this.problem = "not a move: " + c;
+      return;
+    }
+    if (!this.engine.apply(move)) {
+      this.problem = this.which(this.moves + 1, c) + " is blocked";
+      return;
+    }
+    this.moves += 1;
+    if (this.engine.pushed()) {
+      this.pushes += 1;
+    }
+    // asked after every move, this only looks at the tiles the move changed
+    boolean lost = !this.engine.isWon() && this.engine.isLost();
+    // the moves are never undone, so there is no need to keep their changes
+    this.engine.clearHistory();
+    if (lost) {
+      this.problem = this.which(this.moves, c) + " loses the level";
+    }
+  }
+
+  // returns how a problem names the move with the given number, played as the given
+  // character
+  String which(long number, char c) {
+    return "move " + number + " (" + c + ")";
+  }
+
+  // returns the outcome of the moves played so far
+  VerifierResult result() {
+    return new VerifierResult(this.engine.isWon(), this.moves, this.pushes, this.problem);
+  }
+}
+
+class ExamplesGameEngine {
+  ExamplesSokoban examples = new ExamplesSokoban();
+
+  boolean testEngineMoves(Tester t) {
+    Level level = this.examples.testLevelAlmostWon;
+    GameEngine engine = new GameEngine(level.board);
+    boolean moved = engine.apply('l');
+    return t.checkExpect(moved, true)
+        && t.checkExpect(engine.board(), level.board.move(0, -1))
+        && t.checkExpect(engine.stateHash(), level.board.move(0, -1).hash)
+        // pushing the trophy into the wall changes nothing and cannot be undone
+        && t.checkExpect(engine.apply('l'), false)
+        && t.checkExpect(engine.undoable(), 1)
+        && t.checkExpect(engine.board(), level.board.move(0, -1).move(0, -1));
+  }
+
+  boolean testEngineMatchesBoards(Tester t) {
+    String moves = "rrdlluurrddllurdlurrrruuuldddl";
+    boolean same = true;
+    Level[] levels = new Level[] { this.examples.testLevel, this.examples.withIce,
+        this.examples.withIceBig, this.examples.withIceTrophy, this.examples.withHole };
+    for (Level level : levels) {
+      GameEngine engine = new GameEngine(level.board);
+      Board board = level.board;
+      for (int i = 0; i < moves.length(); i += 1) {
+        int d = GameEngine.direction(moves.charAt(i));
+        board = board.move(Solver.DY[d], Solver.DX[d]);
+        engine.apply(moves.charAt(i));
+        same = same && t.checkExpect(engine.board(), board)
+            && t.checkExpect(engine.isWon(), board.unsatisfiedTargets() == 0);
+      }
+    }
+    return same;
+  }
+
+  boolean testEngineUndo(Tester t) {
+    Level level = this.examples.withIceTrophy;
+    GameEngine engine = new GameEngine(level.board);
+    int changed = engine.applyAll("rrdlluurrddl");
+    boolean undone = true;
+    while (engine.undo()) {
+      undone = undone && engine.undoable() >= 0;
+    }
+    GameEngine replayed = new GameEngine(level.board);
+    replayed.applyAll("rrdlluurrddl");
+    replayed.undo();
+    GameEngine once = new GameEngine(level.board);
+    once.applyAll("rrdlluurrddl");
+    return t.checkExpect(undone, true)
+        && t.checkExpect(engine.undoable(), 0)
+        && t.checkExpect(engine.board(), level.board)
+        && t.checkExpect(engine.stateHash(), level.board.hash)
+        && t.checkExpect(engine.undo(), false)
+        && t.checkExpect(changed, once.undoable())
+        && t.checkExpect(replayed.undoable(), changed - 1)
+        && t.checkExpect(once.undo(), true)
+        && t.checkExpect(once.board(), replayed.board());
+  }
+
+  boolean testEngineWonAndLost(Tester t) {
+    GameEngine almostWon = new GameEngine(this.examples.testLevelAlmostWon.board);
+    GameEngine intoHole = new GameEngine(this.examples.withHole.board);
+    GameEngine won = new GameEngine(this.examples.testLevelAlmostWon.board);
+    won.applyAll(new Solver().solve(this.examples.testLevelAlmostWon).moves);
+    return t.checkExpect(almostWon.isWon(), false)
+        && t.checkExpect(almostWon.isLost(), this.examples.testLevelAlmostWon.isLost())
+        && t.checkExpect(won.isWon(), true)
+        && t.checkExpect(won.isLost(), false)
+        && t.checkExpect(intoHole.isLost(), false);
+  }
+
+  boolean testEngineLostAfterMoves(Tester t) {
+    String moves = "rrdlluurrddllurdlurrrruuuldddl";
+    boolean same = true;
+    Level[] levels = new Level[] { this.examples.testLevel, this.examples.withIce,
+        this.examples.withIceTrophy, this.examples.withHole, this.examples.corridor };
+    for (Level level : levels) {
+      Deadlocks deadlocks = new Deadlocks(level.board);
+      GameEngine engine = new GameEngine(level.board, deadlocks, level.isLost());
+      for (int i = 0; i < moves.length(); i += 1) {
+        engine.apply(moves.charAt(i));
+        // every other move is asked about, so some checks cover two moves
+        if (i % 2 == 1) {
+          same = same && t.checkExpect(engine.isLost(), deadlocks.isLost(engine.board()));
+        }
+        if (i % 7 == 6) {
+          engine.undo();
+          same = same && t.checkExpect(engine.isLost(), deadlocks.isLost(engine.board()));
+        }
+        if (i % 11 == 10) {
+          engine.clearHistory();
+        }
+      }
+    }
+    return same;
+  }
+
+  boolean testEngineErrors(Tester t) {
+    GameEngine engine = new GameEngine(this.examples.testLevelAlmostWon.board);
+    GameEngine none = new GameEngine(this.examples.noPlayer.board);
+    return t.checkException(new IllegalArgumentException("not a move: x"), engine, "applyAll",
+        "lx")
+        && t.checkExpect(engine.undoable(), 1)
+        && t.checkExpect(none.apply('u'), false)
+        && t.checkExpect(none.isLost(), true)
+        && t.checkExpect(none.board(), this.examples.noPlayer.board);
+  }
+
+  boolean testEngineHistory(Tester t) {
+    GameEngine engine = new GameEngine(this.examples.withIceBig.board);
+    StringBuilder moves = new StringBuilder();
+    for (int i = 0; i < 500; i += 1) {
+      moves.append("rdlu".charAt(i % 4));
+    }
+    engine.applyAll(moves);
+    Board after = engine.board();
+    int undoable = engine.undoable();
+    engine.clearHistory();
+    return t.checkExpect(undoable > 0, true)
+        && t.checkExpect(engine.undo(), false)
+        && t.checkExpect(engine.board(), after);
+  }
+}
+
+class ExamplesVerifier {
+  ExamplesSolver levels = new ExamplesSolver();
+  SolutionVerifier verifier = new SolutionVerifier();
+
+  // returns the outcome of checking the given moves on the given level
+  VerifierResult check(Level level, String moves) throws IOException {
+    return this.verifier.verify(level.board, new StringReader(moves));
+  }
+
+  boolean testVerifyWins(Tester t) throws IOException {
+    Level fill = this.levels.fillTheHole;
+    return t.checkExpect(this.check(fill, "rrrr"), new VerifierResult(true, 4, 3, null))
+        && t.checkExpect(this.check(fill, "rrrr").report(), "won in 4 moves with 3 pushes")
+        // capitals and whitespace are allowed
+        && t.checkExpect(this.check(fill, "R r\nRR\n"), new VerifierResult(true, 4, 3, null))
+        // nothing after the win is read
+        && t.checkExpect(this.check(fill, "rrrrx"), new VerifierResult(true, 4, 3, null))
+        && t.checkExpect(this.check(this.levels.alreadyWon, "x"),
+            new VerifierResult(true, 0, 0, null))
+        && t.checkExpect(this.check(fill, "rr"), new VerifierResult(false, 2, 1, null))
+        && t.checkExpect(this.check(fill, "rr").report(), "not won after 2 moves with 1 pushes");
+  }
+
+  boolean testVerifyProblems(Tester t) throws IOException {
+    Level fill = this.levels.fillTheHole;
+    return t.checkExpect(this.check(fill, "rxr"),
+        new VerifierResult(false, 1, 1, "not a move: x"))
+        && t.checkExpect(this.check(fill, "rd"),
+            new VerifierResult(false, 1, 1, "move 2 (d) is blocked"))
+        && t.checkExpect(this.check(fill, "rd").report(),
+            "stopped after 1 moves with 1 pushes: move 2 (d) is blocked")
+        // the player falls into a hole
+        && t.checkExpect(this.check(this.levels.aroundHoles, "d"),
+            new VerifierResult(false, 1, 0, "move 1 (d) loses the level"))
+        // the only trophy is pushed where it can never satisfy a target
+        && t.checkExpect(this.check(this.levels.cannotWin, "rl"),
+            new VerifierResult(false, 1, 1, "move 1 (r) loses the level"));
+  }
+
+  boolean testVerifyLongStream(Tester t) throws IOException {
+    StringBuilder moves = new StringBuilder();
+    for (int i = 0; i < 100000; i += 1) {
+      moves.append("lr");
+    }
+    moves.append("d");
+    return t.checkExpect(this.check(this.levels.aroundHoles, moves.toString()),
+        new VerifierResult(false, 200001, 0, "move 200001 (d) loses the level"));
+  }
+
+  boolean testVerifyFile(Tester t) throws IOException {
+    Path file = Files.createTempFile("solution", ".txt");
+    try {
+      Files.write(file, "r r\nr\nr".getBytes(StandardCharsets.US_ASCII));
+      Board fill = this.levels.fillTheHole.board;
+      // a window of a few bytes makes the moves span several mappings
+      return t.checkExpect(new SolutionVerifier(3).verifyFile(fill, file),
+          new VerifierResult(true, 4, 3, null))
+          && t.checkExpect(this.verifier.verifyFile(fill, file),
+              new VerifierResult(true, 4, 3, null))
+          && t.checkConstructorException(
+              new IllegalArgumentException("the window must hold at least one byte"),
+              "SolutionVerifier", 0L);
+    }
+    finally {
+      Files.delete(file);
+    }
+  }
+}
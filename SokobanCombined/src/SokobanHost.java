@@ -0,0 +1,410 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import tester.Tester;
+
+// represents a level that a GameHost starts sessions on: its starting board and the
+// dead squares of its walls and targets, worked out once for every session on it
+class HostedLevel {
+  Board start;
+  Deadlocks deadlocks;
+  // true if the starting board can no longer be won
+  boolean lost;
+
+  HostedLevel(Board start) {
+    this.start = start;
+    this.deadlocks = new Deadlocks(start);
+    this.lost = this.deadlocks.isLost(start);
+  }
+}
+
+// represents one game played on a GameHost. A session is only its engine, which
+// shares the starting board and the dead squares of its level with every other
+// session on that level, so an idle session costs little more than two arrays the
+// size of the board, and its status only looks at the tiles its moves changed
+class GameSession {
+  GameEngine engine;
+
+  GameSession(HostedLevel level) {
+    this.engine = new GameEngine(level.start, level.deadlocks, level.lost);
+  }
+
+  // returns the status of this game: won, lost or playing
+  String status() {
+    if (this.engine.isWon()) {
+      return "won";
+    }
+    else if (this.engine.isLost()) {
+      return "lost";
+    }
+    else {
+      return "playing";
+    }
+  }
+}
+
+// hosts many independent games in one JVM, driven by a line-based protocol over local
+// sockets. Sessions live in a table of their own, apart from connections, so any
+// connection can play any session and a session stays open while no one is
+// connected. Each connection is served on its own thread, which is a virtual thread
+// when the runtime has them, so blocking on a quiet connection is cheap.
+// Every command is one line of words separated by spaces, and gets one line back,
+// either "ok" followed by the result or "error" followed by why:
+// - new LEVEL: starts a session on the named level, replies with its id
+// - move ID MOVES: plays the moves, a string of u, d, l and r, replies with the
+//   number of them that changed the board and the status of the game
+// - undo ID: takes back the last move that changed the board, replies with the status
+// - state ID: replies with the status, won, lost or playing, and the state hash
+// - close ID: ends the session
+// - quit: closes the connection
+class GameHost implements AutoCloseable {
+  // the levels sessions can be started on, by name
+  Map<String, HostedLevel> levels;
+  ConcurrentHashMap<Long, GameSession> sessions;
+  AtomicLong nextId;
+  ExecutorService connections;
+  ServerSocket server;
+  // the connections being served, so closing the host can close them
+  Set<Socket> open;
+
+  GameHost(Map<String, Board> levels) {
+    this.levels = new HashMap<String, HostedLevel>();
+    for (Map.Entry<String, Board> level : levels.entrySet()) {
+      this.levels.put(level.getKey(), new HostedLevel(level.getValue()));
+    }
+    this.sessions = new ConcurrentHashMap<Long, GameSession>();
+    this.nextId = new AtomicLong(1);
+    this.connections = connectionExecutor();
+    this.server = null;
+    this.open = ConcurrentHashMap.newKeySet();
+  }
+
+  // returns an executor that runs each task on a new virtual thread if the runtime
+  // has them, or else on pooled daemon threads
+  static ExecutorService connectionExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "sokoban-connection");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  // EFFECT: starts accepting connections on the given port of the loopback address,
+  // or on a free port if it is 0, and returns the port
+  public int start(int port) throws IOException {
+    if (this.server != null) {
+      throw new IllegalStateException("the host is already started");
+    }
+    this.server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    ServerSocket server = this.server;
+    this.connections.execute(() -> this.accept(server));
+    return server.getLocalPort();
+  }
+
+  // EFFECT: serves every connection to the given server socket until it is closed
+  void accept(ServerSocket server) {
+    while (!server.isClosed()) {
+      try {
+        Socket socket = server.accept();
+        this.open.add(socket);
+        // the host may have been closed while the connection was accepted
+        if (server.isClosed()) {
+          socket.close();
+        }
+        this.connections.execute(() -> this.serve(socket));
+      }
+      catch (IOException e) {
+        // the server socket was closed
+      }
+    }
+  }
+
+  // EFFECT: answers each line read from the given connection until it sends quit
+  // or closes
+  void serve(Socket socket) {
+    try (Socket open = socket;
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(open.getInputStream(), StandardCharsets.US_ASCII));
+        PrintWriter out = new PrintWriter(open.getOutputStream(), true,
+            StandardCharsets.US_ASCII)) {
+      String line = in.readLine();
+      while (line != null && !line.trim().equals("quit")) {
+        out.println(this.handle(line));
+        line = in.readLine();
+      }
+    }
+    catch (IOException e) {
+      // the connection was lost, and its sessions stay open
+    }
+    finally {
+      this.open.remove(socket);
+    }
+  }
+
+  // returns the reply to the given command line
+  public String handle(String line) {
+    String[] words = line.trim().split(" +");
+    try {
+      switch (words[0]) {
+        case "new":
+          return this.open(arguments(words, 2));
+        case "move":
+          return this.move(arguments(words, 3));
+        case "undo":
+          return this.undo(arguments(words, 2));
+        case "state":
+          return this.state(arguments(words, 2));
+        case "close":
+          return this.close(arguments(words, 2));
+        default:
+          return "error unknown command: " + words[0];
+      }
+    }
+    catch (IllegalArgumentException e) {
+      return "error " + e.getMessage();
+    }
+  }
+
+  // returns the given words of a command, after checking there are as many as the
+  // command takes
+  static String[] arguments(String[] words, int count) {
+    if (words.length != count) {
+      throw new IllegalArgumentException(words[0] + " takes " + (count - 1) + " arguments");
+    }
+    return words;
+  }
+
+  // returns the reply to new: starts a session on the named level
+  String open(String[] words) {
+    HostedLevel level = this.levels.get(words[1]);
+    if (level == null) {
+      throw new IllegalArgumentException("no level named " + words[1]);
+    }
+    long id = this.nextId.getAndIncrement();
+    this.sessions.put(id, new GameSession(level));
+    return "ok " + id;
+  }
+
+  // returns the reply to move: plays the moves on the session
+  String move(String[] words) {
+    GameSession session = this.session(words[1]);
+    // check every move first, so a command that is refused changes nothing
+    for (int i = 0; i < words[2].length(); i += 1) {
+      GameEngine.direction(words[2].charAt(i));
+    }
+    synchronized (session) {
+      int changed = session.engine.applyAll(words[2]);
+      return "ok " + changed + " " + session.status();
+    }
+  }
+
+  // returns the reply to undo: takes back the last move of the session
+  String undo(String[] words) {
+    GameSession session = this.session(words[1]);
+    synchronized (session) {
+      if (!session.engine.undo()) {
+        throw new IllegalArgumentException("nothing to undo");
+      }
+      return "ok " + session.status();
+    }
+  }
+
+  // returns the reply to state: the status and the state hash of the session
+  String state(String[] words) {
+    GameSession session = this.session(words[1]);
+    synchronized (session) {
+      return "ok " + session.status() + " " + Long.toHexString(session.engine.stateHash());
+    }
+  }
+
+  // returns the reply to close: ends the session
+  String close(String[] words) {
+    this.session(words[1]);
+    this.sessions.remove(Long.parseLong(words[1]));
+    return "ok";
+  }
+
+  // returns the session with the given id
+  GameSession session(String id) {
+    GameSession session = null;
+    try {
+      session = this.sessions.get(Long.parseLong(id));
+    }
+    catch (NumberFormatException e) {
+      // not an id, so there is no such session
+    }
+    if (session == null) {
+      throw new IllegalArgumentException("no session " + id);
+    }
+    return session;
+  }
+
+  // returns the number of open sessions
+  public int sessionCount() {
+    return this.sessions.size();
+  }
+
+  // EFFECT: stops accepting connections and closes the ones that are open. Closing
+  // the sockets is what wakes a thread blocked reading from one, since interrupting
+  // it does not
+  public void close() throws IOException {
+    if (this.server != null) {
+      this.server.close();
+    }
+    for (Socket socket : this.open) {
+      try {
+        socket.close();
+      }
+      catch (IOException e) {
+        // the connection is closed either way
+      }
+    }
+    this.connections.shutdownNow();
+  }
+}
+
+class ExamplesGameHost {
+  ExamplesSolver levels = new ExamplesSolver();
+
+  // returns a host of the levels of the solver examples
+  GameHost host() {
+    Map<String, Board> levels = new HashMap<String, Board>();
+    levels.put("fill", this.levels.fillTheHole.board);
+    levels.put("holes", this.levels.aroundHoles.board);
+    return new GameHost(levels);
+  }
+
+  boolean testHostCommands(Tester t) throws IOException {
+    GameHost host = this.host();
+    String start = Long.toHexString(this.levels.fillTheHole.board.hash);
+    boolean replies = t.checkExpect(host.handle("new fill"), "ok 1")
+        && t.checkExpect(host.handle("new  holes "), "ok 2")
+        && t.checkExpect(host.handle("state 1"), "ok playing " + start)
+        && t.checkExpect(host.handle("move 1 rrdr"), "ok 3 playing")
+        && t.checkExpect(host.handle("undo 1"), "ok playing")
+        && t.checkExpect(host.handle("move 1 rr"), "ok 2 won")
+        && t.checkExpect(host.handle("move 2 d"), "ok 1 lost")
+        && t.checkExpect(host.handle("close 2"), "ok")
+        && t.checkExpect(host.sessionCount(), 1);
+    host.close();
+    return replies;
+  }
+
+  boolean testHostErrors(Tester t) throws IOException {
+    GameHost host = this.host();
+    host.handle("new fill");
+    boolean replies = t.checkExpect(host.handle("new maze"), "error no level named maze")
+        && t.checkExpect(host.handle("jump 1"), "error unknown command: jump")
+        && t.checkExpect(host.handle("move 1"), "error move takes 2 arguments")
+        && t.checkExpect(host.handle("state 7"), "error no session 7")
+        && t.checkExpect(host.handle("state one"), "error no session one")
+        && t.checkExpect(host.handle("undo 1"), "error nothing to undo")
+        && t.checkExpect(host.handle("move 1 rrx"), "error not a move: x")
+        // the moves before the bad one were not played
+        && t.checkExpect(host.handle("state 1"),
+            "ok playing " + Long.toHexString(this.levels.fillTheHole.board.hash))
+        && t.checkExpect(host.handle("close 1"), "ok")
+        && t.checkExpect(host.handle("close 1"), "error no session 1");
+    host.close();
+    return replies;
+  }
+
+  boolean testHostManySessions(Tester t) throws IOException {
+    GameHost host = this.host();
+    for (int i = 0; i < 20000; i += 1) {
+      host.handle("new holes");
+    }
+    boolean many = t.checkExpect(host.sessionCount(), 20000)
+        && t.checkExpect(host.handle("move 20000 rd"), "ok 2 playing")
+        && t.checkExpect(host.handle("state 19999"),
+            "ok playing " + Long.toHexString(this.levels.aroundHoles.board.hash))
+        // every session shares the starting board of its level
+        && t.checkExpect(host.sessions.get(1L).engine.start == host.sessions.get(2L).engine.start,
+            true)
+        // and its dead squares
+        && t.checkExpect(host.sessions.get(1L).engine.deadlocks
+            == host.sessions.get(2L).engine.deadlocks, true);
+    host.close();
+    return many;
+  }
+
+  boolean testHostSockets(Tester t) throws IOException {
+    GameHost host = this.host();
+    int port = host.start(0);
+    String first;
+    String second;
+    String third;
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true,
+            StandardCharsets.US_ASCII)) {
+      out.println("new fill");
+      first = in.readLine();
+      out.println("move 1 rrrr");
+      second = in.readLine();
+      out.println("quit");
+      third = in.readLine();
+    }
+    // the session outlives the connection
+    String after = host.handle("state 1");
+    host.close();
+    return t.checkExpect(first, "ok 1")
+        && t.checkExpect(second, "ok 4 won")
+        && t.checkExpect(third, null)
+        && t.checkExpect(after.startsWith("ok won"), true)
+        && t.checkException(new IllegalStateException("the host is already started"), this,
+            "startTwice");
+  }
+
+  boolean testHostClosesConnections(Tester t) throws IOException {
+    GameHost host = this.host();
+    int port = host.start(0);
+    String first;
+    String after;
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true,
+            StandardCharsets.US_ASCII)) {
+      // fail instead of hanging if the connection stays open
+      socket.setSoTimeout(10000);
+      out.println("new fill");
+      first = in.readLine();
+      host.close();
+      after = in.readLine();
+    }
+    return t.checkExpect(first, "ok 1")
+        && t.checkExpect(after, null);
+  }
+
+  // starts a host twice
+  int startTwice() throws IOException {
+    GameHost host = this.host();
+    try {
+      host.start(0);
+      return host.start(0);
+    }
+    finally {
+      host.close();
+    }
+  }
+}
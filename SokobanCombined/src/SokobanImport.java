@@ -0,0 +1,799 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import tester.Tester;
+
+// represents one level read from a level pack, with its title, the line of the pack
+// its board starts on, counting from 1, and where its board is in the pack: the
+// offset of its first row and the length of its rows, in bytes of a file or chars
+// of a text. Only the board is kept, so a pack of many levels costs no more than
+// their planes; a Level, with its grid of cells and dead squares, is made on demand
+class PackLevel {
+  String title;
+  Board board;
+  int line;
+  long offset;
+  int length;
+
+  PackLevel(String title, Board board, int line, long offset, int length) {
+    this.title = title;
+    this.board = board;
+    this.line = line;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  // returns a new level of the board
+  public Level level() {
+    return new Level(this.board);
+  }
+}
+
+// imports level packs in the XSB format used by .sok and .txt collections, where a
+// level is a single layer of characters:
+// - # a wall, @ the player, $ a box, . a goal, * a box on a goal, + the player on a
+//   goal, and a space, - or _ the floor
+// Every box here is a yellow trophy and every goal a yellow target. On top of these,
+// the pack may use the characters of this game for what XSB cannot say:
+// - ~ blank ice, h a hole, y g b r a trophy and Y G B R a target of that color
+// A line of a pack is a row of a board if it is made of these characters only and
+// has a wall in it, and the rows in a run make up one level. Rows may be ragged, and
+// are padded with floor to the longest. Every other line is a title or a comment:
+// a "Title:" line right after a board names it, and otherwise a level is named by
+// the last such line before its board, without any leading ';'.
+// A pack is read one line at a time and each level is handed over as soon as it is
+// complete, so a pack of any size is imported holding only one level at a time, and a
+// file is read through a sliding window of memory mapped from it
+class XsbImporter {
+  // the ground and content code of each character of a board row, or -1
+  static final byte[] GROUND_CODES = new byte[128];
+  static final byte[] CONTENT_CODES = new byte[128];
+
+  static {
+    Arrays.fill(GROUND_CODES, (byte) -1);
+    Arrays.fill(CONTENT_CODES, (byte) -1);
+    byte yellowTarget = Board.GROUND_TARGET + 0;
+    byte yellowTrophy = Board.CONTENT_TROPHY + 0;
+    define(' ', Board.GROUND_BLANK, Board.CONTENT_BLANK);
+    define('-', Board.GROUND_BLANK, Board.CONTENT_BLANK);
+    define('_', Board.GROUND_BLANK, Board.CONTENT_BLANK);
+    define('#', Board.GROUND_BLANK, Board.CONTENT_WALL);
+    define('@', Board.GROUND_BLANK, Board.CONTENT_PLAYER);
+    define('+', yellowTarget, Board.CONTENT_PLAYER);
+    define('$', Board.GROUND_BLANK, yellowTrophy);
+    define('.', yellowTarget, Board.CONTENT_BLANK);
+    define('*', yellowTarget, yellowTrophy);
+    define('~', Board.GROUND_ICE, Board.CONTENT_BLANK);
+    define('h', Board.GROUND_BLANK, Board.CONTENT_HOLE);
+    // targets and trophies are in the order of PieceColor
+    for (int color = 0; color < 4; color += 1) {
+      define("ygbr".charAt(color), Board.GROUND_BLANK, (byte) (Board.CONTENT_TROPHY + color));
+      define("YGBR".charAt(color), (byte) (Board.GROUND_TARGET + color), Board.CONTENT_BLANK);
+    }
+  }
+
+  // EFFECT: makes the given character of a board row stand for the given codes
+  static void define(char c, byte ground, byte content) {
+    GROUND_CODES[c] = ground;
+    CONTENT_CODES[c] = content;
+  }
+
+  // the most bytes of a file mapped at a time
+  long windowBytes;
+
+  XsbImporter(long windowBytes) {
+    if (windowBytes <= 0) {
+      throw new IllegalArgumentException("the window must hold at least one byte");
+    }
+    this.windowBytes = windowBytes;
+  }
+
+  // creates an importer that maps files 64 MB at a time
+  XsbImporter() {
+    this(1L << 26);
+  }
+
+  // returns every level of the given pack text
+  public ArrayList<PackLevel> parse(CharSequence pack) {
+    ArrayList<PackLevel> levels = new ArrayList<PackLevel>();
+    PackScanner scanner = new PackScanner(levels::add);
+    for (int i = 0; i < pack.length(); i += 1) {
+      scanner.accept(pack.charAt(i));
+    }
+    scanner.finish();
+    return levels;
+  }
+
+  // returns every level of the pack in the given file
+  public ArrayList<PackLevel> readAll(Path file) throws IOException {
+    ArrayList<PackLevel> levels = new ArrayList<PackLevel>();
+    this.read(file, levels::add);
+    return levels;
+  }
+
+  // EFFECT: hands each level of the pack in the given file to the given consumer, in
+  // order, as soon as it is read. The file is read as single bytes, and any byte
+  // outside of ASCII only ever appears in titles, which are decoded as UTF-8
+  public void read(Path file, Consumer<PackLevel> each) throws IOException {
+    PackScanner scanner = new PackScanner(each, 1, 0, true, true);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      for (long at = 0; at < size; at += this.windowBytes) {
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, at,
+            Math.min(this.windowBytes, size - at));
+        while (window.hasRemaining()) {
+          scanner.accept((char) (window.get() & 0xFF));
+        }
+      }
+    }
+    scanner.finish();
+  }
+
+  // determines if the given line is a row of a board
+  static boolean isBoardRow(CharSequence line) {
+    boolean wall = false;
+    for (int i = 0; i < line.length(); i += 1) {
+      char c = line.charAt(i);
+      if (c >= 128 || CONTENT_CODES[c] == -1) {
+        return false;
+      }
+      wall = wall || c == '#';
+    }
+    return wall;
+  }
+
+  // returns the board made of the given board rows, the first of which is on the
+  // given line of its pack
+  static Board toBoard(ArrayList<String> rows, int line) {
+    int cols = 0;
+    for (String row : rows) {
+      cols = Math.max(cols, row.length());
+    }
+    byte[] ground = new byte[rows.size() * cols];
+    byte[] content = new byte[rows.size() * cols];
+    int players = 0;
+    for (int y = 0; y < rows.size(); y += 1) {
+      String row = rows.get(y);
+      for (int x = 0; x < row.length(); x += 1) {
+        ground[y * cols + x] = GROUND_CODES[row.charAt(x)];
+        content[y * cols + x] = CONTENT_CODES[row.charAt(x)];
+        if (content[y * cols + x] == Board.CONTENT_PLAYER) {
+          players += 1;
+        }
+      }
+    }
+    if (players != 1) {
+      throw new IllegalArgumentException("line " + line + ": the level has " + players
+          + " players instead of one");
+    }
+    return new Board(rows.size(), cols, ground, content);
+  }
+}
+
+// represents a level pack being read one character at a time, which hands each level
+// to a consumer as soon as it is complete
+class PackScanner {
+  // a line shaped "Key: value"
+  static final Pattern FIELD = Pattern.compile("[A-Za-z][A-Za-z0-9 _-]*:.*");
+
+  Consumer<PackLevel> each;
+  // the line being read, its number counting from 1 and its offset
+  StringBuilder line;
+  int number;
+  long lineStart;
+  // the number of characters read so far
+  long position;
+  // the rows of the board being read, the line it started on, and the offsets of
+  // its first row and of the end of its last row
+  ArrayList<String> rows;
+  int start;
+  long boardStart;
+  long boardEnd;
+  // the last title or comment line since the last level, or null
+  String title;
+  // true while the lines read may still describe the board before them: its
+  // "Title:" line and the "Author:", "Comment:" and other lines shaped "Key: value"
+  // around it, which do not name the next level
+  boolean trailing;
+  // a level whose board is over, held until it is clear if a "Title:" line names it
+  Board held;
+  int heldLine;
+  long heldOffset;
+  int heldLength;
+  String heldTitle;
+  int count;
+  // whether a level without a title is named by its number, or left with a null title
+  // for whoever knows its number in the whole pack
+  boolean numbered;
+  // whether each character is a byte of a file rather than a character of a text, so
+  // the lines that are not rows are decoded from UTF-8
+  boolean bytes;
+
+  // creates a scanner that starts reading at the given line and offset of a pack
+  PackScanner(Consumer<PackLevel> each, int number, long position, boolean numbered,
+      boolean bytes) {
+    this.each = each;
+    this.line = new StringBuilder();
+    this.number = number;
+    this.lineStart = position;
+    this.position = position;
+    this.rows = new ArrayList<String>();
+    this.title = null;
+    // a scanner that starts inside a pack starts just after a board
+    this.trailing = position > 0;
+    this.held = null;
+    this.count = 0;
+    this.numbered = numbered;
+    this.bytes = bytes;
+  }
+
+  // creates a scanner that reads the text of a pack from the top
+  PackScanner(Consumer<PackLevel> each) {
+    this(each, 1, 0, true, false);
+  }
+
+  // EFFECT: reads the given character of the pack
+  void accept(char c) {
+    this.position += 1;
+    if (c == '\n') {
+      this.endLine();
+    }
+    else if (c != '\r') {
+      this.line.append(c);
+    }
+  }
+
+  // EFFECT: reads the rest of the pack after its last character
+  void finish() {
+    if (this.line.length() > 0) {
+      this.endLine();
+    }
+    this.endBoard();
+    this.release(null);
+  }
+
+  // EFFECT: handles the line that just ended
+  void endLine() {
+    String text = this.line.toString();
+    this.line.setLength(0);
+    if (XsbImporter.isBoardRow(text)) {
+      if (this.rows.isEmpty()) {
+        this.release(null);
+        this.trailing = false;
+        this.start = this.number;
+        this.boardStart = this.lineStart;
+      }
+      this.rows.add(text);
+      this.boardEnd = this.position;
+    }
+    else {
+      this.endBoard();
+      String trimmed = (this.bytes ? PackScanner.decode(text) : text).trim();
+      if (trimmed.regionMatches(true, 0, "Title:", 0, 6)) {
+        this.release(trimmed.substring(6).trim());
+      }
+      else if (this.trailing && PackScanner.isField(trimmed)) {
+        // it describes the level before it, which keeps waiting for its title
+      }
+      else if (!trimmed.isEmpty()) {
+        this.release(null);
+        this.trailing = false;
+        this.title = trimmed.replaceFirst("^;+", "").trim();
+      }
+    }
+    this.number += 1;
+    this.lineStart = this.position;
+  }
+
+  // returns the given line of bytes, one per character, decoded as UTF-8, or as
+  // ISO-8859-1, a character per byte as it already is, if it is not valid UTF-8
+  static String decode(String line) {
+    boolean ascii = true;
+    for (int i = 0; i < line.length() && ascii; i += 1) {
+      ascii = line.charAt(i) < 128;
+    }
+    if (ascii) {
+      return line;
+    }
+    try {
+      return StandardCharsets.UTF_8.newDecoder()
+          .decode(ByteBuffer.wrap(line.getBytes(StandardCharsets.ISO_8859_1))).toString();
+    }
+    catch (CharacterCodingException e) {
+      return line;
+    }
+  }
+
+  // determines if the given line is shaped "Key: value", where the key is a word
+  // or a few words
+  static boolean isField(String line) {
+    return FIELD.matcher(line).matches();
+  }
+
+  // EFFECT: turns the rows read so far, if any, into a level held for its title
+  void endBoard() {
+    if (!this.rows.isEmpty()) {
+      this.trailing = true;
+      this.held = XsbImporter.toBoard(this.rows, this.start);
+      this.heldLine = this.start;
+      this.heldOffset = this.boardStart;
+      this.heldLength = (int) (this.boardEnd - this.boardStart);
+      this.heldTitle = this.title;
+      this.title = null;
+      this.rows.clear();
+    }
+  }
+
+  // EFFECT: hands over the held level, if any, named by the given title, or by the
+  // line before its board if the title is null, or else by its number in the pack
+  void release(String title) {
+    if (this.held != null) {
+      this.count += 1;
+      String name = title != null ? title : this.heldTitle;
+      if ((name == null || name.isEmpty()) && this.numbered) {
+        name = "level " + this.count;
+      }
+      this.each.accept(
+          new PackLevel(name, this.held, this.heldLine, this.heldOffset, this.heldLength));
+      this.held = null;
+    }
+  }
+}
+
+// represents an index of a level pack file, kept next to it in a sidecar file, which
+// records where the board of each level is in the pack along with its line, its
+// dimensions, the Zobrist hash of its starting board and its title. With it any level
+// is opened by reading just its own rows. The index is built in one sequential pass
+// over the pack, and remembers the size and modification time of the pack so that
+// an index of an older version of the pack is not used.
+// An index file is the magic number, the version, the size and modification time of
+// the pack and the number of levels, then for each level its offset, length, line,
+// rows, columns and hash, and then the title of each level
+class PackIndex {
+  // "SKBI" in ASCII
+  static final int MAGIC = 0x534B4249;
+  // version 2 names levels without reading the Author: and other such lines of the
+  // level above as their titles, and version 3 decodes titles from UTF-8
+  static final byte VERSION = 3;
+  // the bytes of the header, and the fewest bytes a level takes: its record and an
+  // empty title
+  static final int HEADER_BYTES = 25;
+  static final int LEVEL_BYTES = 34;
+
+  long packSize;
+  long packModified;
+  int count;
+  long[] offsets;
+  int[] lengths;
+  int[] lines;
+  int[] rows;
+  int[] cols;
+  long[] hashes;
+  String[] titles;
+
+  PackIndex(long packSize, long packModified, int capacity) {
+    this.packSize = packSize;
+    this.packModified = packModified;
+    this.count = 0;
+    this.offsets = new long[capacity];
+    this.lengths = new int[capacity];
+    this.lines = new int[capacity];
+    this.rows = new int[capacity];
+    this.cols = new int[capacity];
+    this.hashes = new long[capacity];
+    this.titles = new String[capacity];
+  }
+
+  // returns the index of the given pack, made by importing it from top to bottom
+  static PackIndex build(Path pack) throws IOException {
+    PackIndex index = new PackIndex(Files.size(pack),
+        Files.getLastModifiedTime(pack).toMillis(), 16);
+    new XsbImporter().read(pack, index::add);
+    index.trim();
+    return index;
+  }
+
+  // returns the path of the sidecar index of the given pack
+  static Path sidecar(Path pack) {
+    return pack.resolveSibling(pack.getFileName() + ".idx");
+  }
+
+  // returns the index of the given pack from its sidecar file, building the index
+  // and writing the sidecar first if it is missing, out of date or cannot be read
+  static PackIndex forPack(Path pack) throws IOException {
+    Path sidecar = sidecar(pack);
+    if (Files.exists(sidecar)) {
+      try {
+        PackIndex index = read(sidecar);
+        if (index.matches(pack)) {
+          return index;
+        }
+      }
+      catch (IOException | IllegalArgumentException e) {
+        // a sidecar that is cut off, corrupt or of another version is rebuilt
+      }
+    }
+    PackIndex index = build(pack);
+    index.write(sidecar);
+    return index;
+  }
+
+  // EFFECT: adds the given level to the end of this index, growing it when it is full
+  void add(PackLevel level) {
+    if (this.count == this.offsets.length) {
+      int capacity = Math.max(this.count * 2, 16);
+      this.offsets = Arrays.copyOf(this.offsets, capacity);
+      this.lengths = Arrays.copyOf(this.lengths, capacity);
+      this.lines = Arrays.copyOf(this.lines, capacity);
+      this.rows = Arrays.copyOf(this.rows, capacity);
+      this.cols = Arrays.copyOf(this.cols, capacity);
+      this.hashes = Arrays.copyOf(this.hashes, capacity);
+      this.titles = Arrays.copyOf(this.titles, capacity);
+    }
+    this.offsets[this.count] = level.offset;
+    this.lengths[this.count] = level.length;
+    this.lines[this.count] = level.line;
+    this.rows[this.count] = level.board.rows;
+    this.cols[this.count] = level.board.cols;
+    this.hashes[this.count] = level.board.hash;
+    this.titles[this.count] = level.title;
+    this.count += 1;
+  }
+
+  // EFFECT: shrinks the arrays of this index to the levels in it
+  void trim() {
+    this.offsets = Arrays.copyOf(this.offsets, this.count);
+    this.lengths = Arrays.copyOf(this.lengths, this.count);
+    this.lines = Arrays.copyOf(this.lines, this.count);
+    this.rows = Arrays.copyOf(this.rows, this.count);
+    this.cols = Arrays.copyOf(this.cols, this.count);
+    this.hashes = Arrays.copyOf(this.hashes, this.count);
+    this.titles = Arrays.copyOf(this.titles, this.count);
+  }
+
+  // returns the number of levels in the pack
+  public int size() {
+    return this.count;
+  }
+
+  // determines if this index was made of the given pack as it is now
+  public boolean matches(Path pack) throws IOException {
+    return Files.size(pack) == this.packSize
+        && Files.getLastModifiedTime(pack).toMillis() == this.packModified;
+  }
+
+  // returns the level with the given position in the given pack, counting from 0,
+  // reading only its rows
+  public PackLevel open(Path pack, int n) throws IOException {
+    if (n < 0 || n >= this.count) {
+      throw new IllegalArgumentException("the pack has no level " + n);
+    }
+    ByteBuffer bytes = ByteBuffer.allocate(this.lengths[n]);
+    try (FileChannel channel = FileChannel.open(pack, StandardOpenOption.READ)) {
+      while (bytes.hasRemaining()
+          && channel.read(bytes, this.offsets[n] + bytes.position()) != -1) {
+        // keep reading until the rows are in
+      }
+    }
+    ArrayList<String> rows = new ArrayList<String>();
+    for (String row : new String(bytes.array(), 0, bytes.position(),
+        StandardCharsets.ISO_8859_1).split("\n")) {
+      rows.add(row.replace("\r", ""));
+    }
+    for (String row : rows) {
+      if (!XsbImporter.isBoardRow(row)) {
+        throw new IllegalStateException("the pack changed since it was indexed");
+      }
+    }
+    Board board = XsbImporter.toBoard(rows, this.lines[n]);
+    if (board.hash != this.hashes[n] || board.rows != this.rows[n]
+        || board.cols != this.cols[n]) {
+      throw new IllegalStateException("the pack changed since it was indexed");
+    }
+    return new PackLevel(this.titles[n], board, this.lines[n], this.offsets[n],
+        this.lengths[n]);
+  }
+
+  // EFFECT: writes this index to the given file
+  public void write(Path file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      out.writeLong(this.packSize);
+      out.writeLong(this.packModified);
+      out.writeInt(this.count);
+      for (int i = 0; i < this.count; i += 1) {
+        out.writeLong(this.offsets[i]);
+        out.writeInt(this.lengths[i]);
+        out.writeInt(this.lines[i]);
+        out.writeInt(this.rows[i]);
+        out.writeInt(this.cols[i]);
+        out.writeLong(this.hashes[i]);
+      }
+      for (int i = 0; i < this.count; i += 1) {
+        out.writeUTF(this.titles[i]);
+      }
+    }
+  }
+
+  // returns the index in the given file
+  static PackIndex read(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IllegalArgumentException("not a level pack index");
+      }
+      byte version = in.readByte();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("unsupported index version " + version);
+      }
+      long packSize = in.readLong();
+      long packModified = in.readLong();
+      int count = in.readInt();
+      if (count < 0 || count > (Files.size(file) - HEADER_BYTES) / LEVEL_BYTES) {
+        throw new IllegalArgumentException("not a level pack index");
+      }
+      PackIndex index = new PackIndex(packSize, packModified, count);
+      index.count = count;
+      for (int i = 0; i < count; i += 1) {
+        index.offsets[i] = in.readLong();
+        index.lengths[i] = in.readInt();
+        index.lines[i] = in.readInt();
+        index.rows[i] = in.readInt();
+        index.cols[i] = in.readInt();
+        index.hashes[i] = in.readLong();
+      }
+      for (int i = 0; i < count; i += 1) {
+        index.titles[i] = in.readUTF();
+      }
+      return index;
+    }
+  }
+}
+
+class ExamplesXsbImporter {
+  XsbImporter importer = new XsbImporter();
+
+  String pack = "; a small pack\n"
+      + "\n"
+      + "; First\n"
+      + "#####\n"
+      + "#@$.#\n"
+      + "#####\n"
+      + "\n"
+      + "  ####\n"
+      + "###  #\n"
+      + "#+*~h#\n"
+      + "#r R #\n"
+      + "######\r\n"
+      + "Title: Second\n"
+      + "Author: someone\n"
+      + "\n"
+      + "####\n"
+      + "#@*#\n"
+      + "####";
+
+  boolean testImportLevels(Tester t) {
+    ArrayList<PackLevel> levels = this.importer.parse(this.pack);
+    return t.checkExpect(levels.size(), 3)
+        && t.checkExpect(levels.get(0).title, "First")
+        && t.checkExpect(levels.get(0).line, 4)
+        && t.checkExpect(levels.get(0).level(),
+            new Level("_____\n" + "___Y_\n" + "_____", "WWWWW\n" + "W>y_W\n" + "WWWWW"))
+        && t.checkExpect(levels.get(1).title, "Second")
+        && t.checkExpect(levels.get(1).line, 8)
+        // ragged rows are padded with floor
+        && t.checkExpect(levels.get(1).level(),
+            new Level("______\n" + "______\n" + "_YYI__\n" + "___R__\n" + "______",
+                "__WWWW\n" + "WWW__W\n" + "W>y_hW\n" + "Wr___W\n" + "WWWWWW"))
+        // the author belongs to the level above, so the last level has no title
+        && t.checkExpect(levels.get(2).title, "level 3")
+        && t.checkExpect(levels.get(2).level().levelWon(), true);
+  }
+
+  boolean testImportTitles(Tester t) {
+    ArrayList<PackLevel> untitled = this.importer.parse("###\n#@#\n###\n\n###\n#@#\n###\n");
+    return t.checkExpect(untitled.size(), 2)
+        && t.checkExpect(untitled.get(0).title, "level 1")
+        && t.checkExpect(untitled.get(1).title, "level 2")
+        && t.checkExpect(untitled.get(1).line, 5)
+        // the fields after a board describe it, whichever order they come in
+        && t.checkExpect(this.importer.parse("###\n#@#\n###\nAuthor: a\nTitle: One\n"
+            + "Comment: c\n\n; Two\n###\n#@#\n###\nauthor: b\n").get(0).title, "One")
+        && t.checkExpect(this.importer.parse("###\n#@#\n###\nAuthor: a\nTitle: One\n"
+            + "Comment: c\n\n; Two\n###\n#@#\n###\nauthor: b\n").get(1).title, "Two")
+        // a line of board characters without a wall is not a row
+        && t.checkExpect(this.importer.parse("$$$\n. .").size(), 0)
+        && t.checkExpect(XsbImporter.isBoardRow("# $ ."), true)
+        && t.checkExpect(XsbImporter.isBoardRow("Level #1"), false);
+  }
+
+  boolean testImportErrors(Tester t) {
+    return t.checkException(
+        new IllegalArgumentException("line 2: the level has 0 players instead of one"),
+        this.importer, "parse", "x\n####\n#$.#\n####")
+        && t.checkException(
+            new IllegalArgumentException("line 1: the level has 2 players instead of one"),
+            this.importer, "parse", "#@@#")
+        && t.checkConstructorException(
+            new IllegalArgumentException("the window must hold at least one byte"),
+            "XsbImporter", 0L);
+  }
+
+  boolean testImportFile(Tester t) throws IOException {
+    Path file = Files.createTempFile("pack", ".sok");
+    try {
+      Files.write(file, this.pack.getBytes(StandardCharsets.US_ASCII));
+      ArrayList<PackLevel> streamed = new ArrayList<PackLevel>();
+      // a window of a few bytes makes lines span several mappings
+      new XsbImporter(7).read(file, streamed::add);
+      ArrayList<PackLevel> parsed = this.importer.parse(this.pack);
+      return t.checkExpect(streamed.size(), 3)
+          && t.checkExpect(streamed.get(1).board, parsed.get(1).board)
+          && t.checkExpect(streamed.get(1).title, "Second")
+          && t.checkExpect(this.importer.readAll(file).get(2).board, parsed.get(2).board);
+    }
+    finally {
+      Files.delete(file);
+    }
+  }
+
+  boolean testImportFileTitles(Tester t) throws IOException {
+    String utf8 = "; Caf\u00e9 \u2603\n###\n#@#\n###\nTitle: \u00dcber\n\n"
+        + "; Caf\u00e9 \u2603\n###\n#@#\n###\n\n";
+    // a title that is not UTF-8 is read one character per byte
+    byte[] latin1 = "; caf\u00e9\n###\n#@#\n###\n".getBytes(StandardCharsets.ISO_8859_1);
+    Path file = Files.createTempFile("pack", ".sok");
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      bytes.write(utf8.getBytes(StandardCharsets.UTF_8));
+      bytes.write(latin1);
+      Files.write(file, bytes.toByteArray());
+      ArrayList<PackLevel> read = this.importer.readAll(file);
+      ArrayList<PackLevel> parsed = this.importer.parse(utf8);
+      PackIndex index = PackIndex.forPack(file);
+      return t.checkExpect(read.size(), 3)
+          && t.checkExpect(read.get(0).title, "\u00dcber")
+          && t.checkExpect(read.get(0).title, parsed.get(0).title)
+          && t.checkExpect(read.get(1).title, "Caf\u00e9 \u2603")
+          && t.checkExpect(read.get(1).title, parsed.get(1).title)
+          && t.checkExpect(read.get(2).title, "caf\u00e9")
+          && t.checkExpect(new BulkLoader(2, 8).load(file).levels, read)
+          && t.checkExpect(PackIndex.read(PackIndex.sidecar(file)).titles, index.titles)
+          && t.checkExpect(index.titles[0], "\u00dcber");
+    }
+    finally {
+      Files.deleteIfExists(PackIndex.sidecar(file));
+      Files.delete(file);
+    }
+  }
+}
+
+class ExamplesPackIndex {
+  ExamplesXsbImporter packs = new ExamplesXsbImporter();
+
+  boolean testPackLevelOffsets(Tester t) {
+    String pack = this.packs.pack;
+    ArrayList<PackLevel> levels = new XsbImporter().parse(pack);
+    PackLevel second = levels.get(1);
+    PackLevel last = levels.get(2);
+    return t.checkExpect(levels.get(0).offset, (long) pack.indexOf("#####"))
+        && t.checkExpect(pack.substring((int) second.offset,
+            (int) second.offset + second.length),
+            "  ####\n" + "###  #\n" + "#+*~h#\n" + "#r R #\n" + "######\r\n")
+        // the last row has no newline after it
+        && t.checkExpect(pack.substring((int) last.offset), "####\n" + "#@*#\n" + "####")
+        && t.checkExpect(last.length, pack.length() - (int) last.offset);
+  }
+
+  boolean testPackIndex(Tester t) throws IOException {
+    Path dir = Files.createTempDirectory("packs");
+    Path pack = dir.resolve("small.sok");
+    try {
+      Files.write(pack, this.packs.pack.getBytes(StandardCharsets.US_ASCII));
+      ArrayList<PackLevel> parsed = new XsbImporter().parse(this.packs.pack);
+      PackIndex index = PackIndex.forPack(pack);
+      PackIndex reread = PackIndex.read(PackIndex.sidecar(pack));
+      PackLevel second = reread.open(pack, 1);
+      return t.checkExpect(index.size(), 3)
+          && t.checkExpect(Files.exists(PackIndex.sidecar(pack)), true)
+          && t.checkExpect(reread, index)
+          && t.checkExpect(PackIndex.forPack(pack), index)
+          && t.checkExpect(second.board, parsed.get(1).board)
+          && t.checkExpect(second.title, "Second")
+          && t.checkExpect(second.line, 8)
+          && t.checkExpect(index.open(pack, 2).board, parsed.get(2).board)
+          && t.checkExpect(index.open(pack, 0).board, parsed.get(0).board)
+          && t.checkException(new IllegalArgumentException("the pack has no level 3"), index,
+              "open", pack, 3);
+    }
+    finally {
+      Files.deleteIfExists(PackIndex.sidecar(pack));
+      Files.deleteIfExists(pack);
+      Files.delete(dir);
+    }
+  }
+
+  boolean testPackIndexOutOfDate(Tester t) throws IOException {
+    Path dir = Files.createTempDirectory("packs");
+    Path pack = dir.resolve("small.sok");
+    try {
+      Files.write(pack, this.packs.pack.getBytes(StandardCharsets.US_ASCII));
+      PackIndex index = PackIndex.forPack(pack);
+      // the same number of bytes with a different first level
+      Files.write(pack, this.packs.pack.replace("#@$.#", "#.$@#")
+          .getBytes(StandardCharsets.US_ASCII));
+      Files.setLastModifiedTime(pack, java.nio.file.attribute.FileTime.fromMillis(
+          index.packModified + 5000));
+      PackIndex rebuilt = PackIndex.forPack(pack);
+      return t.checkExpect(index.matches(pack), false)
+          && t.checkException(new IllegalStateException("the pack changed since it was indexed"),
+              index, "open", pack, 0)
+          && t.checkExpect(rebuilt.matches(pack), true)
+          && t.checkExpect(rebuilt.open(pack, 0).board.hash == index.hashes[0], false);
+    }
+    finally {
+      Files.deleteIfExists(PackIndex.sidecar(pack));
+      Files.deleteIfExists(pack);
+      Files.delete(dir);
+    }
+  }
+
+  boolean testPackIndexUnreadable(Tester t) throws IOException {
+    Path dir = Files.createTempDirectory("packs");
+    Path pack = dir.resolve("small.sok");
+    Path sidecar = PackIndex.sidecar(pack);
+    try {
+      Files.write(pack, this.packs.pack.getBytes(StandardCharsets.US_ASCII));
+      PackIndex index = PackIndex.forPack(pack);
+      byte[] good = Files.readAllBytes(sidecar);
+      boolean rebuilt = true;
+      // another magic number, an older version, a count larger than the file and a
+      // file cut off in the middle of a record
+      for (int at : new int[] { 0, 4, 24, -1 }) {
+        byte[] bad = at == -1 ? Arrays.copyOf(good, 40) : good.clone();
+        if (at == 4) {
+          bad[at] = 1;
+        }
+        else if (at != -1) {
+          bad[at] = 0x7F;
+        }
+        Files.write(sidecar, bad);
+        rebuilt = rebuilt && t.checkExpect(PackIndex.forPack(pack), index)
+            && t.checkExpect(Files.readAllBytes(sidecar), good);
+      }
+      return rebuilt
+          && t.checkException(new IllegalArgumentException("unsupported index version 1"),
+              this, "readVersion1", sidecar, good);
+    }
+    finally {
+      Files.deleteIfExists(sidecar);
+      Files.deleteIfExists(pack);
+      Files.delete(dir);
+    }
+  }
+
+  // reads the given index after writing it to the given file as version 1
+  PackIndex readVersion1(Path file, byte[] index) throws IOException {
+    byte[] old = index.clone();
+    old[4] = 1;
+    Files.write(file, old);
+    return PackIndex.read(file);
+  }
+}
@@ -0,0 +1,738 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import javalib.funworld.*;
+import tester.Tester;
+
+// describes the binary format of a recorded game. A log starts with a header: the
+// magic number, the version, and the state hash of the level the game started on.
+// Then come chunks: a chunk starts with a byte n. If n is between 1 and 255, n moves
+// follow packed four to a byte, two bits each, the first move in the lowest bits. If
+// n is 0, one control byte follows instead, which is UNDO or REDO. The log ends where
+// the stream ends.
+class MoveLog {
+  // "SKBL" in ASCII
+  static final int MAGIC = 0x534B424C;
+  static final byte VERSION = 1;
+  // the number of bytes of the header
+  static final int HEADER_BYTES = 4 + 1 + 8;
+
+  // the most moves in one chunk
+  static final int CHUNK_MOVES = 255;
+
+  // the control codes
+  static final byte UNDO = 1;
+  static final byte REDO = 2;
+
+  // the keys of the moves, in the order of their two-bit codes, which is the order
+  // of the solver's moves
+  static final String[] MOVE_KEYS = { "up", "down", "left", "right" };
+  // the keys of the control codes, where the key of code c is at index c
+  static final String[] CONTROL_KEYS = { null, "u", "r" };
+
+  // returns the two-bit code of the move with the given key, or -1 if the key is not
+  // a move
+  static int moveCode(String key) {
+    for (int code = 0; code < MOVE_KEYS.length; code += 1) {
+      if (MOVE_KEYS[code].equals(key)) {
+        return code;
+      }
+    }
+    return -1;
+  }
+
+  // returns the control code of the given key, or -1 if the key is not a control
+  static int controlCode(String key) {
+    for (int code = 1; code < CONTROL_KEYS.length; code += 1) {
+      if (CONTROL_KEYS[code].equals(key)) {
+        return code;
+      }
+    }
+    return -1;
+  }
+}
+
+// writes the keys of a game to a stream in the format of MoveLog. Moves wait in a
+// chunk until it is full or a control key comes, and closing the writer writes the
+// last chunk
+class MoveLogWriter implements AutoCloseable {
+  DataOutputStream out;
+  // the moves of the chunk being filled, packed four to a byte
+  byte[] chunk;
+  int moves;
+  // the number of keys written so far
+  long written;
+
+  // creates a writer that writes the header of a game on the level with the given
+  // state hash to the given stream
+  MoveLogWriter(OutputStream out, long levelHash) throws IOException {
+    this.out = new DataOutputStream(out);
+    this.chunk = new byte[(MoveLog.CHUNK_MOVES + 3) / 4];
+    this.moves = 0;
+    this.out.writeInt(MoveLog.MAGIC);
+    this.out.writeByte(MoveLog.VERSION);
+    this.out.writeLong(levelHash);
+  }
+
+  // EFFECT: writes the given key if it is a move or a control, and ignores it
+  // otherwise
+  public void write(String key) throws IOException {
+    int move = MoveLog.moveCode(key);
+    if (move != -1) {
+      this.chunk[this.moves >>> 2] |= move << ((this.moves & 3) * 2);
+      this.moves += 1;
+      this.written += 1;
+      if (this.moves == MoveLog.CHUNK_MOVES) {
+        this.flushChunk();
+      }
+      return;
+    }
+    int control = MoveLog.controlCode(key);
+    if (control != -1) {
+      this.flushChunk();
+      this.out.writeByte(0);
+      this.out.writeByte(control);
+      this.written += 1;
+    }
+  }
+
+  // EFFECT: writes the moves waiting in the chunk, if there are any
+  void flushChunk() throws IOException {
+    if (this.moves > 0) {
+      this.out.writeByte(this.moves);
+      this.out.write(this.chunk, 0, (this.moves + 3) / 4);
+      Arrays.fill(this.chunk, (byte) 0);
+      this.moves = 0;
+    }
+  }
+
+  // EFFECT: writes everything written so far to the stream
+  public void flush() throws IOException {
+    this.flushChunk();
+    this.out.flush();
+  }
+
+  // EFFECT: writes the last chunk and closes the stream
+  public void close() throws IOException {
+    this.flushChunk();
+    this.out.close();
+  }
+}
+
+// reads the keys of a game back from a stream in the format of MoveLog
+class MoveLogReader implements AutoCloseable {
+  DataInputStream in;
+  // the state hash of the level the game started on
+  long levelHash;
+  // the moves of the chunk being read, how many it has, and how many were read
+  byte[] chunk;
+  int moves;
+  int next;
+
+  // creates a reader of the given stream, reading its header
+  MoveLogReader(InputStream in) throws IOException {
+    this.in = new DataInputStream(in);
+    this.chunk = new byte[(MoveLog.CHUNK_MOVES + 3) / 4];
+    int magic;
+    try {
+      magic = this.in.readInt();
+    }
+    catch (EOFException e) {
+      throw new IOException("not a move log");
+    }
+    if (magic != MoveLog.MAGIC) {
+      throw new IOException("not a move log");
+    }
+    byte version = this.in.readByte();
+    if (version != MoveLog.VERSION) {
+      throw new IOException("unsupported move log version " + version);
+    }
+    this.levelHash = this.in.readLong();
+  }
+
+  // returns the next key of the game, or null at the end of the log
+  public String next() throws IOException {
+    if (this.next == this.moves) {
+      int n = this.in.read();
+      if (n == -1) {
+        return null;
+      }
+      if (n == 0) {
+        int control = this.in.readUnsignedByte();
+        if (control < 1 || control >= MoveLog.CONTROL_KEYS.length) {
+          throw new IOException("not a control code of a move log: " + control);
+        }
+        return MoveLog.CONTROL_KEYS[control];
+      }
+      this.in.readFully(this.chunk, 0, (n + 3) / 4);
+      this.moves = n;
+      this.next = 0;
+    }
+    int move = (this.chunk[this.next >>> 2] >>> ((this.next & 3) * 2)) & 3;
+    this.next += 1;
+    return MoveLog.MOVE_KEYS[move];
+  }
+
+  // EFFECT: closes the stream
+  public void close() throws IOException {
+    this.in.close();
+  }
+}
+
+// represents a game of Sokoban that writes every key it is given to a move log
+class RecordingWorld extends World {
+  SokobanWorld world;
+  MoveLogWriter log;
+
+  RecordingWorld(SokobanWorld world, MoveLogWriter log) {
+    this.world = world;
+    this.log = log;
+  }
+
+  // creates a world that plays the given level and records it to the given stream
+  RecordingWorld(Level level, OutputStream out) throws IOException {
+    this(new SokobanWorld(level), new MoveLogWriter(out, level.stateHash()));
+  }
+
+  // makes the scene of the game being recorded
+  public WorldScene makeScene() {
+    return this.world.makeScene();
+  }
+
+  // returns the world after the given key, which is written to the log
+  public RecordingWorld onKeyEvent(String key) {
+    try {
+      this.log.write(key);
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("the move log could not be written", e);
+    }
+    return new RecordingWorld(this.world.onKeyEvent(key), this.log);
+  }
+
+  // ends the game like the game being recorded, writing the rest of the log
+  public World onTick() {
+    if (this.world.shouldEnd()) {
+      try {
+        this.log.flush();
+      }
+      catch (IOException e) {
+        throw new IllegalStateException("the move log could not be written", e);
+      }
+      return this.endOfWorld("Game Over");
+    }
+    return this;
+  }
+
+  // scene showing that the game being recorded ends
+  public WorldScene lastScene(String msg) {
+    return this.world.lastScene(msg);
+  }
+}
+
+// replays move logs on levels without showing them
+class Replayer {
+
+  // returns the world after replaying the log in the given stream on the given
+  // level, which must be the level the log was recorded on
+  public SokobanWorld replay(Level level, InputStream in) throws IOException {
+    try (MoveLogReader log = new MoveLogReader(in)) {
+      if (log.levelHash != level.stateHash()) {
+        throw new IllegalArgumentException("the log was recorded on a different level");
+      }
+      SokobanWorld world = new SokobanWorld(level);
+      for (String key = log.next(); key != null; key = log.next()) {
+        world = world.onKeyEvent(key);
+      }
+      return world;
+    }
+  }
+}
+
+// represents the index of a recorded game that can jump to the level after any
+// number of its keys without replaying the keys before. Undo and redo make the
+// states of a game a tree: every move that changes the board adds a child to the
+// state it was made in, undo goes back to the parent, and redo goes forward to the
+// child that was last undone. The index records the state after every key and the
+// parent and move of every state, and keeps the full board of every state whose
+// depth in the tree is a multiple of the checkpoint interval. The board after any
+// key is then the board of the closest checkpointed state above it with at most
+// interval - 1 moves replayed, however far the game went back and forth.
+class ReplayIndex {
+  // "SKBC" in ASCII
+  static final int MAGIC = 0x534B4243;
+  static final byte VERSION = 1;
+
+  Level level;
+  int interval;
+  // the number of keys of the game, and the state and score after each number of
+  // keys, from 0 to keys
+  int keys;
+  int[] stateAfter;
+  int[] scoreAfter;
+  // the parent, the move code from the parent and the depth of every state, where
+  // state 0 is the start of the game
+  int[] parent;
+  byte[] move;
+  int[] depth;
+  int states;
+  // the boards of the checkpointed states
+  HashMap<Integer, Board> checkpoints;
+
+  // creates an empty index of a game on the given level
+  ReplayIndex(Level level, int interval) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("checkpoints must be at least one move apart");
+    }
+    this.level = level;
+    this.interval = interval;
+    this.stateAfter = new int[16];
+    this.scoreAfter = new int[16];
+    this.parent = new int[16];
+    this.move = new byte[16];
+    this.depth = new int[16];
+    this.parent[0] = -1;
+    this.states = 1;
+    this.checkpoints = new HashMap<Integer, Board>();
+    this.checkpoints.put(0, level.board);
+  }
+
+  // returns the index of the log in the given stream played on the given level,
+  // with a checkpoint every 1024 moves deep
+  static ReplayIndex build(Level level, InputStream in) throws IOException {
+    return ReplayIndex.build(level, in, 1024);
+  }
+
+  // returns the index of the log in the given stream played on the given level, by
+  // playing it once on boards, with the given checkpoint interval
+  static ReplayIndex build(Level level, InputStream in, int interval) throws IOException {
+    ReplayIndex index = new ReplayIndex(level, interval);
+    try (MoveLogReader log = new MoveLogReader(in)) {
+      if (log.levelHash != level.stateHash()) {
+        throw new IllegalArgumentException("the log was recorded on a different level");
+      }
+      Board board = level.board;
+      int state = 0;
+      int score = 0;
+      // the changes of every state from its parent, to undo and redo them, and the
+      // states that can be redone, most recently undone last
+      ArrayList<MoveDelta> deltas = new ArrayList<MoveDelta>();
+      deltas.add(null);
+      ArrayList<Integer> redo = new ArrayList<Integer>();
+
+      for (String key = log.next(); key != null; key = log.next()) {
+        int code = MoveLog.moveCode(key);
+        if (code != -1) {
+          Board next = board.move(Solver.DY[code], Solver.DX[code]);
+          score += 1;
+          if (next != board) {
+            state = index.addState(state, (byte) code);
+            deltas.add(new MoveDelta(board, next));
+            redo.clear();
+            board = next;
+            if (index.depth[state] % interval == 0) {
+              index.checkpoints.put(state, board);
+            }
+          }
+        }
+        else if (key.equals("u") && state != 0) {
+          board = deltas.get(state).undo(board);
+          redo.add(state);
+          state = index.parent[state];
+          score += 1;
+        }
+        else if (key.equals("r") && !redo.isEmpty()) {
+          state = redo.remove(redo.size() - 1);
+          board = deltas.get(state).redo(board);
+          score += 1;
+        }
+        index.addKey(state, score);
+      }
+    }
+    return index;
+  }
+
+  // EFFECT: adds a state reached by the given move from the given parent
+  // returns the new state
+  int addState(int parent, byte move) {
+    if (this.states == this.parent.length) {
+      this.parent = Arrays.copyOf(this.parent, this.states * 2);
+      this.move = Arrays.copyOf(this.move, this.states * 2);
+      this.depth = Arrays.copyOf(this.depth, this.states * 2);
+    }
+    this.parent[this.states] = parent;
+    this.move[this.states] = move;
+    this.depth[this.states] = this.depth[parent] + 1;
+    this.states += 1;
+    return this.states - 1;
+  }
+
+  // EFFECT: records the state and score after the next key
+  void addKey(int state, int score) {
+    if (this.keys + 1 == this.stateAfter.length) {
+      this.stateAfter = Arrays.copyOf(this.stateAfter, this.stateAfter.length * 2);
+      this.scoreAfter = Arrays.copyOf(this.scoreAfter, this.scoreAfter.length * 2);
+    }
+    this.keys += 1;
+    this.stateAfter[this.keys] = state;
+    this.scoreAfter[this.keys] = score;
+  }
+
+  // returns the level after the given number of keys of the game
+  public Level levelAfter(int keys) {
+    this.checkKeys(keys);
+    return this.level.withBoard(this.boardOf(this.stateAfter[keys]));
+  }
+
+  // returns the score after the given number of keys of the game
+  public int scoreAfter(int keys) {
+    this.checkKeys(keys);
+    return this.scoreAfter[keys];
+  }
+
+  // EFFECT: throws an exception if the game does not have the given number of keys
+  void checkKeys(int keys) {
+    if (keys < 0 || keys > this.keys) {
+      throw new IndexOutOfBoundsException("the game has " + this.keys + " keys, not " + keys);
+    }
+  }
+
+  // returns the number of moves that are replayed to rebuild the board of the given
+  // state, which is less than the checkpoint interval
+  public int replayedFor(int state) {
+    int moves = 0;
+    for (; !this.checkpoints.containsKey(state); state = this.parent[state]) {
+      moves += 1;
+    }
+    return moves;
+  }
+
+  // returns the board of the given state, rebuilt from the closest checkpoint above it
+  Board boardOf(int state) {
+    int moves = this.replayedFor(state);
+    byte[] path = new byte[moves];
+    for (int k = moves - 1; k >= 0; k -= 1) {
+      path[k] = this.move[state];
+      state = this.parent[state];
+    }
+    Board board = this.checkpoints.get(state);
+    for (byte code : path) {
+      board = board.move(Solver.DY[code], Solver.DX[code]);
+    }
+    return board;
+  }
+
+  // EFFECT: writes this index and its checkpoints to the given stream, which is
+  // meant to be a file kept next to the log
+  public void write(OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeLong(this.level.stateHash());
+    out.writeInt(this.interval);
+    out.writeInt(this.keys);
+    for (int k = 1; k <= this.keys; k += 1) {
+      out.writeInt(this.stateAfter[k]);
+      out.writeInt(this.scoreAfter[k]);
+    }
+    out.writeInt(this.states);
+    for (int s = 1; s < this.states; s += 1) {
+      out.writeInt(this.parent[s]);
+      out.writeByte(this.move[s]);
+    }
+    out.writeInt(this.checkpoints.size() - 1);
+    for (int state : this.checkpoints.keySet()) {
+      if (state != 0) {
+        Board board = this.checkpoints.get(state);
+        out.writeInt(state);
+        out.write(board.ground.toArray());
+        out.write(board.content.toArray());
+      }
+    }
+    out.flush();
+  }
+
+  // returns the index written to the given stream for a game on the given level,
+  // checking that every state, parent, move and checkpoint in it makes sense, so a
+  // corrupt file is rejected instead of replaying into a broken board
+  static ReplayIndex read(Level level, InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("not a checkpoint file");
+    }
+    byte version = in.readByte();
+    if (version != VERSION) {
+      throw new IOException("unsupported checkpoint file version " + version);
+    }
+    if (in.readLong() != level.stateHash()) {
+      throw new IllegalArgumentException("the checkpoints were made on a different level");
+    }
+    int interval = in.readInt();
+    ReplayIndex.check(interval > 0);
+    ReplayIndex index = new ReplayIndex(level, interval);
+    int keys = in.readInt();
+    ReplayIndex.check(keys >= 0);
+    for (int k = 0; k < keys; k += 1) {
+      int state = in.readInt();
+      index.addKey(state, in.readInt());
+    }
+    int states = in.readInt();
+    ReplayIndex.check(states >= 1);
+    for (int s = 1; s < states; s += 1) {
+      int parent = in.readInt();
+      byte move = in.readByte();
+      // a state always comes after its parent, so the parents cannot form a cycle
+      ReplayIndex.check(parent >= 0 && parent < s && move >= 0 && move < Solver.MOVES.length());
+      index.addState(parent, move);
+    }
+    for (int k = 1; k <= keys; k += 1) {
+      ReplayIndex.check(index.stateAfter[k] >= 0 && index.stateAfter[k] < states);
+    }
+    int checkpoints = in.readInt();
+    ReplayIndex.check(checkpoints >= 0 && checkpoints < states);
+    Board start = level.board;
+    for (int c = 0; c < checkpoints; c += 1) {
+      int state = in.readInt();
+      ReplayIndex.check(state > 0 && state < states);
+      byte[] ground = new byte[start.rows * start.cols];
+      byte[] content = new byte[start.rows * start.cols];
+      in.readFully(ground);
+      in.readFully(content);
+      ReplayIndex.check(SaveFormat.arePieces(ground, content));
+      index.checkpoints.put(state, new Board(start.rows, start.cols, ground, content));
+    }
+    return index;
+  }
+
+  // EFFECT: throws an exception if the given fact about a checkpoint file is false
+  static void check(boolean fact) throws IOException {
+    if (!fact) {
+      throw new IOException("the checkpoint file is corrupt");
+    }
+  }
+}
+
+class ExamplesMoveLog {
+  Level level = new Level(
+      "________\n" + "___R____\n" + "________\n" + "_B____Y_\n" + "________\n" + "___G____\n"
+          + "________",
+      "__WWW___\n" + "__W_WW__\n" + "WWWr_WWW\n" + "Wb_>_ByW\n" + "WW__WWWW\n" + "_WWgW___\n"
+          + "__WWW___");
+
+  // returns the log of the given keys played on the given level
+  byte[] record(Level level, String... keys) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (MoveLogWriter log = new MoveLogWriter(out, level.stateHash())) {
+      for (String key : keys) {
+        log.write(key);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  // returns the keys of the given log
+  ArrayList<String> keys(byte[] log) throws IOException {
+    ArrayList<String> keys = new ArrayList<String>();
+    try (MoveLogReader reader = new MoveLogReader(new ByteArrayInputStream(log))) {
+      for (String key = reader.next(); key != null; key = reader.next()) {
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
+  boolean testMoveLogFormat(Tester t) throws IOException {
+    byte[] log = this.record(this.level, "left", "right", "up", "down", "right", "u", "x");
+    return t.checkExpect(log.length, MoveLog.HEADER_BYTES + 1 + 2 + 2)
+        // five moves packed into two bytes: left, right, up, down, then right
+        && t.checkExpect(log[MoveLog.HEADER_BYTES], (byte) 5)
+        && t.checkExpect(log[MoveLog.HEADER_BYTES + 1], (byte) 0b01001110)
+        && t.checkExpect(log[MoveLog.HEADER_BYTES + 2], (byte) 0b11)
+        && t.checkExpect(log[MoveLog.HEADER_BYTES + 3], (byte) 0)
+        && t.checkExpect(log[MoveLog.HEADER_BYTES + 4], MoveLog.UNDO)
+        && t.checkExpect(this.keys(log),
+            new ArrayList<String>(Arrays.asList("left", "right", "up", "down", "right", "u")));
+  }
+
+  boolean testMoveLogLongRuns(Tester t) throws IOException {
+    String[] keys = new String[1001];
+    for (int i = 0; i < 1000; i += 1) {
+      keys[i] = MoveLog.MOVE_KEYS[i % 4];
+    }
+    keys[1000] = "r";
+    byte[] log = this.record(this.level, keys);
+    // three full chunks, a chunk of the last 235 moves, and the redo
+    return t.checkExpect(log.length, MoveLog.HEADER_BYTES + 3 * (1 + 64) + (1 + 59) + 2)
+        && t.checkExpect(this.keys(log), new ArrayList<String>(Arrays.asList(keys)));
+  }
+
+  boolean testMoveLogHeader(Tester t) throws IOException {
+    byte[] empty = this.record(this.level);
+    byte[] badVersion = empty.clone();
+    badVersion[4] = 9;
+    return t.checkExpect(empty.length, MoveLog.HEADER_BYTES)
+        && t.checkExpect(new MoveLogReader(new ByteArrayInputStream(empty)).levelHash,
+            this.level.stateHash())
+        && t.checkExpect(this.keys(empty), new ArrayList<String>())
+        && t.checkConstructorException(new IOException("not a move log"), "MoveLogReader",
+            new ByteArrayInputStream(new byte[] { 1, 2 }))
+        && t.checkConstructorException(new IOException("unsupported move log version 9"),
+            "MoveLogReader", new ByteArrayInputStream(badVersion));
+  }
+
+  boolean testReplay(Tester t) throws IOException {
+    String[] keys = { "left", "left", "right", "u", "u", "r", "down", "up", "up", "right" };
+    SokobanWorld played = new SokobanWorld(this.level);
+    for (String key : keys) {
+      played = played.onKeyEvent(key);
+    }
+    SokobanWorld replayed = new Replayer().replay(this.level,
+        new ByteArrayInputStream(this.record(this.level, keys)));
+    return t.checkExpect(replayed.curr, played.curr)
+        && t.checkExpect(replayed.score, played.score)
+        && t.checkExpect(replayed.journal.undoable(), played.journal.undoable())
+        && t.checkException(
+            new IllegalArgumentException("the log was recorded on a different level"),
+            new Replayer(), "replay", new ExamplesSokoban().testLevel,
+            new ByteArrayInputStream(this.record(this.level, keys)));
+  }
+
+  boolean testRecordingWorld(Tester t) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RecordingWorld world = new RecordingWorld(this.level, out);
+    world = world.onKeyEvent("left").onKeyEvent("space").onKeyEvent("u").onKeyEvent("up");
+    world.log.close();
+    SokobanWorld replayed = new Replayer().replay(this.level,
+        new ByteArrayInputStream(out.toByteArray()));
+    return t.checkExpect(this.keys(out.toByteArray()),
+        new ArrayList<String>(Arrays.asList("left", "u", "up")))
+        && t.checkExpect(replayed.curr, world.world.curr)
+        && t.checkExpect(replayed.score, world.world.score);
+  }
+
+  // returns a long game on an open room: walks that push no pieces, undone and
+  // redone in runs of different lengths
+  String[] longGame() {
+    ArrayList<String> keys = new ArrayList<String>();
+    for (int round = 0; round < 400; round += 1) {
+      for (int k = 0; k < 12; k += 1) {
+        keys.add(MoveLog.MOVE_KEYS[(round + k / 3) % 4]);
+      }
+      for (int k = 0; k < round % 7; k += 1) {
+        keys.add("u");
+      }
+      for (int k = 0; k < round % 3; k += 1) {
+        keys.add("r");
+      }
+    }
+    return keys.toArray(new String[0]);
+  }
+
+  // returns the worlds after each number of the given keys played on the given level
+  ArrayList<SokobanWorld> play(Level level, String[] keys) {
+    ArrayList<SokobanWorld> worlds = new ArrayList<SokobanWorld>();
+    worlds.add(new SokobanWorld(level));
+    for (String key : keys) {
+      worlds.add(worlds.get(worlds.size() - 1).onKeyEvent(key));
+    }
+    return worlds;
+  }
+
+  boolean testReplayIndexSeek(Tester t) throws IOException {
+    Level room = new ExamplesSokoban().justPlayer;
+    String[] keys = this.longGame();
+    ArrayList<SokobanWorld> worlds = this.play(room, keys);
+    ReplayIndex index = ReplayIndex.build(room,
+        new ByteArrayInputStream(this.record(room, keys)), 16);
+    boolean passed = t.checkExpect(index.keys, keys.length);
+    for (int n = 0; n <= keys.length; n += 97) {
+      passed = passed && t.checkExpect(index.levelAfter(n), worlds.get(n).curr)
+          && t.checkExpect(index.scoreAfter(n), worlds.get(n).score)
+          && t.checkExpect(index.replayedFor(index.stateAfter[n]) < 16, true);
+    }
+    return passed
+        && t.checkExpect(index.levelAfter(keys.length), worlds.get(keys.length).curr)
+        && t.checkException(new IndexOutOfBoundsException("the game has " + keys.length
+            + " keys, not " + (keys.length + 1)), index, "levelAfter", keys.length + 1);
+  }
+
+  boolean testReplayIndexPushes(Tester t) throws IOException {
+    String[] keys = { "left", "left", "right", "u", "u", "u", "r", "up", "right", "u", "r",
+        "down", "up", "up" };
+    ArrayList<SokobanWorld> worlds = this.play(this.level, keys);
+    ReplayIndex index = ReplayIndex.build(this.level,
+        new ByteArrayInputStream(this.record(this.level, keys)), 2);
+    boolean passed = true;
+    for (int n = 0; n <= keys.length; n += 1) {
+      passed = passed && t.checkExpect(index.levelAfter(n), worlds.get(n).curr)
+          && t.checkExpect(index.scoreAfter(n), worlds.get(n).score);
+    }
+    return passed;
+  }
+
+  boolean testReplayIndexFile(Tester t) throws IOException {
+    Level room = new ExamplesSokoban().justPlayer;
+    String[] keys = this.longGame();
+    ReplayIndex index = ReplayIndex.build(room,
+        new ByteArrayInputStream(this.record(room, keys)), 32);
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    index.write(file);
+    ReplayIndex read = ReplayIndex.read(room, new ByteArrayInputStream(file.toByteArray()));
+    return t.checkExpect(read.keys, index.keys)
+        && t.checkExpect(read.checkpoints.size(), index.checkpoints.size())
+        && t.checkExpect(read.levelAfter(1234), index.levelAfter(1234))
+        && t.checkExpect(read.scoreAfter(keys.length), index.scoreAfter(keys.length))
+        && t.checkException(
+            new IllegalArgumentException("the checkpoints were made on a different level"),
+            this, "readOn", this.level, file.toByteArray());
+  }
+
+  // returns the index in the given bytes read for the given level
+  ReplayIndex readOn(Level level, byte[] file) throws IOException {
+    return ReplayIndex.read(level, new ByteArrayInputStream(file));
+  }
+
+  boolean testReplayIndexCorrupt(Tester t) throws IOException {
+    // one key that moves the player, checkpointed at every move: the interval is at
+    // 13, the state after the key at 21, the parent and move of state 1 at 33 and
+    // 37, the checkpointed state at 42 and its ground at 46
+    ReplayIndex index = ReplayIndex.build(this.level,
+        new ByteArrayInputStream(this.record(this.level, "left")), 1);
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    index.write(file);
+    byte[] bytes = file.toByteArray();
+    IOException corrupt = new IOException("the checkpoint file is corrupt");
+    return t.checkExpect(this.readOn(this.level, bytes).levelAfter(1), index.levelAfter(1))
+        && t.checkException(corrupt, this, "readWithInt", bytes, 13, 0)
+        && t.checkException(corrupt, this, "readWithInt", bytes, 21, 2)
+        && t.checkException(corrupt, this, "readWithInt", bytes, 33, 1)
+        && t.checkException(corrupt, this, "readWithInt", bytes, 33, -1)
+        && t.checkException(corrupt, this, "readWithByte", bytes, 37, 4)
+        && t.checkException(corrupt, this, "readWithInt", bytes, 42, 2)
+        && t.checkException(corrupt, this, "readWithByte", bytes, 46, 99)
+        && t.checkException(corrupt, this, "readWithByte", bytes, 46 + 56, -3);
+  }
+
+  // returns the index in the given bytes with the int at the given offset replaced
+  ReplayIndex readWithInt(byte[] file, int at, int value) throws IOException {
+    byte[] copy = file.clone();
+    ByteBuffer.wrap(copy).putInt(at, value);
+    return this.readOn(this.level, copy);
+  }
+
+  // returns the index in the given bytes with the byte at the given offset replaced
+  ReplayIndex readWithByte(byte[] file, int at, int value) throws IOException {
+    byte[] copy = file.clone();
+    copy[at] = (byte) value;
+    return this.readOn(this.level, copy);
+  }
+}
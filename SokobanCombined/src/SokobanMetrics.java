@@ -0,0 +1,483 @@
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import tester.Tester;
+
+// represents a histogram of non-negative values, laid out like an HdrHistogram with
+// two significant binary digits less: values below 64 each have their own bucket,
+// and every power of two above that is split into 32 buckets of equal width, so any
+// value is known to within about 3% and the buckets of every long take 1888 counts.
+// Recording is lock free, so values can be recorded on one thread and read on another
+class Histogram {
+  static final int SUB_BITS = 5;
+  static final int SUB = 1 << SUB_BITS;
+  static final int BUCKETS = 2 * SUB + (62 - SUB_BITS) * SUB;
+
+  AtomicLongArray counts;
+  AtomicLong total;
+  AtomicLong sum;
+  AtomicLong max;
+
+  Histogram() {
+    this.counts = new AtomicLongArray(BUCKETS);
+    this.total = new AtomicLong();
+    this.sum = new AtomicLong();
+    this.max = new AtomicLong();
+  }
+
+  // returns the bucket of the given value
+  static int bucket(long value) {
+    if (value < 2 * SUB) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    return 2 * SUB + (shift - 1) * SUB + (int) (value >>> shift) - SUB;
+  }
+
+  // returns the largest value that falls in the given bucket
+  static long highest(int bucket) {
+    if (bucket < 2 * SUB) {
+      return bucket;
+    }
+    int shift = (bucket - 2 * SUB) / SUB + 1;
+    long top = (bucket - 2 * SUB) % SUB + SUB;
+    return ((top + 1) << shift) - 1;
+  }
+
+  // EFFECT: records the given value, counting a negative value as 0
+  public void record(long value) {
+    long v = Math.max(0, value);
+    this.counts.incrementAndGet(bucket(v));
+    this.total.incrementAndGet();
+    this.sum.addAndGet(v);
+    this.max.accumulateAndGet(v, Math::max);
+  }
+
+  // returns the number of values recorded
+  public long count() {
+    return this.total.get();
+  }
+
+  // returns the largest value recorded, or 0 if there is none
+  public long max() {
+    return this.max.get();
+  }
+
+  // returns the mean of the values recorded, or 0 if there is none
+  public double mean() {
+    long count = this.total.get();
+    return count == 0 ? 0 : (double) this.sum.get() / count;
+  }
+
+  // returns a value that the given percentage of the values recorded are at most,
+  // to within the width of its bucket, or 0 if there is none
+  public long percentile(double percent) {
+    long count = this.total.get();
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i += 1) {
+      seen += this.counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highest(i), this.max.get());
+      }
+    }
+    return this.max.get();
+  }
+
+  // EFFECT: forgets every value recorded
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i += 1) {
+      this.counts.set(i, 0);
+    }
+    this.total.set(0);
+    this.sum.set(0);
+    this.max.set(0);
+  }
+}
+
+// represents the measurements of one operation: how long each call took and how many
+// bytes the calling thread allocated during it. A call is measured by taking
+// startNanos and startBytes before it and passing them to stop after it
+class OperationMetrics {
+  String name;
+  Histogram nanos;
+  Histogram bytes;
+
+  OperationMetrics(String name) {
+    this.name = name;
+    this.nanos = new Histogram();
+    this.bytes = new Histogram();
+  }
+
+  // returns the time at the start of a call, or 0 when metrics are off
+  public long startNanos() {
+    return GameMetrics.enabled ? System.nanoTime() : 0;
+  }
+
+  // returns the bytes the current thread has allocated so far, or 0 when metrics
+  // are off
+  public long startBytes() {
+    return GameMetrics.enabled ? GameMetrics.allocatedBytes() : 0;
+  }
+
+  // EFFECT: records a call that started at the given time and allocated count
+  public void stop(long startNanos, long startBytes) {
+    if (GameMetrics.enabled) {
+      long bytes = GameMetrics.allocatedBytes();
+      this.nanos.record(System.nanoTime() - startNanos);
+      if (bytes >= 0) {
+        this.bytes.record(bytes - startBytes);
+      }
+    }
+  }
+
+  // returns the number of calls measured
+  public long count() {
+    return this.nanos.count();
+  }
+
+  // returns one line with the count, latency and allocation of this operation
+  public String report() {
+    return String.format("%-12s %10d calls  latency p50 %s p99 %s max %s"
+        + "  alloc mean %s p99 %s max %s",
+        this.name, this.count(), time(this.nanos.percentile(50)),
+        time(this.nanos.percentile(99)), time(this.nanos.max()),
+        size(Math.round(this.bytes.mean())), size(this.bytes.percentile(99)),
+        size(this.bytes.max()));
+  }
+
+  // returns the given number of nanoseconds in a readable unit
+  static String time(long nanos) {
+    if (nanos < 10000) {
+      return nanos + "ns";
+    }
+    else if (nanos < 10000000) {
+      return (nanos / 1000) + "us";
+    }
+    else {
+      return (nanos / 1000000) + "ms";
+    }
+  }
+
+  // returns the given number of bytes in a readable unit
+  static String size(long bytes) {
+    if (bytes < 10240) {
+      return bytes + "B";
+    }
+    else if (bytes < 10485760) {
+      return (bytes / 1024) + "KB";
+    }
+    else {
+      return (bytes / 1048576) + "MB";
+    }
+  }
+}
+
+// the measurements of the game, shared by every world and level in the JVM: each
+// key press by key, the moves it makes through newLevelHorizontal/newLevelVertical
+// and editBoard, levelWon and render. They can be read as text with dump, printed
+// every so often with startDumps, or watched over JMX once registerMBean is called.
+// Measuring a call takes two clock reads and two reads of the bytes the thread has
+// allocated, so it is off unless the JVM is started with -Dsokoban.metrics=true or
+// setEnabled(true) is called. While it is off, a call costs one volatile read
+class GameMetrics {
+  // true while calls are measured
+  static volatile boolean enabled = Boolean.getBoolean("sokoban.metrics");
+
+  // the thread bean that counts the bytes each thread allocates, or null if the JVM
+  // does not count them
+  static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+
+  static final OperationMetrics NEW_LEVEL = new OperationMetrics("newLevel");
+  static final OperationMetrics EDIT_BOARD = new OperationMetrics("editBoard");
+  static final OperationMetrics LEVEL_WON = new OperationMetrics("levelWon");
+  static final OperationMetrics RENDER = new OperationMetrics("render");
+
+  // the keys measured on their own, and every other key together
+  static final String[] KEYS = { "up", "down", "left", "right", "u", "r" };
+  static final OperationMetrics[] KEY_METRICS = new OperationMetrics[KEYS.length];
+  static final OperationMetrics OTHER_KEYS = new OperationMetrics("key other");
+
+  static {
+    for (int i = 0; i < KEYS.length; i += 1) {
+      KEY_METRICS[i] = new OperationMetrics("key " + KEYS[i]);
+    }
+  }
+
+  // the name the metrics are registered under over JMX
+  static final String MBEAN_NAME = "sokoban:type=GameMetrics";
+
+  // EFFECT: turns measuring on or off
+  static void setEnabled(boolean on) {
+    enabled = on;
+  }
+
+  // returns the metrics of presses of the given key
+  static OperationMetrics key(String key) {
+    for (int i = 0; i < KEYS.length; i += 1) {
+      if (KEYS[i].equals(key)) {
+        return KEY_METRICS[i];
+      }
+    }
+    return OTHER_KEYS;
+  }
+
+  // returns every operation measured, key presses first
+  static ArrayList<OperationMetrics> all() {
+    ArrayList<OperationMetrics> all = new ArrayList<OperationMetrics>();
+    for (OperationMetrics metrics : KEY_METRICS) {
+      all.add(metrics);
+    }
+    all.add(OTHER_KEYS);
+    all.add(NEW_LEVEL);
+    all.add(EDIT_BOARD);
+    all.add(LEVEL_WON);
+    all.add(RENDER);
+    return all;
+  }
+
+  // returns the thread bean of the JVM if it counts the bytes each thread
+  // allocates, or null
+  static com.sun.management.ThreadMXBean allocationBean() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return (com.sun.management.ThreadMXBean) threads;
+    }
+    return null;
+  }
+
+  // returns the bytes the current thread has allocated so far, or -1 if the JVM does
+  // not count them
+  static long allocatedBytes() {
+    if (ALLOCATIONS == null) {
+      return -1;
+    }
+    return ALLOCATIONS.getCurrentThreadAllocatedBytes();
+  }
+
+  // EFFECT: forgets every measurement
+  static void reset() {
+    for (OperationMetrics metrics : all()) {
+      metrics.nanos.reset();
+      metrics.bytes.reset();
+    }
+  }
+
+  // returns every measured operation, one per line, followed by the collections the
+  // garbage collectors have made so far, to line up spikes with collections
+  static String dump() {
+    StringBuilder text = new StringBuilder();
+    for (OperationMetrics metrics : all()) {
+      if (metrics.count() > 0) {
+        text.append(metrics.report()).append('\n');
+      }
+    }
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      text.append(String.format("gc %-20s %d collections %dms%n", gc.getName(),
+          gc.getCollectionCount(), gc.getCollectionTime()));
+    }
+    return text.toString();
+  }
+
+  // EFFECT: prints the dump to the given stream every given number of seconds on a
+  // daemon thread, until the returned service is shut down
+  static ScheduledExecutorService startDumps(PrintStream out, long seconds) {
+    ScheduledExecutorService dumps = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "sokoban-metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    dumps.scheduleAtFixedRate(() -> out.print(dump()), seconds, seconds, TimeUnit.SECONDS);
+    return dumps;
+  }
+
+  // EFFECT: registers the metrics with the platform MBean server under MBEAN_NAME,
+  // if they are not registered yet
+  static void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(new GameMetricsBean(), name);
+      }
+    }
+    catch (javax.management.JMException e) {
+      throw new IllegalStateException("cannot register the game metrics", e);
+    }
+  }
+}
+
+// represents the game metrics over JMX. Every operation has the attributes
+// <operation>.count, .p50Nanos, .p99Nanos, .maxNanos, .meanBytes and .maxBytes, with
+// spaces in the names of key presses replaced by dots, and the operations dump and
+// reset do what their GameMetrics counterparts do
+class GameMetricsBean implements DynamicMBean {
+  // returns the values of every attribute by name
+  Map<String, Object> values() {
+    Map<String, Object> values = new LinkedHashMap<String, Object>();
+    for (OperationMetrics metrics : GameMetrics.all()) {
+      String prefix = metrics.name.replace(' ', '.');
+      values.put(prefix + ".count", metrics.count());
+      values.put(prefix + ".p50Nanos", metrics.nanos.percentile(50));
+      values.put(prefix + ".p99Nanos", metrics.nanos.percentile(99));
+      values.put(prefix + ".maxNanos", metrics.nanos.max());
+      values.put(prefix + ".meanBytes", metrics.bytes.mean());
+      values.put(prefix + ".maxBytes", metrics.bytes.max());
+    }
+    return values;
+  }
+
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Object value = this.values().get(attribute);
+    if (value == null) {
+      throw new AttributeNotFoundException("no attribute " + attribute);
+    }
+    return value;
+  }
+
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException("the game metrics are read only");
+  }
+
+  public AttributeList getAttributes(String[] attributes) {
+    Map<String, Object> values = this.values();
+    AttributeList list = new AttributeList();
+    for (String attribute : attributes) {
+      if (values.containsKey(attribute)) {
+        list.add(new Attribute(attribute, values.get(attribute)));
+      }
+    }
+    return list;
+  }
+
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  public Object invoke(String action, Object[] params, String[] signature)
+      throws ReflectionException {
+    if (action.equals("dump")) {
+      return GameMetrics.dump();
+    }
+    else if (action.equals("reset")) {
+      GameMetrics.reset();
+      return null;
+    }
+    throw new ReflectionException(new NoSuchMethodException(action), "no operation " + action);
+  }
+
+  public MBeanInfo getMBeanInfo() {
+    ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+    for (Map.Entry<String, Object> entry : this.values().entrySet()) {
+      attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+          entry.getKey(), true, false, false));
+    }
+    MBeanOperationInfo[] operations = new MBeanOperationInfo[] {
+        new MBeanOperationInfo("dump", "the metrics as text", null, "java.lang.String",
+            MBeanOperationInfo.INFO),
+        new MBeanOperationInfo("reset", "forgets every measurement", null, "void",
+            MBeanOperationInfo.ACTION) };
+    return new MBeanInfo(GameMetricsBean.class.getName(), "Sokoban move metrics",
+        attributes.toArray(new MBeanAttributeInfo[0]), null, operations, null);
+  }
+}
+
+class ExamplesGameMetrics {
+  ExamplesSokoban examples = new ExamplesSokoban();
+
+  boolean testHistogramBuckets(Tester t) {
+    return t.checkExpect(Histogram.bucket(0), 0)
+        && t.checkExpect(Histogram.bucket(63), 63)
+        && t.checkExpect(Histogram.bucket(64), 64)
+        && t.checkExpect(Histogram.bucket(65), 64)
+        && t.checkExpect(Histogram.bucket(66), 65)
+        && t.checkExpect(Histogram.bucket(128), 96)
+        && t.checkExpect(Histogram.highest(64), 65L)
+        && t.checkExpect(Histogram.highest(96), 131L)
+        && t.checkExpect(Histogram.bucket(Long.MAX_VALUE), Histogram.BUCKETS - 1)
+        && t.checkExpect(Histogram.highest(Histogram.BUCKETS - 1), Long.MAX_VALUE);
+  }
+
+  boolean testHistogramPercentiles(Tester t) {
+    Histogram histogram = new Histogram();
+    boolean empty = t.checkExpect(histogram.percentile(50), 0L)
+        && t.checkExpect(histogram.mean(), 0.0);
+    for (long v = 1; v <= 1000; v += 1) {
+      histogram.record(v);
+    }
+    histogram.record(-5);
+    long p50 = histogram.percentile(50);
+    long p99 = histogram.percentile(99);
+    boolean filled = t.checkExpect(histogram.count(), 1001L)
+        && t.checkExpect(histogram.max(), 1000L)
+        && t.checkExpect(p50 >= 500 && p50 <= 500 * 33 / 32, true)
+        && t.checkExpect(p99 >= 990 && p99 <= 1000, true)
+        && t.checkExpect(histogram.percentile(100), 1000L)
+        && t.checkExpect(histogram.percentile(0), 0L);
+    histogram.reset();
+    return empty && filled && t.checkExpect(histogram.count(), 0L)
+        && t.checkExpect(histogram.max(), 0L);
+  }
+
+  boolean testGameMetricsMeasureMoves(Tester t) {
+    boolean byDefault = t.checkExpect(GameMetrics.enabled,
+        Boolean.getBoolean("sokoban.metrics"));
+    GameMetrics.setEnabled(true);
+    GameMetrics.reset();
+    SokobanWorld world = new SokobanWorld(this.examples.withIce);
+    world.onKeyEvent("right").onKeyEvent("u").onKeyEvent("x");
+    this.examples.withIce.render();
+    this.examples.withIce.levelWon();
+    boolean counted = t.checkExpect(GameMetrics.key("right").count(), 1L)
+        && t.checkExpect(GameMetrics.key("u").count(), 1L)
+        && t.checkExpect(GameMetrics.key("x").count(), 1L)
+        && t.checkExpect(GameMetrics.NEW_LEVEL.count(), 1L)
+        && t.checkExpect(GameMetrics.EDIT_BOARD.count(), 1L)
+        && t.checkExpect(GameMetrics.RENDER.count(), 1L)
+        && t.checkExpect(GameMetrics.LEVEL_WON.count() >= 1, true)
+        && t.checkExpect(GameMetrics.dump().startsWith("key right"), true)
+        && t.checkExpect(GameMetrics.dump().contains("gc "), true);
+    GameMetrics.setEnabled(false);
+    world.onKeyEvent("right");
+    boolean off = t.checkExpect(GameMetrics.key("right").count(), 1L);
+    return byDefault && counted && off;
+  }
+
+  boolean testGameMetricsMBean(Tester t) throws Exception {
+    GameMetrics.setEnabled(true);
+    GameMetrics.reset();
+    GameMetrics.registerMBean();
+    GameMetrics.registerMBean();
+    new SokobanWorld(this.examples.withIce).onKeyEvent("left");
+    GameMetrics.setEnabled(false);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(GameMetrics.MBEAN_NAME);
+    return t.checkExpect(server.getAttribute(name, "key.left.count"), 1L)
+        && t.checkExpect(server.getAttribute(name, "newLevel.count"), 1L)
+        && t.checkExpect(((String) server.invoke(name, "dump", null, null)).startsWith("key left"),
+            true)
+        && t.checkExpect(server.getMBeanInfo(name).getAttributes().length,
+            6 * GameMetrics.all().size());
+  }
+}
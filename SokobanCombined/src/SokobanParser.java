@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import tester.Tester;
+
+// represents the characters of a level description read one at a time, from either
+// a CharSequence or a Reader read through a fixed buffer. A carriage return is
+// skipped, so lines may end with either \n or \r\n
+class LevelText {
+  static final int BUFFER_CHARS = 8192;
+
+  CharSequence text;
+  Reader reader;
+  char[] buffer;
+  int at;
+  int filled;
+
+  LevelText(CharSequence text) {
+    this.text = text;
+    this.at = 0;
+  }
+
+  LevelText(Reader reader) {
+    this.reader = reader;
+    this.buffer = new char[BUFFER_CHARS];
+    this.at = 0;
+    this.filled = 0;
+  }
+
+  // returns the next character, or -1 at the end of the text
+  int next() throws IOException {
+    int c = this.read();
+    while (c == '\r') {
+      c = this.read();
+    }
+    return c;
+  }
+
+  // returns the next character including carriage returns, or -1 at the end
+  int read() throws IOException {
+    if (this.text != null) {
+      if (this.at == this.text.length()) {
+        return -1;
+      }
+      this.at += 1;
+      return this.text.charAt(this.at - 1);
+    }
+    if (this.at == this.filled) {
+      this.filled = this.reader.read(this.buffer);
+      this.at = 0;
+      if (this.filled <= 0) {
+        this.filled = 0;
+        return -1;
+      }
+    }
+    this.at += 1;
+    return this.buffer[this.at - 1];
+  }
+}
+
+// parses level descriptions into boards in a single pass: the ground and content
+// descriptions are read side by side, one character of each per tile, and their codes
+// go straight into the planes of the board, so parsing takes time and space linear in
+// the size of the level. Rows end with a newline, and a newline at the very end is
+// ignored. Every row must be as long as the first, and the two descriptions must
+// have their newlines in the same places. Errors name the line and column, counting
+// from 1, where the descriptions first go wrong
+class LevelParser {
+  // the code of each character of a ground or content description, or -1
+  static final byte[] GROUND_CODES = new byte[128];
+  static final byte[] CONTENT_CODES = new byte[128];
+
+  static {
+    Arrays.fill(GROUND_CODES, (byte) -1);
+    Arrays.fill(CONTENT_CODES, (byte) -1);
+    GROUND_CODES['_'] = Board.GROUND_BLANK;
+    GROUND_CODES['I'] = Board.GROUND_ICE;
+    CONTENT_CODES['_'] = Board.CONTENT_BLANK;
+    CONTENT_CODES['W'] = Board.CONTENT_WALL;
+    CONTENT_CODES['B'] = Board.CONTENT_BOX;
+    CONTENT_CODES['h'] = Board.CONTENT_HOLE;
+    for (char player : "><^v".toCharArray()) {
+      CONTENT_CODES[player] = Board.CONTENT_PLAYER;
+    }
+    // targets and trophies are in the order of PieceColor
+    for (int color = 0; color < 4; color += 1) {
+      GROUND_CODES["YGBR".charAt(color)] = (byte) (Board.GROUND_TARGET + color);
+      CONTENT_CODES["ygbr".charAt(color)] = (byte) (Board.CONTENT_TROPHY + color);
+    }
+  }
+
+  // returns the board described by the given ground and content descriptions
+  public Board parse(CharSequence ground, CharSequence content) {
+    try {
+      return this.parse(new LevelText(ground), new LevelText(content),
+          Math.max(ground.length(), 1));
+    }
+    catch (IOException e) {
+      // a CharSequence is never read from a stream
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // returns the board described by the ground and content descriptions read from
+  // the given readers
+  public Board read(Reader ground, Reader content) throws IOException {
+    return this.parse(new LevelText(ground), new LevelText(content), 1024);
+  }
+
+  // returns the board described by the given texts, starting with room for the
+  // given number of tiles
+  Board parse(LevelText groundText, LevelText contentText, int capacity) throws IOException {
+    byte[] ground = new byte[capacity];
+    byte[] content = new byte[capacity];
+    int tiles = 0;
+    int rows = 0;
+    int cols = -1;
+    int col = 0;
+    while (true) {
+      int g = groundText.next();
+      int c = contentText.next();
+      if (kind(g) != kind(c)) {
+        throw new IllegalArgumentException("line " + (rows + 1) + ", column " + (col + 1)
+            + ": the ground and the content do not line up");
+      }
+      if (g == -1 && col == 0) {
+        break;
+      }
+      if (g == -1 || g == '\n') {
+        if (cols == -1) {
+          cols = col;
+        }
+        else if (col != cols) {
+          throw new IllegalArgumentException("line " + (rows + 1) + " has " + col
+              + " columns, but line 1 has " + cols);
+        }
+        rows += 1;
+        col = 0;
+        if (g == -1) {
+          break;
+        }
+        continue;
+      }
+      if (tiles == ground.length) {
+        ground = Arrays.copyOf(ground, tiles * 2);
+        content = Arrays.copyOf(content, tiles * 2);
+      }
+      ground[tiles] = code(GROUND_CODES, g, rows, col, "the ground", "ground");
+      content[tiles] = code(CONTENT_CODES, c, rows, col, "the content", "level content");
+      tiles += 1;
+      col += 1;
+    }
+    if (tiles == 0) {
+      throw new IllegalArgumentException("the level has no tiles");
+    }
+    if (tiles < ground.length) {
+      ground = Arrays.copyOf(ground, tiles);
+      content = Arrays.copyOf(content, tiles);
+    }
+    return new Board(rows, cols, ground, content);
+  }
+
+  // returns 0 for the end of a text, 1 for a newline and 2 for any other character
+  static int kind(int c) {
+    if (c == -1) {
+      return 0;
+    }
+    return c == '\n' ? 1 : 2;
+  }
+
+  // returns the code of the given character in the given table, which is found at
+  // the given row and column of the named description
+  static byte code(byte[] codes, int c, int row, int col, String where, String piece) {
+    byte code = c < codes.length ? codes[c] : -1;
+    if (code == -1) {
+      throw new IllegalArgumentException("line " + (row + 1) + ", column " + (col + 1)
+          + " of " + where + ": '" + (char) c + "' is not a piece of " + piece);
+    }
+    return code;
+  }
+}
+
+class ExamplesLevelParser {
+  ExamplesSokoban examples = new ExamplesSokoban();
+  LevelParser parser = new LevelParser();
+
+  boolean testParseMatchesCells(Tester t) {
+    String ground = "________\n" + "___R____\n" + "________\n" + "_B____Y_\n" + "________\n"
+        + "___G____\n" + "________";
+    String content = "__WWW___\n" + "__W_WW__\n" + "WWWr_WWW\n" + "Wb_>_ByW\n" + "WW__WWWW\n"
+        + "_WWgW___\n" + "__WWW___";
+    Board cells = new Utils().cellsToBoard(
+        new Utils().configureBoard(ground, content, 0, ground.indexOf("\n")));
+    return t.checkExpect(this.parser.parse(ground, content), cells)
+        && t.checkExpect(this.parser.parse(ground + "\n", content + "\n"), cells)
+        && t.checkExpect(this.parser.parse(ground.replace("\n", "\r\n"),
+            content.replace("\n", "\r\n")), cells)
+        && t.checkExpect(new Level(ground, content), this.examples.testLevelAlmostWon)
+        && t.checkExpect(this.parser.parse("IGB", "<^v").content.toArray(),
+            new byte[] { Board.CONTENT_PLAYER, Board.CONTENT_PLAYER, Board.CONTENT_PLAYER })
+        && t.checkExpect(this.parser.parse("IGB", "<^v").ground.toArray(),
+            new byte[] { Board.GROUND_ICE, Board.GROUND_TARGET + 1, Board.GROUND_TARGET + 2 });
+  }
+
+  boolean testReadMatchesParse(Tester t) throws IOException {
+    Level level = this.examples.withIceBig;
+    StringBuilder ground = new StringBuilder();
+    StringBuilder content = new StringBuilder();
+    for (int y = 0; y <= level.height; y += 1) {
+      for (int x = 0; x <= level.width; x += 1) {
+        ground.append("_IYGBR".charAt(level.board.groundAt(y, x)));
+        content.append("_W>Bhygbr".charAt(level.board.contentAt(y, x)));
+      }
+      ground.append('\n');
+      content.append('\n');
+    }
+    return t.checkExpect(this.parser.read(new StringReader(ground.toString()),
+        new StringReader(content.toString())), level.board)
+        && t.checkExpect(this.parser.parse(ground, content), level.board);
+  }
+
+  boolean testParseHugeLevel(Tester t) throws IOException {
+    int size = 1000;
+    StringBuilder ground = new StringBuilder();
+    StringBuilder content = new StringBuilder();
+    for (int y = 0; y < size; y += 1) {
+      for (int x = 0; x < size; x += 1) {
+        boolean edge = y == 0 || x == 0 || y == size - 1 || x == size - 1;
+        ground.append(y == size / 2 && x == size / 2 ? 'Y' : '_');
+        content.append(edge ? 'W' : (y == 1 && x == 1 ? '>' : '_'));
+      }
+      ground.append('\n');
+      content.append('\n');
+    }
+    Level level = new Level(ground.toString(), content.toString());
+    Board read = this.parser.read(new StringReader(ground.toString()),
+        new StringReader(content.toString()));
+    return t.checkExpect(level.height, size - 1)
+        && t.checkExpect(level.width, size - 1)
+        && t.checkExpect(level.playerPos, new javalib.worldimages.Posn(1, 1))
+        && t.checkExpect(level.board.unsatisfiedTargets(), 1)
+        && t.checkExpect(read.hash, level.board.hash)
+        && t.checkExpect(new Utils().getHeight(ground.toString()), size);
+  }
+
+  boolean testParseErrors(Tester t) {
+    return t.checkException(
+        new IllegalArgumentException("line 2, column 3 of the ground: 'x' is not a piece of ground"),
+        this.parser, "parse", "___\n__x", "___\n___")
+        && t.checkException(new IllegalArgumentException(
+            "line 1, column 2 of the content: '?' is not a piece of level content"),
+            this.parser, "parse", "___", "_?_")
+        && t.checkException(new IllegalArgumentException("line 3 has 2 columns, but line 1 has 3"),
+            this.parser, "parse", "___\n___\n__", "___\n___\n__")
+        && t.checkException(new IllegalArgumentException("line 2 has 0 columns, but line 1 has 3"),
+            this.parser, "parse", "___\n\n___", "___\n\n___")
+        && t.checkException(new IllegalArgumentException(
+            "line 2, column 3: the ground and the content do not line up"),
+            this.parser, "parse", "___\n___", "___\n__\n_")
+        && t.checkException(new IllegalArgumentException(
+            "line 1, column 4: the ground and the content do not line up"),
+            this.parser, "parse", "___\n___", "___")
+        && t.checkException(new IllegalArgumentException("the level has no tiles"),
+            this.parser, "parse", "", "")
+        && t.checkException(new IllegalArgumentException("the level has no tiles"),
+            this.parser, "parse", "\n", "\n")
+        && t.checkConstructorException(
+            new IllegalArgumentException("line 2 has 2 columns, but line 1 has 3"), "Level",
+            "___\n__", "___\n__");
+  }
+}
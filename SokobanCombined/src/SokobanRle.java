@@ -0,0 +1,428 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import tester.Tester;
+
+// encodes levels and solutions in the run-length notation of the Sokoban community,
+// where a run of the same tile or move is written once after its count, and a count
+// of 1 is left out.
+// A level is its rows separated by '|', each a run of tiles, such as "5#|#@$.#|5#".
+// A tile is a single character of an XSB pack, as read by XsbImporter, with '-' for
+// the floor, so levels of other Sokoban games decode as they are, and this game's
+// ice, holes and colored trophies and targets have characters of their own. A tile
+// that no single character stands for, such as a box on a red target or the player
+// on ice, is written as its ground and its content in parentheses, in the characters
+// of the two-string format: "(RB)" and "(I>)". Rows that are shorter than the
+// longest are padded with floor.
+// A solution is a run of moves in LURD notation, lower case for a move that pushes
+// nothing and upper case for one that pushes, such as "3rU2l". Moves may be grouped
+// in parentheses to repeat them, as in "3(ul)", and whitespace is ignored.
+// A few characters of either can stand for a great many tiles or moves, so decoding
+// gives up on a level of more than MAX_TILES tiles or a solution of more than
+// MAX_MOVES moves before making it.
+class RleCodec {
+  // the most tiles of a decoded level and the most moves of a decoded solution
+  static final int MAX_TILES = 1 << 24;
+  static final int MAX_MOVES = 1 << 24;
+
+  // the ground and content characters of the two-string format, in the order of the
+  // codes of the board
+  static final String GROUNDS = "_IYGBR";
+  static final String CONTENTS = "_W>Bhygbr";
+  // the single character for each ground and content code, at ground << 4 | content,
+  // or 0 if there is none
+  static final char[] SYMBOLS = new char[1 << 8];
+
+  static {
+    // the floor is '-', which is why it comes first
+    for (char c : "-#@+$.*~hygbrYGBR".toCharArray()) {
+      int tile = XsbImporter.GROUND_CODES[c] << 4 | XsbImporter.CONTENT_CODES[c];
+      if (SYMBOLS[tile] == 0) {
+        SYMBOLS[tile] = c;
+      }
+    }
+  }
+
+  // returns the run-length encoding of the given board
+  public String encode(Board board) {
+    StringBuilder rle = new StringBuilder();
+    for (int y = 0; y < board.rows; y += 1) {
+      if (y > 0) {
+        rle.append('|');
+      }
+      int x = 0;
+      while (x < board.cols) {
+        byte ground = board.groundAt(y, x);
+        byte content = board.contentAt(y, x);
+        int run = 1;
+        while (x + run < board.cols && board.groundAt(y, x + run) == ground
+            && board.contentAt(y, x + run) == content) {
+          run += 1;
+        }
+        if (run > 1) {
+          rle.append(run);
+        }
+        char symbol = SYMBOLS[ground << 4 | content];
+        if (symbol != 0) {
+          rle.append(symbol);
+        }
+        else {
+          rle.append('(').append(GROUNDS.charAt(ground)).append(CONTENTS.charAt(content))
+              .append(')');
+        }
+        x += run;
+      }
+    }
+    return rle.toString();
+  }
+
+  // returns the board of the given run-length encoded level. The level is read twice:
+  // once to find its size, and once to write the code of each tile straight into the
+  // planes of the board, so no row is ever built as a string
+  public Board decode(CharSequence rle) {
+    int[] size = this.walk(rle, null, null, 0);
+    if (size[0] == 0 || size[1] == 0) {
+      throw new IllegalArgumentException("the level has no tiles");
+    }
+    if ((long) size[0] * size[1] > MAX_TILES) {
+      throw new IllegalArgumentException("the level has more than " + MAX_TILES + " tiles");
+    }
+    byte[] ground = new byte[size[0] * size[1]];
+    byte[] content = new byte[size[0] * size[1]];
+    // padding is left as 0, which is blank ground with nothing on it
+    this.walk(rle, ground, content, size[1]);
+    return new Board(size[0], size[1], ground, content);
+  }
+
+  // returns the number of rows and the number of columns of the longest row of the
+  // given level, and EFFECT: if the planes are not null, writes the codes of its tiles
+  // into them, for a board with the given number of columns
+  int[] walk(CharSequence rle, byte[] ground, byte[] content, int cols) {
+    int rows = 0;
+    int longest = 0;
+    int col = 0;
+    int run = 0;
+    for (int i = 0; i < rle.length(); i += 1) {
+      char c = rle.charAt(i);
+      if (c == '\r') {
+        continue;
+      }
+      if (c >= '0' && c <= '9') {
+        run = this.digit(run, c, i);
+      }
+      else if (c == '|' || c == '\n') {
+        if (run != 0) {
+          throw new IllegalArgumentException("character " + (i + 1) + ": a run of nothing");
+        }
+        longest = Math.max(longest, col);
+        rows += 1;
+        col = 0;
+      }
+      else {
+        byte g;
+        byte k;
+        if (c == '(') {
+          if (i + 3 >= rle.length() || rle.charAt(i + 3) != ')'
+              || !tile(LevelParser.GROUND_CODES, rle.charAt(i + 1))
+              || !tile(LevelParser.CONTENT_CODES, rle.charAt(i + 2))) {
+            throw new IllegalArgumentException("character " + (i + 1) + ": '"
+                + rle.subSequence(i, Math.min(i + 4, rle.length())) + "' is not a tile");
+          }
+          g = LevelParser.GROUND_CODES[rle.charAt(i + 1)];
+          k = LevelParser.CONTENT_CODES[rle.charAt(i + 2)];
+          i += 3;
+        }
+        else if (tile(XsbImporter.CONTENT_CODES, c)) {
+          g = XsbImporter.GROUND_CODES[c];
+          k = XsbImporter.CONTENT_CODES[c];
+        }
+        else {
+          throw new IllegalArgumentException("character " + (i + 1) + ": '" + c
+              + "' is not a tile");
+        }
+        int count = run == 0 ? 1 : run;
+        if ((long) col + count > MAX_TILES) {
+          throw new IllegalArgumentException("character " + (i + 1) + ": the row has more than "
+              + MAX_TILES + " tiles");
+        }
+        if (ground != null) {
+          int at = rows * cols + col;
+          Arrays.fill(ground, at, at + count, g);
+          Arrays.fill(content, at, at + count, k);
+        }
+        col += count;
+        run = 0;
+      }
+    }
+    if (run != 0) {
+      throw new IllegalArgumentException("character " + rle.length() + ": a run of nothing");
+    }
+    if (col > 0) {
+      longest = Math.max(longest, col);
+      rows += 1;
+    }
+    return new int[] { rows, longest };
+  }
+
+  // determines if the given character has a code in the given table
+  static boolean tile(byte[] codes, char c) {
+    return c < codes.length && codes[c] != -1;
+  }
+
+  // returns the given count of a run with the given digit, found at the given index,
+  // added to its end
+  int digit(int run, char c, int i) {
+    if (run == 0 && c == '0') {
+      throw new IllegalArgumentException("character " + (i + 1) + ": a run cannot start with 0");
+    }
+    if (run > (Integer.MAX_VALUE - 9) / 10) {
+      throw new IllegalArgumentException("character " + (i + 1) + ": the run is too long");
+    }
+    return run * 10 + (c - '0');
+  }
+
+  // returns the run-length encoding of the given moves, keeping their case
+  public String encodeMoves(CharSequence moves) {
+    StringBuilder rle = new StringBuilder();
+    int i = 0;
+    while (i < moves.length()) {
+      char move = moves.charAt(i);
+      if (Solver.MOVES.indexOf(Character.toLowerCase(move)) == -1) {
+        throw new IllegalArgumentException("not a move: " + move);
+      }
+      int run = 1;
+      while (i + run < moves.length() && moves.charAt(i + run) == move) {
+        run += 1;
+      }
+      if (run > 1) {
+        rle.append(run);
+      }
+      rle.append(move);
+      i += run;
+    }
+    return rle.toString();
+  }
+
+  // returns the run-length encoding of the given moves played on the given board, in
+  // upper case for the moves that push a piece
+  public String encodeSolution(Board start, CharSequence moves) {
+    GameEngine engine = new GameEngine(start);
+    StringBuilder lurd = new StringBuilder();
+    for (int i = 0; i < moves.length(); i += 1) {
+      char move = moves.charAt(i);
+      if (!engine.apply(move)) {
+        throw new IllegalArgumentException("move " + (i + 1) + " (" + move + ") is blocked");
+      }
+      lurd.append(engine.pushed() ? Character.toUpperCase(move) : move);
+      // the moves are never undone, so there is no need to keep their changes
+      engine.clearHistory();
+    }
+    return this.encodeMoves(lurd);
+  }
+
+  // returns the moves of the given run-length encoded solution, in the case they are
+  // written in, so toLowerCase gives the moves a GameEngine plays
+  public String decodeMoves(CharSequence rle) {
+    StringBuilder moves = new StringBuilder();
+    int end = this.decodeMoves(rle, 0, moves);
+    if (end < rle.length()) {
+      throw new IllegalArgumentException("character " + (end + 1) + ": ')' closes no group");
+    }
+    return moves.toString();
+  }
+
+  // EFFECT: appends the moves of the given solution from the given index up to the end
+  // of its group, or of the solution, to the given moves, and returns the index of the
+  // ')' that ends the group, or the length of the solution
+  int decodeMoves(CharSequence rle, int from, StringBuilder moves) {
+    int run = 0;
+    int i = from;
+    while (i < rle.length() && rle.charAt(i) != ')') {
+      char c = rle.charAt(i);
+      int count = run == 0 ? 1 : run;
+      if (c >= '0' && c <= '9') {
+        run = this.digit(run, c, i);
+        i += 1;
+        continue;
+      }
+      if (Character.isWhitespace(c)) {
+        i += 1;
+        continue;
+      }
+      if (c == '(') {
+        int start = moves.length();
+        int close = this.decodeMoves(rle, i + 1, moves);
+        if (close == rle.length()) {
+          throw new IllegalArgumentException("character " + (i + 1) + ": the group is not closed");
+        }
+        int end = moves.length();
+        this.checkMoves(start + (long) (end - start) * count, i);
+        // a group of no moves is repeated as nothing, however large its count
+        for (int k = 1; k < count && end > start; k += 1) {
+          moves.append(moves, start, end);
+        }
+        i = close + 1;
+      }
+      else if (Solver.MOVES.indexOf(Character.toLowerCase(c)) != -1) {
+        this.checkMoves((long) moves.length() + count, i);
+        for (int k = 0; k < count; k += 1) {
+          moves.append(c);
+        }
+        i += 1;
+      }
+      else {
+        throw new IllegalArgumentException("character " + (i + 1) + ": '" + c
+            + "' is not a move");
+      }
+      run = 0;
+    }
+    if (run != 0) {
+      throw new IllegalArgumentException("character " + i + ": a run of nothing");
+    }
+    return i;
+  }
+
+  // throws an IllegalArgumentException if the given number of moves, reached at the
+  // given index of a solution, is more than a solution may have
+  void checkMoves(long moves, int i) {
+    if (moves > MAX_MOVES) {
+      throw new IllegalArgumentException("character " + (i + 1) + ": the solution has more than "
+          + MAX_MOVES + " moves");
+    }
+  }
+}
+
+class ExamplesRleCodec {
+  ExamplesSokoban examples = new ExamplesSokoban();
+  ExamplesSolver levels = new ExamplesSolver();
+  RleCodec codec = new RleCodec();
+
+  boolean testDecodeCommunityLevels(Tester t) {
+    return t.checkExpect(this.codec.decode("5#|#@$.#|5#"),
+        new XsbImporter().parse("#####\n#@$.#\n#####").get(0).board)
+        && t.checkExpect(this.codec.decode("5#|#@$.#|5#|"), this.codec.decode("5#|#@$.#|5#"))
+        // ragged rows are padded with floor, and ' ', '-' and '_' are all floor
+        && t.checkExpect(this.codec.decode("2-4#|3#2 #|#+*~h#|#r_R-#|6#"),
+            new XsbImporter().parse(new ExamplesXsbImporter().pack).get(1).board)
+        && t.checkExpect(this.codec.decode("3#\n#@#\r\n3#"), this.codec.decode("3#|#@#|3#"));
+  }
+
+  boolean testEncodeLevels(Tester t) {
+    Board small = this.codec.decode("5#|#@$.#|5#");
+    return t.checkExpect(this.codec.encode(small), "5#|#@$.#|5#")
+        && t.checkExpect(this.codec.encode(this.codec.decode("2#-2#|#2-y")), "2#-2#|#2-$-")
+        && t.checkExpect(this.codec.encode(this.levels.fillTheHole.board), "8#|#@(_B)h$-.#|8#")
+        && t.checkExpect(this.codec.decode(this.codec.encode(this.levels.fillTheHole.board)),
+            this.levels.fillTheHole.board);
+  }
+
+  boolean testLevelsRoundTrip(Tester t) {
+    Level[] levels = { this.examples.testLevel, this.examples.testLevelAlmostWon,
+        this.examples.withIce, this.examples.withIceBig, this.examples.withIceTrophy,
+        this.examples.withHole, this.examples.noPlayer, this.levels.aroundHoles,
+        this.levels.acrossIce, this.levels.cannotWin, this.levels.alreadyWon };
+    boolean same = true;
+    for (Level level : levels) {
+      Board decoded = this.codec.decode(this.codec.encode(level.board));
+      same = same && t.checkExpect(decoded, level.board)
+          && t.checkExpect(new Level(decoded), level);
+    }
+    return same;
+  }
+
+  boolean testEncodeMixedTiles(Tester t) {
+    Board mixed = new Board(1, 4,
+        new byte[] { Board.GROUND_ICE, Board.GROUND_TARGET + 3, Board.GROUND_TARGET + 1,
+            Board.GROUND_ICE },
+        new byte[] { Board.CONTENT_PLAYER, Board.CONTENT_BOX, Board.CONTENT_TROPHY + 1,
+            Board.CONTENT_WALL });
+    return t.checkExpect(this.codec.encode(mixed), "(I>)(RB)(Gg)(IW)")
+        && t.checkExpect(this.codec.decode("(I>)(RB)(Gg)(IW)"), mixed)
+        && t.checkExpect(this.codec.encode(this.codec.decode("3(RB)|3*")), "3(RB)|3*");
+  }
+
+  boolean testRleIsSmaller(Tester t) {
+    StringBuilder ground = new StringBuilder();
+    StringBuilder content = new StringBuilder();
+    for (int y = 0; y < 200; y += 1) {
+      for (int x = 0; x < 200; x += 1) {
+        boolean edge = y == 0 || x == 0 || y == 199 || x == 199;
+        ground.append(y == 100 && x == 100 ? 'Y' : '_');
+        content.append(edge ? 'W' : (y == 1 && x == 1 ? '>' : (y == 50 && x == 50 ? 'y' : '_')));
+      }
+      ground.append('\n');
+      content.append('\n');
+    }
+    Level big = new Level(ground.toString(), content.toString());
+    String rle = this.codec.encode(big.board);
+    return t.checkExpect(rle.length() * 10 < ground.length() + content.length(), true)
+        && t.checkExpect(this.codec.decode(rle), big.board);
+  }
+
+  boolean testLevelErrors(Tester t) {
+    return t.checkException(new IllegalArgumentException("character 3: 'x' is not a tile"),
+        this.codec, "decode", "2#x")
+        && t.checkException(new IllegalArgumentException("character 2: '(Z>)' is not a tile"),
+            this.codec, "decode", "#(Z>)")
+        && t.checkException(new IllegalArgumentException("character 1: '(I>' is not a tile"),
+            this.codec, "decode", "(I>")
+        && t.checkException(new IllegalArgumentException("character 3: a run of nothing"),
+            this.codec, "decode", "#3|#")
+        && t.checkException(new IllegalArgumentException("character 2: a run of nothing"),
+            this.codec, "decode", "#4")
+        && t.checkException(new IllegalArgumentException("character 1: a run cannot start with 0"),
+            this.codec, "decode", "03#")
+        && t.checkException(new IllegalArgumentException("the level has no tiles"),
+            this.codec, "decode", "|")
+        // runs that would overflow or fill the heap are refused before anything is made
+        && t.checkException(new IllegalArgumentException("character 11: the row has more than "
+            + RleCodec.MAX_TILES + " tiles"), this.codec, "decode", "2000000000#|2000000000#")
+        && t.checkException(new IllegalArgumentException("character 16: the row has more than "
+            + RleCodec.MAX_TILES + " tiles"), this.codec, "decode", "9000000#9000000#")
+        && t.checkException(new IllegalArgumentException("the level has more than "
+            + RleCodec.MAX_TILES + " tiles"), this.codec, "decode", "4096#|4096#|4096#"
+            + "|4096#".repeat(4094))
+        && t.checkExpect(this.codec.decode("4096#|4096#" + "|4096#".repeat(4094)).rows, 4096);
+  }
+
+  boolean testMoves(Tester t) {
+    return t.checkExpect(this.codec.encodeMoves("rrrrUUl"), "4r2Ul")
+        && t.checkExpect(this.codec.encodeMoves(""), "")
+        && t.checkExpect(this.codec.decodeMoves("4r2Ul"), "rrrrUUl")
+        && t.checkExpect(this.codec.decodeMoves("3(ul)R"), "ululul" + "R")
+        && t.checkExpect(this.codec.decodeMoves("2(r2(dL))\n 10u"),
+            "rdLdL" + "rdLdL" + "uuuuuuuuuu")
+        && t.checkExpect(this.codec.decodeMoves(this.codec.encodeMoves("ddddllllrrrrrrrrrrrrUUUU")),
+            "ddddllllrrrrrrrrrrrrUUUU");
+  }
+
+  boolean testEncodeSolution(Tester t) throws IOException {
+    String solution = this.codec.encodeSolution(this.levels.fillTheHole.board, "rrrr");
+    return t.checkExpect(solution, "Rr2R")
+        && t.checkExpect(new SolutionVerifier().verify(this.levels.fillTheHole.board,
+            new StringReader(this.codec.decodeMoves(solution))).won, true)
+        && t.checkExpect(this.codec.encodeSolution(this.levels.aroundHoles.board, "rd"), "rd")
+        && t.checkException(new IllegalArgumentException("move 1 (l) is blocked"), this.codec,
+            "encodeSolution", this.levels.fillTheHole.board, "l");
+  }
+
+  boolean testMoveErrors(Tester t) {
+    return t.checkException(new IllegalArgumentException("not a move: x"), this.codec,
+        "encodeMoves", "rrx")
+        && t.checkException(new IllegalArgumentException("character 3: 'x' is not a move"),
+            this.codec, "decodeMoves", "2rx")
+        && t.checkException(new IllegalArgumentException("character 2: the group is not closed"),
+            this.codec, "decodeMoves", "2(ul")
+        && t.checkException(new IllegalArgumentException("character 3: ')' closes no group"),
+            this.codec, "decodeMoves", "ul)")
+        && t.checkException(new IllegalArgumentException("character 2: a run of nothing"),
+            this.codec, "decodeMoves", "u3")
+        && t.checkException(new IllegalArgumentException("character 11: the solution has more "
+            + "than " + RleCodec.MAX_MOVES + " moves"), this.codec, "decodeMoves", "2000000000r")
+        // nested groups are counted as they are repeated
+        && t.checkException(new IllegalArgumentException("character 5: the solution has more "
+            + "than " + RleCodec.MAX_MOVES + " moves"), this.codec, "decodeMoves",
+            "1000(1000(1000(r)))")
+        && t.checkExpect(this.codec.decodeMoves("2000000000()u"), "u");
+  }
+}
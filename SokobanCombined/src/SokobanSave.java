@@ -0,0 +1,344 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import tester.Tester;
+
+// reads and writes levels and games in a versioned binary format, with the bytes in
+// a ByteBuffer. A save starts with the magic number, the version and a flags byte.
+// Then come the number of rows and columns, the ground plane and the content plane
+// one byte per tile, and the index of the tile holding the player, or -1. If the
+// WORLD flag is set, the score and the history of the game follow: the number of
+// moves that can be undone and their deltas, most recent first, and then the same
+// for the moves that can be redone. A delta is its number of tiles, their indices,
+// their ground codes before and after, their content codes before and after, and
+// the player's tile before and after.
+class SaveFormat {
+  // "SKBS" in ASCII
+  static final int MAGIC = 0x534B4253;
+  static final byte VERSION = 1;
+  // set when a save holds a game and not just a level
+  static final byte WORLD = 1;
+
+  // returns the number of bytes the save of the given level takes
+  public int size(Level level) {
+    return 4 + 1 + 1 + 4 + 4 + 2 * level.board.rows * level.board.cols + 4;
+  }
+
+  // returns the number of bytes the save of the given game takes
+  public int size(SokobanWorld world) {
+    int size = this.size(world.curr) + 4 + 4 + 4;
+    for (DeltaList d = world.journal.undo; d != null; d = d.rest) {
+      size += this.size(d.first);
+    }
+    for (DeltaList d = world.journal.redo; d != null; d = d.rest) {
+      size += this.size(d.first);
+    }
+    return size;
+  }
+
+  // returns the number of bytes the given delta takes
+  int size(MoveDelta delta) {
+    return 4 + 8 * delta.indices.length + 4 + 4;
+  }
+
+  // returns the save of the given level as a new array
+  public byte[] save(Level level) {
+    ByteBuffer buffer = ByteBuffer.allocate(this.size(level));
+    this.write(level, buffer);
+    return buffer.array();
+  }
+
+  // returns the save of the given game as a new array
+  public byte[] save(SokobanWorld world) {
+    ByteBuffer buffer = ByteBuffer.allocate(this.size(world));
+    this.write(world, buffer);
+    return buffer.array();
+  }
+
+  // EFFECT: writes the save of the given level to the given buffer
+  public void write(Level level, ByteBuffer buffer) {
+    this.writeHeader(level, (byte) 0, buffer);
+  }
+
+  // EFFECT: writes the save of the given game to the given buffer
+  public void write(SokobanWorld world, ByteBuffer buffer) {
+    this.writeHeader(world.curr, WORLD, buffer);
+    buffer.putInt(world.score);
+    this.writeDeltas(world.journal.undoable(), world.journal.undo, buffer);
+    this.writeDeltas(world.journal.redoable(), world.journal.redo, buffer);
+  }
+
+  // EFFECT: writes the header, the planes and the player of the given level to the
+  // given buffer, with the given flags
+  void writeHeader(Level level, byte flags, ByteBuffer buffer) {
+    Board board = level.board;
+    buffer.putInt(MAGIC);
+    buffer.put(VERSION);
+    buffer.put(flags);
+    buffer.putInt(board.rows);
+    buffer.putInt(board.cols);
+    buffer.put(board.ground.toArray());
+    buffer.put(board.content.toArray());
+    buffer.putInt(board.player);
+  }
+
+  // EFFECT: writes the given number of deltas from the given list to the buffer
+  void writeDeltas(int count, DeltaList deltas, ByteBuffer buffer) {
+    buffer.putInt(count);
+    for (DeltaList d = deltas; d != null; d = d.rest) {
+      MoveDelta delta = d.first;
+      buffer.putInt(delta.indices.length);
+      for (int index : delta.indices) {
+        buffer.putInt(index);
+      }
+      buffer.put(delta.groundBefore);
+      buffer.put(delta.groundAfter);
+      buffer.put(delta.contentBefore);
+      buffer.put(delta.contentAfter);
+      buffer.putInt(delta.playerBefore);
+      buffer.putInt(delta.playerAfter);
+    }
+  }
+
+  // returns the level saved in the given buffer, which may also hold a game
+  public Level readLevel(ByteBuffer buffer) {
+    this.readFlags(buffer);
+    return this.readPlanes(buffer);
+  }
+
+  // returns the game saved in the given buffer, or a new game on the level saved in
+  // it if it holds only a level
+  public SokobanWorld readWorld(ByteBuffer buffer) {
+    byte flags = this.readFlags(buffer);
+    Level level = this.readPlanes(buffer);
+    if ((flags & WORLD) == 0) {
+      return new SokobanWorld(level);
+    }
+    try {
+      int score = buffer.getInt();
+      DeltaList undo = this.readDeltas(buffer, level.board);
+      DeltaList redo = this.readDeltas(buffer, level.board);
+      return new SokobanWorld(level, new Journal(undo, redo), score);
+    }
+    catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("the saved history is cut off");
+    }
+  }
+
+  // returns the flags of the save in the given buffer, after checking its magic
+  // number and its version
+  byte readFlags(ByteBuffer buffer) {
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IllegalArgumentException("not a saved level");
+      }
+      byte version = buffer.get();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("unsupported save version " + version);
+      }
+      return buffer.get();
+    }
+    catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("not a saved level");
+    }
+  }
+
+  // returns the level made of the planes and the player in the given buffer
+  Level readPlanes(ByteBuffer buffer) {
+    if (buffer.remaining() < 8) {
+      throw new IllegalArgumentException("the saved board is cut off");
+    }
+    int rows = buffer.getInt();
+    int cols = buffer.getInt();
+    // two planes and the player's tile
+    if (rows <= 0 || cols <= 0 || 2L * rows * cols + 4 > buffer.remaining()) {
+      throw new IllegalArgumentException("the saved board is cut off");
+    }
+    byte[] ground = new byte[rows * cols];
+    byte[] content = new byte[rows * cols];
+    buffer.get(ground);
+    buffer.get(content);
+    this.checkCodes(ground, content);
+    Board board = new Board(rows, cols, ground, content);
+    if (buffer.getInt() != board.player) {
+      throw new IllegalArgumentException("the saved player is not on the saved board");
+    }
+    return new Level(board);
+  }
+
+  // EFFECT: throws an exception if a code of the given planes is not a piece
+  void checkCodes(byte[] ground, byte[] content) {
+    if (!arePieces(ground, content)) {
+      throw new IllegalArgumentException("the saved board has a tile that is not a piece");
+    }
+  }
+
+  // determines if every code of the given planes is the code of a piece
+  static boolean arePieces(byte[] ground, byte[] content) {
+    int colors = PieceColor.values().length;
+    for (int i = 0; i < ground.length; i += 1) {
+      if (ground[i] < 0 || ground[i] >= Board.GROUND_TARGET + colors || content[i] < 0
+          || content[i] >= Board.CONTENT_TROPHY + colors) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // returns the list of deltas in the given buffer, in the order they were written,
+  // checking that they fit on the given board. The buffer runs out with a
+  // BufferUnderflowException if the history is cut off
+  DeltaList readDeltas(ByteBuffer buffer, Board board) {
+    int tiles = board.rows * board.cols;
+    int count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining() / 12) {
+      throw new IllegalArgumentException("the saved history is cut off");
+    }
+    MoveDelta[] deltas = new MoveDelta[count];
+    for (int k = 0; k < count; k += 1) {
+      int n = buffer.getInt();
+      if (n < 0 || n > tiles || 8L * n + 8 > buffer.remaining()) {
+        throw new IllegalArgumentException("the saved history is cut off");
+      }
+      int[] indices = new int[n];
+      for (int i = 0; i < n; i += 1) {
+        indices[i] = buffer.getInt();
+        if (indices[i] < 0 || indices[i] >= tiles) {
+          throw new IllegalArgumentException("the saved history is not on the saved board");
+        }
+      }
+      byte[][] codes = new byte[4][n];
+      for (byte[] plane : codes) {
+        buffer.get(plane);
+      }
+      if (!arePieces(codes[0], codes[2]) || !arePieces(codes[1], codes[3])) {
+        throw new IllegalArgumentException("the saved history has a tile that is not a piece");
+      }
+      int playerBefore = buffer.getInt();
+      int playerAfter = buffer.getInt();
+      if (playerBefore < -1 || playerBefore >= tiles || playerAfter < -1
+          || playerAfter >= tiles) {
+        throw new IllegalArgumentException("the saved history is not on the saved board");
+      }
+      deltas[k] = new MoveDelta(indices, codes[0], codes[1], codes[2], codes[3],
+          playerBefore, playerAfter);
+    }
+    DeltaList list = null;
+    for (int k = count - 1; k >= 0; k -= 1) {
+      list = new DeltaList(deltas[k], list);
+    }
+    return list;
+  }
+}
+
+class ExamplesSaveFormat {
+  ExamplesSokoban examples = new ExamplesSokoban();
+  SaveFormat format = new SaveFormat();
+
+  boolean testSaveLevel(Tester t) {
+    Level level = this.examples.testLevelAlmostWon;
+    byte[] saved = this.format.save(level);
+    Level slid = this.examples.withIce.newLevelHorizontal(0, 1);
+    return t.checkExpect(saved.length, this.format.size(level))
+        && t.checkExpect(saved.length, 4 + 1 + 1 + 4 + 4 + 2 * 7 * 8 + 4)
+        && t.checkExpect(this.format.readLevel(ByteBuffer.wrap(saved)), level)
+        && t.checkExpect(this.format.readLevel(ByteBuffer.wrap(this.format.save(slid))), slid)
+        && t.checkExpect(
+            this.format.readLevel(ByteBuffer.wrap(this.format.save(this.examples.noPlayer))),
+            this.examples.noPlayer)
+        // a level alone loads as a game that has not started
+        && t.checkExpect(this.format.readWorld(ByteBuffer.wrap(saved)), new SokobanWorld(level));
+  }
+
+  boolean testSaveWorld(Tester t) {
+    SokobanWorld world = new SokobanWorld(this.examples.testLevelAlmostWon).onKeyEvent("left")
+        .onKeyEvent("up").onKeyEvent("right").onKeyEvent("u").onKeyEvent("down");
+    world = world.onKeyEvent("u");
+    byte[] saved = this.format.save(world);
+    SokobanWorld loaded = this.format.readWorld(ByteBuffer.wrap(saved));
+    ByteBuffer twice = ByteBuffer.allocate(2 * saved.length);
+    this.format.write(world, twice);
+    this.format.write(this.examples.withIce, twice);
+    twice.flip();
+    return t.checkExpect(saved.length, this.format.size(world))
+        && t.checkExpect(loaded, world)
+        && t.checkExpect(loaded.onKeyEvent("u"), world.onKeyEvent("u"))
+        && t.checkExpect(loaded.onKeyEvent("r"), world.onKeyEvent("r"))
+        && t.checkExpect(this.format.readLevel(ByteBuffer.wrap(saved)), world.curr)
+        // saves can follow one another in a buffer
+        && t.checkExpect(this.format.readWorld(twice), world)
+        && t.checkExpect(this.format.readLevel(twice), this.examples.withIce);
+  }
+
+  boolean testSaveErrors(Tester t) {
+    byte[] saved = this.format.save(this.examples.testLevelAlmostWon);
+    byte[] badMagic = saved.clone();
+    badMagic[0] = 0;
+    byte[] badVersion = saved.clone();
+    badVersion[4] = 7;
+    byte[] badPlayer = saved.clone();
+    badPlayer[saved.length - 1] += 1;
+    byte[] badCode = saved.clone();
+    badCode[14] = 42;
+    return t.checkException(new IllegalArgumentException("not a saved level"), this,
+        "load", badMagic)
+        && t.checkException(new IllegalArgumentException("unsupported save version 7"), this,
+            "load", badVersion)
+        && t.checkException(
+            new IllegalArgumentException("the saved player is not on the saved board"), this,
+            "load", badPlayer)
+        && t.checkException(
+            new IllegalArgumentException("the saved board has a tile that is not a piece"), this,
+            "load", badCode)
+        && t.checkException(new IllegalArgumentException("the saved board is cut off"), this,
+            "load", Arrays.copyOf(saved, 20))
+        && t.checkException(new IllegalArgumentException("not a saved level"), this, "load",
+            new byte[] { 1 });
+  }
+
+  // returns the level saved in the given bytes
+  Level load(byte[] saved) {
+    return this.format.readLevel(ByteBuffer.wrap(saved));
+  }
+
+  boolean testSaveHistoryErrors(Tester t) {
+    SokobanWorld world = new SokobanWorld(this.examples.testLevelAlmostWon).onKeyEvent("left");
+    byte[] saved = this.format.save(world);
+    int n = world.journal.undo.first.indices.length;
+    // the board ends at 130, then come the score, the number of moves to undo and the
+    // delta: its number of tiles at 138, its indices, its four planes of codes, and
+    // the player's tile before and after, and last the number of moves to redo
+    byte[] badCode = saved.clone();
+    badCode[142 + 4 * n] = 42;
+    byte[] badPlayer = saved.clone();
+    ByteBuffer.wrap(badPlayer).putInt(saved.length - 8, 7 * 8);
+    byte[] badIndex = saved.clone();
+    ByteBuffer.wrap(badIndex).putInt(142, -2);
+    return t.checkExpect(this.loadWorld(saved), world)
+        && t.checkException(
+            new IllegalArgumentException("the saved history has a tile that is not a piece"),
+            this, "loadWorld", badCode)
+        && t.checkException(
+            new IllegalArgumentException("the saved history is not on the saved board"), this,
+            "loadWorld", badPlayer)
+        && t.checkException(
+            new IllegalArgumentException("the saved history is not on the saved board"), this,
+            "loadWorld", badIndex)
+        && t.checkException(new IllegalArgumentException("the saved history is cut off"), this,
+            "loadWorld", Arrays.copyOf(saved, saved.length - 2))
+        && t.checkException(new IllegalArgumentException("the saved history is cut off"), this,
+            "loadWorld", Arrays.copyOf(saved, 132))
+        && t.checkException(new IllegalArgumentException("the saved history is cut off"), this,
+            "loadWorld", Arrays.copyOf(saved, 150))
+        // the content plane and the player's tile must fit too
+        && t.checkException(new IllegalArgumentException("the saved board is cut off"), this,
+            "loadWorld", Arrays.copyOf(saved, 14 + 56 + 20))
+        && t.checkException(new IllegalArgumentException("the saved board is cut off"), this,
+            "loadWorld", Arrays.copyOf(saved, 10));
+  }
+
+  // returns the game saved in the given bytes
+  SokobanWorld loadWorld(byte[] saved) {
+    return this.format.readWorld(ByteBuffer.wrap(saved));
+  }
+}
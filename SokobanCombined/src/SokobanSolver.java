@@ -0,0 +1,1532 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+import tester.Tester;
+
+// represents a state reached by the solver: a board and the last move that reached
+// it from its parent state
+class SolverNode {
+  Board board;
+  SolverNode parent;
+  char move;
+  // the number of moves from the start to this state
+  int cost;
+  // the number of moves from the start to this state plus the estimate of the
+  // number of moves left
+  int estimate;
+
+  SolverNode(Board board, SolverNode parent, char move, int cost, int estimate) {
+    this.board = board;
+    this.parent = parent;
+    this.move = move;
+    this.cost = cost;
+    this.estimate = estimate;
+  }
+
+  // returns the moves that reached this state from the start, in order
+  public String moves() {
+    StringBuilder moves = new StringBuilder();
+    for (SolverNode node = this; node.parent != null; node = node.parent) {
+      moves.append(node.move);
+    }
+    return moves.reverse().toString();
+  }
+}
+
+// orders solver states by their estimate, and states with the same estimate by the
+// most moves made, so that the search follows one promising line at a time
+class SolverNodeOrder implements Comparator<SolverNode> {
+
+  // compares the two states, the state to expand first is the smaller one
+  public int compare(SolverNode a, SolverNode b) {
+    if (a.estimate != b.estimate) {
+      return Integer.compare(a.estimate, b.estimate);
+    }
+    return Integer.compare(b.cost, a.cost);
+  }
+}
+
+// represents the outcome of solving one level
+class SolverResult {
+  // the shortest moves that win the level as a string of u, d, l and r, or null if
+  // none were found
+  String moves;
+  // true if the search ran to the end, so a null solution means the level cannot
+  // be won, and false if it stopped at the limit of expanded states
+  boolean complete;
+  // the number of states expanded and the most states stored at once
+  long expanded;
+  long stored;
+  // the time the search took in nanoseconds
+  long nanos;
+  // the most heap in use that was seen during the search, in bytes
+  long peakMemory;
+
+  SolverResult(String moves, boolean complete, long expanded, long stored, long nanos,
+      long peakMemory) {
+    this.moves = moves;
+    this.complete = complete;
+    this.expanded = expanded;
+    this.stored = stored;
+    this.nanos = nanos;
+    this.peakMemory = peakMemory;
+  }
+
+  // returns true if the solver found moves that win the level
+  public boolean solved() {
+    return this.moves != null;
+  }
+
+  // returns the number of states expanded per second of search
+  public double nodesPerSecond() {
+    if (this.nanos == 0) {
+      return 0;
+    }
+    return this.expanded * 1e9 / this.nanos;
+  }
+
+  // returns a one line summary of this result
+  public String report() {
+    String outcome;
+    if (this.solved()) {
+      outcome = "solved in " + this.moves.length() + " moves: " + this.moves;
+    }
+    else if (this.complete) {
+      outcome = "no solution";
+    }
+    else {
+      outcome = "gave up";
+    }
+    return outcome + " (" + this.expanded + " expanded, " + this.stored + " stored, "
+        + Math.round(this.nodesPerSecond()) + " nodes/s, "
+        + (this.peakMemory / (1024 * 1024)) + " MB peak)";
+  }
+}
+
+// represents the tiles the player can walk to without pushing anything, worked out by
+// a flood fill over walks: a walk is a move of the move kernel that pushes nothing
+// and does not drop the player into a hole, so it either steps onto a blank tile or
+// slides across blank ice. The queue, the bitset of visited tiles and the tree of
+// walks are allocated once for the size of the board and reused by every fill, so
+// a fill allocates nothing.
+// The region of a board is cached: walks change only where the player is, so until
+// a push changes the pieces a fill from anywhere in a symmetric region gives the
+// same region. A region is symmetric when every tile in it can walk back to every
+// other, which holds unless a walk slid across ice or the player stands on the edge
+// of the board, where the kernel never moves. Only in a symmetric region does the
+// canonical tile, its first tile in reading order, stand for every player position
+// in it, so only then can a search use it to merge states
+class Reachability {
+  int rows;
+  int cols;
+  // the tiles of the region in the order the fill reached them
+  int[] queue;
+  int size;
+  // one bit per tile, set for the tiles of the region
+  long[] visited;
+  // the tile each tile of the region was first walked to from, and the direction
+  // of that walk, for rebuilding paths back to the root
+  int[] from;
+  byte[] via;
+  // the tile the fill started from, and the first tile of the region in reading
+  // order, or -1 if the board has no player
+  int root;
+  int canonical;
+  boolean symmetric;
+  // the hash of the pieces of the board the region belongs to, and whether there
+  // is a region at all
+  long key;
+  boolean valid;
+  // set by walk when the walk it made slid across ice
+  boolean slid;
+  // the number of fills that were made rather than taken from the cache
+  long fills;
+
+  Reachability(int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+    this.queue = new int[rows * cols];
+    this.size = 0;
+    this.visited = new long[(rows * cols + 63) >>> 6];
+    this.from = new int[rows * cols];
+    this.via = new byte[rows * cols];
+    this.root = -1;
+    this.canonical = -1;
+    this.symmetric = false;
+    this.valid = false;
+    this.fills = 0;
+  }
+
+  // creates the reachability of boards with the dimensions of the given board
+  Reachability(Board board) {
+    this(board.rows, board.cols);
+  }
+
+  // returns the hash of every piece of the given board but the player
+  static long piecesKey(Board board) {
+    return board.hash ^ Board.zobrist(board.player, Board.CONTENT_PLAYER, false);
+  }
+
+  // returns the first tile in reading order of the region the player of the given
+  // board can walk to, or -1 if there is no player, filling the region unless the
+  // cached one is the same
+  public int fill(Board board) {
+    this.checkDimensions(board);
+    if (!(this.valid && board.player != -1 && this.key == piecesKey(board)
+        && (board.player == this.root || (this.symmetric && this.reachable(board.player))))) {
+      this.flood(board);
+    }
+    return this.canonical;
+  }
+
+  // returns the moves that walk the player of the given board to the tile with the
+  // given index by the fewest walks, or null if the player cannot walk there
+  public String pathTo(Board board, int target) {
+    this.checkDimensions(board);
+    if (!(this.valid && board.player != -1 && this.key == piecesKey(board)
+        && board.player == this.root)) {
+      this.flood(board);
+    }
+    if (!this.reachable(target)) {
+      return null;
+    }
+    int length = 0;
+    for (int i = target; i != this.root; i = this.from[i]) {
+      length += 1;
+    }
+    char[] moves = new char[length];
+    for (int i = target; i != this.root; i = this.from[i]) {
+      length -= 1;
+      moves[length] = Solver.MOVES.charAt(this.via[i]);
+    }
+    return new String(moves);
+  }
+
+  // determines if the tile with the given index is in the region of the last fill
+  public boolean reachable(int index) {
+    return index >= 0 && index < this.rows * this.cols
+        && (this.visited[index >>> 6] & (1L << index)) != 0;
+  }
+
+  // returns the number of tiles in the region of the last fill
+  public int size() {
+    return this.size;
+  }
+
+  // EFFECT: throws an exception if the given board does not have the dimensions of
+  // this reachability
+  void checkDimensions(Board board) {
+    if (board.rows != this.rows || board.cols != this.cols) {
+      throw new IllegalArgumentException("the board does not have the dimensions of the fill");
+    }
+  }
+
+  // EFFECT: fills the region the player of the given board can walk to
+  void flood(Board board) {
+    Arrays.fill(this.visited, 0);
+    this.fills += 1;
+    this.valid = true;
+    this.root = board.player;
+    this.canonical = board.player;
+    this.size = 0;
+    if (board.player == -1) {
+      this.key = board.hash;
+      this.symmetric = false;
+      return;
+    }
+    this.key = piecesKey(board);
+    int y = board.player / this.cols;
+    int x = board.player % this.cols;
+    this.symmetric = y > 0 && y < this.rows - 1 && x > 0 && x < this.cols - 1;
+    this.visit(board.player, board.player, 0);
+    for (int next = 0; next < this.size; next += 1) {
+      int tile = this.queue[next];
+      for (int d = 0; d < Solver.MOVES.length(); d += 1) {
+        int end = this.walk(board, tile, d);
+        if (end != -1 && !this.reachable(end)) {
+          this.visit(end, tile, d);
+        }
+        this.symmetric = this.symmetric && !(end != -1 && this.slid);
+      }
+    }
+  }
+
+  // EFFECT: adds the given tile to the region, reached from the given tile by a walk
+  // in the given direction
+  void visit(int tile, int previous, int direction) {
+    this.visited[tile >>> 6] |= 1L << tile;
+    this.from[tile] = previous;
+    this.via[tile] = (byte) direction;
+    this.queue[this.size] = tile;
+    this.size += 1;
+    this.canonical = Math.min(this.canonical, tile);
+  }
+
+  // returns the tile where a walk from the given tile in the given direction on the
+  // given board ends, or -1 if the move from there pushes a piece, drops the player
+  // into a hole or does not move at all. This follows the cases of Board.move, with
+  // the tile of the player on the board counted as blank
+  int walk(Board board, int start, int direction) {
+    int dy = Solver.DY[direction];
+    int dx = Solver.DX[direction];
+    int y = start / this.cols;
+    int x = start % this.cols;
+    boolean moved = false;
+    this.slid = false;
+    while (board.inBounds(y + (2 * dy), x + (2 * dx))) {
+      int one = board.index(y + dy, x + dx);
+      if (this.open(board, one)) {
+        y += dy;
+        x += dx;
+        moved = true;
+        if (!Board.canSlide(board.ground.get(one))) {
+          break;
+        }
+        this.slid = true;
+      }
+      else if (Board.canBeLost(board.content.get(one))) {
+        return -1;
+      }
+      else if (Board.canBePushed(board.content.get(one))) {
+        int two = board.index(y + (2 * dy), x + (2 * dx));
+        if (this.open(board, two) || Board.canBeLost(board.content.get(two))) {
+          return -1;
+        }
+        break;
+      }
+      else {
+        break;
+      }
+    }
+    return moved ? board.index(y, x) : -1;
+  }
+
+  // determines if the tile with the given index on the given board is blank or
+  // holds the player
+  boolean open(Board board, int index) {
+    return Board.canHoldPlayer(board.content.get(index)) || index == board.player;
+  }
+}
+
+// finds the shortest sequence of moves that wins a level, following the rules of
+// the move kernel of Board exactly: colored trophies on their targets, boxes, ice
+// that pieces and the player slide on, and holes that swallow pushed pieces or the
+// player. The search is A* over boards, which are told apart by their Zobrist hash,
+// guided by the number of targets without a trophy of their color. A single move
+// only ever moves one piece, so it can satisfy at most one target and this estimate
+// never overshoots: the first winning board taken from the queue is reached by the
+// fewest moves. Boards that the deadlock analysis shows can no longer be won are
+// never queued.
+class Solver {
+  // the moves the solver tries, and the direction (dy, dx) of each
+  static final String MOVES = "udlr";
+  static final int[] DY = { -1, 1, 0, 0 };
+  static final int[] DX = { 0, 0, -1, 1 };
+
+  // the number of expanded states between samples of the heap in use
+  static final int SAMPLE_INTERVAL = 1024;
+
+  // the most states the solver expands before it gives up
+  int maxExpansions;
+
+  Solver(int maxExpansions) {
+    if (maxExpansions <= 0) {
+      throw new IllegalArgumentException("the solver must be able to expand a state");
+    }
+    this.maxExpansions = maxExpansions;
+  }
+
+  // creates a solver that expands up to a million states per level
+  Solver() {
+    this(1000000);
+  }
+
+  // returns the shortest moves that win the given level
+  public SolverResult solve(Level level) {
+    return this.solve(level.board);
+  }
+
+  // returns the shortest moves that win the given board
+  public SolverResult solve(Board start) {
+    long began = System.nanoTime();
+    Runtime runtime = Runtime.getRuntime();
+    long peakMemory = runtime.totalMemory() - runtime.freeMemory();
+    Deadlocks deadlocks = new Deadlocks(start);
+    if (start.unsatisfiedTargets() > 0 && deadlocks.isLost(start)) {
+      return new SolverResult(null, true, 0, 1, System.nanoTime() - began, peakMemory);
+    }
+
+    PriorityQueue<SolverNode> frontier = new PriorityQueue<SolverNode>(new SolverNodeOrder());
+    // the fewest moves found so far to each board, by hash
+    HashMap<Long, Integer> best = new HashMap<Long, Integer>();
+    frontier.add(new SolverNode(start, null, ' ', 0, this.estimate(start)));
+    best.put(start.hash, 0);
+    int expanded = 0;
+
+    while (!frontier.isEmpty()) {
+      SolverNode node = frontier.poll();
+      // a shorter way to this board was found after this state was queued
+      if (best.get(node.board.hash) < node.cost) {
+        continue;
+      }
+      if (node.board.unsatisfiedTargets() == 0) {
+        return new SolverResult(node.moves(), true, expanded, best.size(),
+            System.nanoTime() - began, peakMemory);
+      }
+      if (expanded == this.maxExpansions) {
+        return new SolverResult(null, false, expanded, best.size(), System.nanoTime() - began,
+            peakMemory);
+      }
+
+      expanded += 1;
+      if (expanded % SAMPLE_INTERVAL == 0) {
+        peakMemory = Math.max(peakMemory, runtime.totalMemory() - runtime.freeMemory());
+      }
+      for (int d = 0; d < MOVES.length(); d += 1) {
+        Board next = node.board.move(DY[d], DX[d]);
+        // the move was blocked, or the board can no longer be won
+        if (next == node.board || deadlocks.isLost(node.board, next)) {
+          continue;
+        }
+        Integer known = best.get(next.hash);
+        if (known == null || known > node.cost + 1) {
+          best.put(next.hash, node.cost + 1);
+          frontier.add(new SolverNode(next, node, MOVES.charAt(d), node.cost + 1,
+              node.cost + 1 + this.estimate(next)));
+        }
+      }
+    }
+
+    return new SolverResult(null, true, expanded, best.size(), System.nanoTime() - began,
+        peakMemory);
+  }
+
+  // returns the solutions of every given level, in order
+  public ArrayList<SolverResult> solveAll(ArrayList<Level> levels) {
+    ArrayList<SolverResult> results = new ArrayList<SolverResult>();
+    for (Level level : levels) {
+      results.add(this.solve(level));
+    }
+    return results;
+  }
+
+  // returns a lower bound on the number of moves left to win the given board
+  int estimate(Board board) {
+    return board.unsatisfiedTargets();
+  }
+
+  // returns the level after making the given moves, a string of u, d, l and r
+  public Level play(Level level, String moves) {
+    for (int i = 0; i < moves.length(); i += 1) {
+      int d = MOVES.indexOf(moves.charAt(i));
+      if (d == -1) {
+        throw new IllegalArgumentException("not a move: " + moves.charAt(i));
+      }
+      if (DY[d] == 0) {
+        level = level.newLevelHorizontal(DY[d], DX[d]);
+      }
+      else {
+        level = level.newLevelVertical(DY[d], DX[d]);
+      }
+    }
+    return level;
+  }
+}
+
+// represents a set of state hashes that many threads can add to at once without
+// locking: an open-addressing table of longs where a slot is claimed with a single
+// compare-and-set. The table never grows, so its owner must stop adding before it
+// fills up.
+class StateTable {
+  // the hash stored in place of a hash of 0, which marks an empty slot
+  static final long ZERO_HASH = 0x9E3779B97F4A7C15L;
+
+  AtomicLongArray slots;
+  int mask;
+
+  // creates a table with 1 << bits slots
+  StateTable(int bits) {
+    if (bits < 1 || bits > 30) {
+      throw new IllegalArgumentException("a state table has between 2 and 2^30 slots");
+    }
+    this.slots = new AtomicLongArray(1 << bits);
+    this.mask = (1 << bits) - 1;
+  }
+
+  // returns the number of slots in this table
+  public int capacity() {
+    return this.mask + 1;
+  }
+
+  // EFFECT: adds the given hash to this table
+  // returns true if it was not in the table already, so exactly one of several
+  // threads adding the same hash at once sees true
+  public boolean add(long hash) {
+    if (hash == 0) {
+      hash = ZERO_HASH;
+    }
+    // the low bits of a Zobrist hash are as well mixed as the high ones
+    for (int slot = (int) hash & this.mask;; slot = (slot + 1) & this.mask) {
+      long held = this.slots.get(slot);
+      if (held == hash) {
+        return false;
+      }
+      if (held == 0) {
+        if (this.slots.compareAndSet(slot, 0, hash)) {
+          return true;
+        }
+        // another thread claimed the slot first, it may have added this same hash
+        if (this.slots.get(slot) == hash) {
+          return false;
+        }
+      }
+    }
+  }
+
+  // determines if the given hash is in this table
+  public boolean contains(long hash) {
+    if (hash == 0) {
+      hash = ZERO_HASH;
+    }
+    for (int slot = (int) hash & this.mask;; slot = (slot + 1) & this.mask) {
+      long held = this.slots.get(slot);
+      if (held == hash) {
+        return true;
+      }
+      if (held == 0) {
+        return false;
+      }
+    }
+  }
+}
+
+// represents the expansion of part of one layer of the parallel search: the given
+// range of states is split in half until it is small, and the successors of the
+// states that are new to the shared table are returned in order
+class ExpandLayer extends RecursiveTask<ArrayList<SolverNode>> {
+  private static final long serialVersionUID = 1L;
+
+  // the most states one task expands without splitting
+  static final int THRESHOLD = 64;
+
+  ArrayList<SolverNode> layer;
+  int from;
+  int to;
+  StateTable seen;
+  Deadlocks deadlocks;
+
+  ExpandLayer(ArrayList<SolverNode> layer, int from, int to, StateTable seen,
+      Deadlocks deadlocks) {
+    this.layer = layer;
+    this.from = from;
+    this.to = to;
+    this.seen = seen;
+    this.deadlocks = deadlocks;
+  }
+
+  // returns the new successors of the states in this range
+  protected ArrayList<SolverNode> compute() {
+    if (this.to - this.from > THRESHOLD) {
+      int middle = (this.from + this.to) >>> 1;
+      ExpandLayer left = new ExpandLayer(this.layer, this.from, middle, this.seen,
+          this.deadlocks);
+      left.fork();
+      ArrayList<SolverNode> right = new ExpandLayer(this.layer, middle, this.to, this.seen,
+          this.deadlocks).compute();
+      ArrayList<SolverNode> successors = left.join();
+      successors.addAll(right);
+      return successors;
+    }
+
+    ArrayList<SolverNode> successors = new ArrayList<SolverNode>();
+    for (int i = this.from; i < this.to; i += 1) {
+      SolverNode node = this.layer.get(i);
+      for (int d = 0; d < Solver.MOVES.length(); d += 1) {
+        Board next = node.board.move(Solver.DY[d], Solver.DX[d]);
+        if (next != node.board && !this.deadlocks.isLost(node.board, next)
+            && this.seen.add(next.hash)) {
+          successors.add(new SolverNode(next, node, Solver.MOVES.charAt(d), node.cost + 1,
+              node.cost + 1));
+        }
+      }
+    }
+    return successors;
+  }
+}
+
+// finds the shortest sequence of moves that wins a level by searching on several
+// threads at once. The search goes breadth first, one layer of boards with the same
+// number of moves at a time: each layer is split among the workers of a fork/join
+// pool, which steal halves of each other's ranges when they run out of work, and
+// every worker checks the boards it reaches against one lock-free table of state
+// hashes. The first layer holding a winning board gives the fewest moves, like the
+// A* of Solver, but without a shared queue that every worker would contend for.
+class ParallelSolver {
+  int threads;
+  int maxExpansions;
+  // the table holds 1 << tableBits state hashes
+  int tableBits;
+
+  ParallelSolver(int threads, int maxExpansions, int tableBits) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("the solver needs at least one thread");
+    }
+    if (maxExpansions <= 0) {
+      throw new IllegalArgumentException("the solver must be able to expand a state");
+    }
+    this.threads = threads;
+    this.maxExpansions = maxExpansions;
+    this.tableBits = tableBits;
+  }
+
+  // creates a solver with the given number of threads that expands up to a million
+  // states per level and remembers up to about three million
+  ParallelSolver(int threads) {
+    this(threads, 1000000, 22);
+  }
+
+  // creates a solver with a thread for every processor
+  ParallelSolver() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  // returns the shortest moves that win the given level
+  public SolverResult solve(Level level) {
+    return this.solve(level.board);
+  }
+
+  // returns the shortest moves that win the given board
+  public SolverResult solve(Board start) {
+    ForkJoinPool pool = new ForkJoinPool(this.threads);
+    try {
+      return this.solve(start, pool);
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  // returns the shortest moves that win the given board, searching on the given pool
+  SolverResult solve(Board start, ForkJoinPool pool) {
+    long began = System.nanoTime();
+    Runtime runtime = Runtime.getRuntime();
+    long peakMemory = runtime.totalMemory() - runtime.freeMemory();
+    Deadlocks deadlocks = new Deadlocks(start);
+    if (start.unsatisfiedTargets() == 0) {
+      return new SolverResult("", true, 0, 1, System.nanoTime() - began, peakMemory);
+    }
+    if (deadlocks.isLost(start)) {
+      return new SolverResult(null, true, 0, 1, System.nanoTime() - began, peakMemory);
+    }
+
+    StateTable seen = new StateTable(this.tableBits);
+    seen.add(start.hash);
+    ArrayList<SolverNode> layer = new ArrayList<SolverNode>();
+    layer.add(new SolverNode(start, null, ' ', 0, 0));
+    int expanded = 0;
+    int stored = 1;
+    // the table is only filled to three quarters, so probes stay short
+    int room = this.capacity(seen);
+
+    while (!layer.isEmpty()) {
+      // every state in a layer has up to four successors
+      if (expanded + layer.size() > this.maxExpansions
+          || stored + 4L * layer.size() > room) {
+        return new SolverResult(null, false, expanded, stored, System.nanoTime() - began,
+            peakMemory);
+      }
+      ArrayList<SolverNode> next = pool.invoke(
+          new ExpandLayer(layer, 0, layer.size(), seen, deadlocks));
+      expanded += layer.size();
+      stored += next.size();
+      peakMemory = Math.max(peakMemory, runtime.totalMemory() - runtime.freeMemory());
+      for (SolverNode node : next) {
+        if (node.board.unsatisfiedTargets() == 0) {
+          return new SolverResult(node.moves(), true, expanded, stored,
+              System.nanoTime() - began, peakMemory);
+        }
+      }
+      layer = next;
+    }
+
+    return new SolverResult(null, true, expanded, stored, System.nanoTime() - began,
+        peakMemory);
+  }
+
+  // returns the number of states the given table can hold before probes get long
+  int capacity(StateTable table) {
+    return table.capacity() / 4 * 3;
+  }
+
+  // returns the solutions of every given level, in order, sharing one pool
+  public ArrayList<SolverResult> solveAll(ArrayList<Level> levels) {
+    ForkJoinPool pool = new ForkJoinPool(this.threads);
+    try {
+      ArrayList<SolverResult> results = new ArrayList<SolverResult>();
+      for (Level level : levels) {
+        results.add(this.solve(level.board, pool));
+      }
+      return results;
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  // returns a report of solving the given level with 1, 2, 4 and so on threads up to
+  // the given number, one line per thread count with its rate and its speedup over
+  // one thread, to show where adding threads stops paying off
+  public String scalingReport(Level level, int maxThreads) {
+    StringBuilder report = new StringBuilder();
+    double base = 0;
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      SolverResult result = new ParallelSolver(threads, this.maxExpansions, this.tableBits)
+          .solve(level);
+      if (threads == 1) {
+        base = result.nodesPerSecond();
+      }
+      double speedup = 0;
+      if (base > 0) {
+        speedup = result.nodesPerSecond() / base;
+      }
+      report.append(threads).append(" threads: ").append(result.report())
+          .append(String.format(", speedup %.2f", speedup)).append("\n");
+    }
+    return report.toString();
+  }
+}
+
+// represents the compact encoding of the boards reachable from one start board.
+// Walls never move, so only the other tiles are stored, as three bits each: the
+// content of a tile that is not a wall is one of eight codes. A hole can take the
+// ground under it with it when a sliding piece fills it, so every tile that starts
+// with a hole also gets one bit that is set when its ground was cleared. A state of
+// a board with a hundred open tiles takes 38 bytes instead of a Board with its two
+// planes.
+class StateCodec {
+  Board start;
+  // the indices of the tiles that are not walls, and of those that start with a hole
+  int[] open;
+  int[] holes;
+  // the number of bytes of an encoded state
+  int bytes;
+
+  StateCodec(Board start) {
+    this.start = start;
+    int openTiles = 0;
+    int holeTiles = 0;
+    for (int i = 0; i < start.content.length; i += 1) {
+      if (start.content.get(i) != Board.CONTENT_WALL) {
+        openTiles += 1;
+      }
+      if (start.content.get(i) == Board.CONTENT_HOLE) {
+        holeTiles += 1;
+      }
+    }
+    this.open = new int[openTiles];
+    this.holes = new int[holeTiles];
+    openTiles = 0;
+    holeTiles = 0;
+    for (int i = 0; i < start.content.length; i += 1) {
+      if (start.content.get(i) != Board.CONTENT_WALL) {
+        this.open[openTiles] = i;
+        openTiles += 1;
+      }
+      if (start.content.get(i) == Board.CONTENT_HOLE) {
+        this.holes[holeTiles] = i;
+        holeTiles += 1;
+      }
+    }
+    this.bytes = (3 * this.open.length + this.holes.length + 7) / 8;
+  }
+
+  // returns the given board, which must be reachable from the start board, encoded
+  public byte[] encode(Board board) {
+    byte[] state = new byte[this.bytes];
+    int bit = 0;
+    for (int i : this.open) {
+      byte c = board.content.get(i);
+      // every code but the wall's, which is 1, fits in three bits
+      int value = c;
+      if (c != Board.CONTENT_BLANK) {
+        value = c - 1;
+      }
+      for (int k = 0; k < 3; k += 1, bit += 1) {
+        state[bit >>> 3] |= ((value >>> k) & 1) << (bit & 7);
+      }
+    }
+    for (int i : this.holes) {
+      if (board.ground.get(i) != this.start.ground.get(i)) {
+        state[bit >>> 3] |= 1 << (bit & 7);
+      }
+      bit += 1;
+    }
+    return state;
+  }
+
+  // returns the board encoded in the given bytes starting at the given offset
+  public Board decode(byte[] state, int offset) {
+    byte[] ground = this.start.ground.toArray();
+    byte[] content = this.start.content.toArray();
+    int bit = offset * 8;
+    for (int i : this.open) {
+      int value = 0;
+      for (int k = 0; k < 3; k += 1, bit += 1) {
+        value |= ((state[bit >>> 3] >>> (bit & 7)) & 1) << k;
+      }
+      if (value == 0) {
+        content[i] = Board.CONTENT_BLANK;
+      }
+      else {
+        content[i] = (byte) (value + 1);
+      }
+    }
+    for (int i : this.holes) {
+      if (((state[bit >>> 3] >>> (bit & 7)) & 1) == 1) {
+        ground[i] = Board.GROUND_BLANK;
+      }
+      bit += 1;
+    }
+    return new Board(this.start.rows, this.start.cols, ground, content);
+  }
+
+  // returns the board encoded in the given bytes
+  public Board decode(byte[] state) {
+    return this.decode(state, 0);
+  }
+}
+
+// represents a set of encoded states of the same length that stays within a fixed
+// amount of heap. New states go into a hot open-addressing table in the heap; when
+// that fills up, all of its states are moved into a cold open-addressing table in a
+// memory-mapped file, which the operating system pages in and out, and the hot
+// table starts over. A slot of either table is the 64-bit hash of the state, where
+// 0 marks an empty slot, followed by the state itself. The cold table is mapped one
+// segment at a time, when a state first lands in it, so a large table costs nothing
+// until it is used.
+class StateStore implements AutoCloseable {
+  // the most bytes one mapped segment of the cold table spans
+  static final long SEGMENT_BYTES = 1L << 26;
+
+  int width;
+  // the hot table: hotHashes[s] is the hash of the state at hot[s * width]
+  long[] hotHashes;
+  byte[] hot;
+  int hotSize;
+  // the cold table, split into segments of 1 << segmentBits slots each, where a
+  // segment that no state has landed in yet is null
+  Path file;
+  FileChannel channel;
+  MappedByteBuffer[] segments;
+  int segmentBits;
+  long coldCapacity;
+  long coldSize;
+
+  // creates a store for states of the given width with room for hotStates states in
+  // the heap and coldStates states in a new file in the given directory. Both are
+  // rounded up to a power of two, and the file is only written where states land
+  StateStore(int width, int hotStates, long coldStates, Path directory) throws IOException {
+    if (width <= 0 || hotStates <= 0 || coldStates <= 0) {
+      throw new IllegalArgumentException("a state store needs room for states");
+    }
+    this.width = width;
+    int hotCapacity = Integer.highestOneBit(Math.max(2, hotStates * 2 - 1));
+    this.hotHashes = new long[hotCapacity];
+    this.hot = new byte[hotCapacity * width];
+    this.coldCapacity = Long.highestOneBit(Math.max(2, coldStates * 2 - 1));
+    int slotBytes = 8 + width;
+    this.segmentBits = 63 - Long.numberOfLeadingZeros(SEGMENT_BYTES / slotBytes);
+    this.segmentBits = Math.min(this.segmentBits,
+        63 - Long.numberOfLeadingZeros(this.coldCapacity));
+    this.segments = new MappedByteBuffer[(int) (this.coldCapacity >>> this.segmentBits)];
+    this.file = Files.createTempFile(directory, "states", ".bin");
+    this.channel = FileChannel.open(this.file, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  // returns the segment of the cold table with the given index, mapping it first if
+  // no state has landed in it yet
+  MappedByteBuffer segment(int s) {
+    if (this.segments[s] == null) {
+      long bytes = (1L << this.segmentBits) * (8 + this.width);
+      try {
+        this.segments[s] = this.channel.map(FileChannel.MapMode.READ_WRITE, s * bytes, bytes);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return this.segments[s];
+  }
+
+  // returns the number of states in this store
+  public long size() {
+    return this.hotSize + this.coldSize;
+  }
+
+  // returns the hash of the state at the given offset of the given bytes, never 0
+  long hash(byte[] state, int offset) {
+    long h = 0xCBF29CE484222325L;
+    for (int i = offset; i < offset + this.width; i += 1) {
+      h = (h ^ (state[i] & 0xFF)) * 0x100000001B3L;
+    }
+    h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+    h ^= h >>> 29;
+    if (h == 0) {
+      return 1;
+    }
+    return h;
+  }
+
+  // EFFECT: adds the given state to this store
+  // returns true if it was not in the store already
+  public boolean add(byte[] state) {
+    long h = this.hash(state, 0);
+    // the hot table is in the heap, so it is probed before the file
+    int slot = this.hotSlot(h, state, 0);
+    if (slot >= 0 || this.coldSlot(h, state, 0) >= 0) {
+      return false;
+    }
+    if (!this.hasRoom()) {
+      throw new IllegalStateException("the state store is full");
+    }
+    boolean spill = (this.hotSize + 1) * 4 >= this.hotHashes.length * 3;
+    slot = -slot - 1;
+    this.hotHashes[slot] = h;
+    System.arraycopy(state, 0, this.hot, slot * this.width, this.width);
+    this.hotSize += 1;
+    if (spill) {
+      this.spill();
+    }
+    return true;
+  }
+
+  // determines if one more state can be added to this store. The hot table is kept
+  // at most three quarters full, and so is the cold table it spills into
+  public boolean hasRoom() {
+    boolean spill = (this.hotSize + 1) * 4 >= this.hotHashes.length * 3;
+    return !spill || (this.coldSize + this.hotSize + 1) * 4 <= this.coldCapacity * 3;
+  }
+
+  // determines if the given state is in this store
+  public boolean contains(byte[] state) {
+    long h = this.hash(state, 0);
+    return this.hotSlot(h, state, 0) >= 0 || this.coldSlot(h, state, 0) >= 0;
+  }
+
+  // returns the slot of the hot table holding the given state with the given hash,
+  // or -1 - s if it is not there and s is the empty slot where it would go
+  int hotSlot(long h, byte[] state, int offset) {
+    int mask = this.hotHashes.length - 1;
+    for (int slot = (int) h & mask;; slot = (slot + 1) & mask) {
+      if (this.hotHashes[slot] == 0) {
+        return -1 - slot;
+      }
+      if (this.hotHashes[slot] == h
+          && Arrays.equals(this.hot, slot * this.width, (slot + 1) * this.width, state, offset,
+              offset + this.width)) {
+        return slot;
+      }
+    }
+  }
+
+  // returns the slot of the cold table holding the given state with the given hash,
+  // or -1 - s if it is not there and s is the empty slot where it would go
+  long coldSlot(long h, byte[] state, int offset) {
+    long mask = this.coldCapacity - 1;
+    for (long slot = h & mask;; slot = (slot + 1) & mask) {
+      MappedByteBuffer segment = this.segments[(int) (slot >>> this.segmentBits)];
+      if (segment == null) {
+        // nothing has landed in the segment, so the slot is empty
+        return -1 - slot;
+      }
+      int at = (int) (slot & ((1L << this.segmentBits) - 1)) * (8 + this.width);
+      long held = segment.getLong(at);
+      if (held == 0) {
+        return -1 - slot;
+      }
+      if (held == h && this.sameState(segment, at + 8, state, offset)) {
+        return slot;
+      }
+    }
+  }
+
+  // determines if the state stored at the given position of the given segment is the
+  // given state
+  boolean sameState(MappedByteBuffer segment, int at, byte[] state, int offset) {
+    for (int i = 0; i < this.width; i += 1) {
+      if (segment.get(at + i) != state[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // EFFECT: moves every state of the hot table into the cold table
+  void spill() {
+    for (int slot = 0; slot < this.hotHashes.length; slot += 1) {
+      if (this.hotHashes[slot] != 0) {
+        long h = this.hotHashes[slot];
+        long cold = -this.coldSlot(h, this.hot, slot * this.width) - 1;
+        MappedByteBuffer segment = this.segment((int) (cold >>> this.segmentBits));
+        int at = (int) (cold & ((1L << this.segmentBits) - 1)) * (8 + this.width);
+        for (int i = 0; i < this.width; i += 1) {
+          segment.put(at + 8 + i, this.hot[slot * this.width + i]);
+        }
+        segment.putLong(at, h);
+        this.hotHashes[slot] = 0;
+      }
+    }
+    this.coldSize += this.hotSize;
+    this.hotSize = 0;
+  }
+
+  // EFFECT: closes and deletes the file of the cold table
+  public void close() throws IOException {
+    // a mapping cannot be released directly, dropping the buffers lets it go with them
+    this.segments = new MappedByteBuffer[0];
+    this.channel.close();
+    Files.deleteIfExists(this.file);
+  }
+}
+
+// represents a file of encoded states of the same width, written one after another
+// and read back in the same order
+class LayerFile {
+  Path file;
+  int width;
+  long count;
+  DataOutputStream out;
+
+  // creates an empty layer file in the given directory
+  LayerFile(Path directory, int width) throws IOException {
+    this.file = Files.createTempFile(directory, "layer", ".bin");
+    this.width = width;
+    this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.file)));
+  }
+
+  // EFFECT: appends the given state to this file
+  public void write(byte[] state) throws IOException {
+    this.out.write(state);
+    this.count += 1;
+  }
+
+  // EFFECT: finishes writing this file
+  // returns a stream of its states
+  public DataInputStream read() throws IOException {
+    this.out.flush();
+    return new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)));
+  }
+
+  // EFFECT: closes and deletes this file
+  public void delete() throws IOException {
+    this.out.close();
+    Files.deleteIfExists(this.file);
+  }
+}
+
+// finds the shortest sequence of moves that wins a level within a fixed amount of
+// heap. The search goes breadth first like ParallelSolver, but every state is kept
+// only in its compact encoding: each layer is a file of encoded states, and the
+// states seen so far are in a StateStore that spills to a memory-mapped file. No
+// state keeps a link to its parent, so once a winning board is found the moves are
+// rebuilt by finding, in each earlier layer, a state that reaches the next one.
+// Like ParallelSolver, the search gives up with an incomplete result when it has
+// expanded too many states or the store has no room for more.
+class BoundedSolver {
+  Path directory;
+  int hotStates;
+  long coldStates;
+  long maxExpansions;
+
+  BoundedSolver(Path directory, int hotStates, long coldStates, long maxExpansions) {
+    if (maxExpansions <= 0) {
+      throw new IllegalArgumentException("the solver must be able to expand a state");
+    }
+    this.directory = directory;
+    this.hotStates = hotStates;
+    this.coldStates = coldStates;
+    this.maxExpansions = maxExpansions;
+  }
+
+  // creates a solver that expands up to a hundred million states
+  BoundedSolver(Path directory, int hotStates, long coldStates) {
+    this(directory, hotStates, coldStates, 100000000L);
+  }
+
+  // creates a solver that keeps up to a million states in the heap and up to about
+  // sixteen million in a file in the temporary directory
+  BoundedSolver() {
+    this(Paths.get(System.getProperty("java.io.tmpdir")), 1 << 20, 1L << 24);
+  }
+
+  // returns the shortest moves that win the given level
+  public SolverResult solve(Level level) throws IOException {
+    return this.solve(level.board);
+  }
+
+  // returns the shortest moves that win the given board
+  public SolverResult solve(Board start) throws IOException {
+    long began = System.nanoTime();
+    Runtime runtime = Runtime.getRuntime();
+    long peakMemory = runtime.totalMemory() - runtime.freeMemory();
+    Deadlocks deadlocks = new Deadlocks(start);
+    if (start.unsatisfiedTargets() == 0) {
+      return new SolverResult("", true, 0, 1, System.nanoTime() - began, peakMemory);
+    }
+    if (deadlocks.isLost(start)) {
+      return new SolverResult(null, true, 0, 1, System.nanoTime() - began, peakMemory);
+    }
+
+    StateCodec codec = new StateCodec(start);
+    ArrayList<LayerFile> layers = new ArrayList<LayerFile>();
+    long expanded = 0;
+    try (StateStore seen = new StateStore(codec.bytes, this.hotStates, this.coldStates,
+        this.directory)) {
+      byte[] first = codec.encode(start);
+      seen.add(first);
+      layers.add(new LayerFile(this.directory, codec.bytes));
+      layers.get(0).write(first);
+
+      while (layers.get(layers.size() - 1).count > 0) {
+        LayerFile layer = layers.get(layers.size() - 1);
+        LayerFile next = new LayerFile(this.directory, codec.bytes);
+        layers.add(next);
+        byte[] state = new byte[codec.bytes];
+        try (DataInputStream in = layer.read()) {
+          for (long k = 0; k < layer.count; k += 1) {
+            if (expanded == this.maxExpansions) {
+              return new SolverResult(null, false, expanded, seen.size(),
+                  System.nanoTime() - began, peakMemory);
+            }
+            in.readFully(state);
+            Board board = codec.decode(state);
+            expanded += 1;
+            for (int d = 0; d < Solver.MOVES.length(); d += 1) {
+              Board after = board.move(Solver.DY[d], Solver.DX[d]);
+              if (after == board || deadlocks.isLost(board, after)) {
+                continue;
+              }
+              byte[] encoded = codec.encode(after);
+              if (!seen.hasRoom()) {
+                return new SolverResult(null, false, expanded, seen.size(),
+                    System.nanoTime() - began, peakMemory);
+              }
+              if (seen.add(encoded)) {
+                if (after.unsatisfiedTargets() == 0) {
+                  String moves = this.rebuild(codec, layers, layers.size() - 2, state)
+                      + Solver.MOVES.charAt(d);
+                  return new SolverResult(moves, true, expanded, seen.size(),
+                      System.nanoTime() - began, peakMemory);
+                }
+                next.write(encoded);
+              }
+            }
+          }
+        }
+        peakMemory = Math.max(peakMemory, runtime.totalMemory() - runtime.freeMemory());
+      }
+      return new SolverResult(null, true, expanded, seen.size(), System.nanoTime() - began,
+          peakMemory);
+    }
+    finally {
+      for (LayerFile layer : layers) {
+        layer.delete();
+      }
+    }
+  }
+
+  // returns the moves from the start to the given state in the layer with the given
+  // index, by walking back through the earlier layers: a state in the layer before
+  // that reaches the state by one move is its parent, and so on
+  String rebuild(StateCodec codec, ArrayList<LayerFile> layers, int layer, byte[] state)
+      throws IOException {
+    StringBuilder moves = new StringBuilder();
+    byte[] target = state.clone();
+    for (int l = layer - 1; l >= 0; l -= 1) {
+      byte[] parent = new byte[codec.bytes];
+      boolean found = false;
+      try (DataInputStream in = layers.get(l).read()) {
+        for (long k = 0; k < layers.get(l).count && !found; k += 1) {
+          in.readFully(parent);
+          Board board = codec.decode(parent);
+          for (int d = 0; d < Solver.MOVES.length() && !found; d += 1) {
+            if (Arrays.equals(codec.encode(board.move(Solver.DY[d], Solver.DX[d])), target)) {
+              moves.append(Solver.MOVES.charAt(d));
+              found = true;
+            }
+          }
+        }
+      }
+      target = parent;
+    }
+    return moves.reverse().toString();
+  }
+}
+
+class ExamplesSolver {
+
+  // the trophy has to be pushed up twice from below, going around the holes
+  Level aroundHoles = new Level(
+      "_______\n" + "____R__\n" + "_______\n" + "_______\n" + "_______\n" + "_______\n"
+          + "_______\n" + "_______",
+      "WWWWWWW\n" + "W_>___W\n" + "W_h___W\n" + "Wh_hr_W\n" + "W_h___W\n" + "W_____W\n"
+          + "W_____W\n" + "WWWWWWW");
+
+  // one push sends the trophy across the ice onto its target
+  Level acrossIce = new Level("_______\n" + "___IIY_\n" + "_______",
+      "WWWWWWW\n" + "W>y___W\n" + "WWWWWWW");
+
+  // the box has to fill the hole before the player can reach the trophy
+  Level fillTheHole = new Level("________\n" + "______Y_\n" + "________",
+      "WWWWWWWW\n" + "W>Bhy__W\n" + "WWWWWWWW");
+
+  // the only trophy is blue but the only target is yellow
+  Level cannotWin = new Level("______\n" + "____Y_\n" + "______",
+      "WWWWWW\n" + "W>b__W\n" + "WWWWWW");
+
+  Level alreadyWon = new Level("____\n" + "__Y_\n" + "____", "WWWW\n" + "W>yW\n" + "WWWW");
+
+  Solver solver = new Solver();
+
+  boolean testSolveAroundHoles(Tester t) {
+    SolverResult result = this.solver.solve(this.aroundHoles);
+    return t.checkExpect(result.moves.length(), 9)
+        && t.checkExpect(this.solver.play(this.aroundHoles, result.moves).levelWon(), true)
+        && t.checkExpect(result.complete, true)
+        && t.checkExpect(result.expanded > 0, true);
+  }
+
+  boolean testSolveIceAndHoles(Tester t) {
+    return t.checkExpect(this.solver.solve(this.acrossIce).moves, "r")
+        && t.checkExpect(this.solver.solve(this.fillTheHole).moves, "rrrr")
+        && t.checkExpect(this.solver.play(this.fillTheHole, "rrrr").levelWon(), true)
+        // the player must not fall into the hole instead of filling it
+        && t.checkExpect(this.solver.play(this.fillTheHole, "rrr").levelWon(), false);
+  }
+
+  boolean testSolveNoSolution(Tester t) {
+    SolverResult wrongColor = this.solver.solve(this.cannotWin);
+    SolverResult noPlayer = this.solver.solve(new Level("_B\n" + "R_\n" + "__",
+        "W_\n" + "_W\n" + "__"));
+    return t.checkExpect(wrongColor.moves, null)
+        && t.checkExpect(wrongColor.complete, true)
+        && t.checkExpect(wrongColor.solved(), false)
+        && t.checkExpect(noPlayer.moves, null)
+        // neither level is searched at all
+        && t.checkExpect(wrongColor.expanded, 0L)
+        && t.checkExpect(noPlayer.expanded, 0L)
+        && t.checkExpect(this.solver.solve(this.alreadyWon).moves, "")
+        && t.checkExpect(this.solver.solve(this.alreadyWon).expanded, 0L);
+  }
+
+  boolean testSolveLimit(Tester t) {
+    SolverResult result = new Solver(2).solve(this.aroundHoles);
+    return t.checkExpect(result.moves, null)
+        && t.checkExpect(result.complete, false)
+        && t.checkExpect(result.expanded, 2L)
+        && t.checkExpect(result.report().startsWith("gave up (2 expanded"), true)
+        && t.checkConstructorException(
+            new IllegalArgumentException("the solver must be able to expand a state"),
+            "Solver", 0);
+  }
+
+  boolean testSolveAll(Tester t) {
+    ArrayList<Level> pack = new ArrayList<Level>(
+        Arrays.asList(this.acrossIce, this.cannotWin, this.fillTheHole));
+    ArrayList<SolverResult> results = this.solver.solveAll(pack);
+    return t.checkExpect(results.size(), 3)
+        && t.checkExpect(results.get(0).report().startsWith("solved in 1 moves: r"), true)
+        && t.checkExpect(results.get(1).report().startsWith("no solution"), true)
+        && t.checkExpect(results.get(2).moves, "rrrr");
+  }
+
+  boolean testPlay(Tester t) {
+    return t.checkExpect(this.solver.play(this.acrossIce, "").levelWon(), false)
+        && t.checkExpect(this.solver.play(this.acrossIce, "r").levelWon(), true)
+        && t.checkException(new IllegalArgumentException("not a move: x"), this.solver, "play",
+            this.acrossIce, "x");
+  }
+
+  boolean testStateTable(Tester t) {
+    StateTable table = new StateTable(2);
+    return t.checkExpect(table.capacity(), 4)
+        && t.checkExpect(table.add(5L), true)
+        && t.checkExpect(table.add(5L), false)
+        && t.checkExpect(table.add(9L), true)
+        && t.checkExpect(table.add(0L), true)
+        && t.checkExpect(table.add(0L), false)
+        && t.checkExpect(table.contains(9L), true)
+        && t.checkExpect(table.contains(0L), true)
+        && t.checkExpect(table.contains(6L), false)
+        && t.checkConstructorException(
+            new IllegalArgumentException("a state table has between 2 and 2^30 slots"),
+            "StateTable", 0);
+  }
+
+  boolean testStateTableConcurrentAdds(Tester t) {
+    StateTable table = new StateTable(12);
+    AtomicInteger added = new AtomicInteger();
+    // every hash is added twice by whichever threads get to it first, and only one
+    // of the two adds succeeds
+    IntStream.range(0, 4000).parallel().forEach(i -> {
+      if (table.add(Board.zobrist(i / 2, Board.CONTENT_BOX, false))) {
+        added.incrementAndGet();
+      }
+    });
+    return t.checkExpect(added.get(), 2000);
+  }
+
+  boolean testParallelSolve(Tester t) {
+    SolverResult one = new ParallelSolver(1).solve(this.aroundHoles);
+    SolverResult four = new ParallelSolver(4).solve(this.aroundHoles);
+    return t.checkExpect(one.moves.length(), 9)
+        && t.checkExpect(four.moves.length(), 9)
+        && t.checkExpect(this.solver.play(this.aroundHoles, four.moves).levelWon(), true)
+        // breadth first, every thread count expands the same layers
+        && t.checkExpect(one.expanded, four.expanded)
+        && t.checkExpect(new ParallelSolver(2).solve(this.fillTheHole).moves, "rrrr")
+        && t.checkExpect(new ParallelSolver(2).solve(this.acrossIce).moves, "r")
+        && t.checkExpect(new ParallelSolver(2).solve(this.alreadyWon).moves, "")
+        && t.checkExpect(new ParallelSolver(2).solve(this.cannotWin).complete, true)
+        && t.checkExpect(new ParallelSolver(2).solve(this.cannotWin).moves, null);
+  }
+
+  boolean testParallelSolveLimits(Tester t) {
+    SolverResult tooFewExpansions = new ParallelSolver(2, 3, 10).solve(this.aroundHoles);
+    SolverResult tooSmallTable = new ParallelSolver(2, 1000, 2).solve(this.aroundHoles);
+    ArrayList<SolverResult> pack = new ParallelSolver(2).solveAll(
+        new ArrayList<Level>(Arrays.asList(this.acrossIce, this.fillTheHole)));
+    return t.checkExpect(tooFewExpansions.complete, false)
+        && t.checkExpect(tooFewExpansions.expanded <= 3, true)
+        && t.checkExpect(tooSmallTable.complete, false)
+        && t.checkExpect(pack.get(0).moves, "r")
+        && t.checkExpect(pack.get(1).moves, "rrrr")
+        && t.checkConstructorException(
+            new IllegalArgumentException("the solver needs at least one thread"),
+            "ParallelSolver", 0);
+  }
+
+  boolean testScalingReport(Tester t) {
+    String[] lines = new ParallelSolver(4).scalingReport(this.aroundHoles, 4).split("\n");
+    return t.checkExpect(lines.length, 3)
+        && t.checkExpect(lines[0].startsWith("1 threads: solved in 9 moves"), true)
+        && t.checkExpect(lines[1].startsWith("2 threads: solved in 9 moves"), true)
+        && t.checkExpect(lines[2].startsWith("4 threads: solved in 9 moves"), true);
+  }
+
+  boolean testStateCodec(Tester t) {
+    StateCodec codec = new StateCodec(this.aroundHoles.board);
+    Board moved = this.solver.play(this.aroundHoles, "rdrrddlu").board;
+    StateCodec slides = new StateCodec(this.acrossIce.board);
+    Board slid = this.acrossIce.board.move(0, 1);
+    return t.checkExpect(codec.open.length, 30)
+        && t.checkExpect(codec.holes.length, 4)
+        // 30 tiles of three bits and four hole bits
+        && t.checkExpect(codec.bytes, 12)
+        && t.checkExpect(codec.decode(codec.encode(this.aroundHoles.board)),
+            this.aroundHoles.board)
+        && t.checkExpect(codec.decode(codec.encode(moved)), moved)
+        && t.checkExpect(codec.decode(codec.encode(moved)).hash, moved.hash)
+        && t.checkExpect(slides.decode(slides.encode(slid)).unsatisfiedTargets(), 0)
+        && t.checkExpect(Arrays.equals(codec.encode(moved),
+            codec.encode(this.aroundHoles.board)), false);
+  }
+
+  boolean testStateCodecClearedGround(Tester t) {
+    // the trophy slides across the ice into the hole on ice, which clears the ground
+    Level slideIntoHole = new Level("______\n" + "___II_\n" + "______",
+        "WWWWWW\n" + "W>y_hW\n" + "WWWWWW");
+    Board filled = slideIntoHole.board.move(0, 1);
+    StateCodec codec = new StateCodec(slideIntoHole.board);
+    return t.checkExpect(filled.groundAt(1, 4), Board.GROUND_BLANK)
+        && t.checkExpect(codec.decode(codec.encode(filled)), filled);
+  }
+
+  boolean testStateStore(Tester t) throws IOException {
+    Path directory = Files.createTempDirectory("states");
+    boolean passed;
+    // a hot table of two slots spills on every other new state
+    try (StateStore store = new StateStore(3, 1, 64, directory)) {
+      passed = t.checkExpect(store.add(new byte[] { 1, 2, 3 }), true)
+          && t.checkExpect(store.add(new byte[] { 1, 2, 3 }), false)
+          && t.checkExpect(store.coldSize, 0L)
+          // no segment of the cold table is mapped before a state lands in it
+          && t.checkExpect(store.segments[0], null)
+          && t.checkExpect(Files.size(store.file), 0L)
+          && t.checkExpect(store.add(new byte[] { 3, 2, 1 }), true)
+          && t.checkExpect(store.coldSize, 2L)
+          && t.checkExpect(store.segments[0] != null, true)
+          && t.checkExpect(store.add(new byte[] { 1, 2, 3 }), false)
+          && t.checkExpect(store.add(new byte[] { 0, 0, 0 }), true)
+          && t.checkExpect(store.add(new byte[] { 3, 2, 1 }), false)
+          && t.checkExpect(store.contains(new byte[] { 0, 0, 0 }), true)
+          && t.checkExpect(store.contains(new byte[] { 0, 0, 1 }), false)
+          && t.checkExpect(store.size(), 3L);
+    }
+    // the cold table has four slots, of which three can be filled
+    try (StateStore full = new StateStore(1, 1, 4, directory)) {
+      full.add(new byte[] { 1 });
+      full.add(new byte[] { 2 });
+      full.add(new byte[] { 3 });
+      passed = passed
+          && t.checkExpect(full.hasRoom(), false)
+          && t.checkException(new IllegalStateException("the state store is full"), full,
+              "add", new byte[] { 4 })
+          && t.checkExpect(full.contains(new byte[] { 4 }), false)
+          && t.checkExpect(full.size(), 3L);
+    }
+    // closing the stores deleted their files
+    passed = passed && t.checkExpect(Files.list(directory).count(), 0L);
+    Files.delete(directory);
+    return passed
+        && t.checkConstructorException(
+            new IllegalArgumentException("a state store needs room for states"), "StateStore", 0,
+            1, 1L, directory);
+  }
+
+  boolean testBoundedSolve(Tester t) throws IOException {
+    Path directory = Files.createTempDirectory("search");
+    // a hot table of only a few states makes the search spill to the file often
+    BoundedSolver bounded = new BoundedSolver(directory, 4, 1 << 12);
+    SolverResult around = bounded.solve(this.aroundHoles);
+    boolean passed = t.checkExpect(around.moves.length(), 9)
+        && t.checkExpect(this.solver.play(this.aroundHoles, around.moves).levelWon(), true)
+        && t.checkExpect(bounded.solve(this.fillTheHole).moves, "rrrr")
+        && t.checkExpect(bounded.solve(this.acrossIce).moves, "r")
+        && t.checkExpect(bounded.solve(this.alreadyWon).moves, "")
+        && t.checkExpect(bounded.solve(this.cannotWin).complete, true)
+        && t.checkExpect(bounded.solve(this.cannotWin).moves, null)
+        && t.checkExpect(Files.list(directory).count(), 0L);
+    Files.delete(directory);
+    return passed;
+  }
+
+  boolean testBoundedSolveGivesUp(Tester t) throws IOException {
+    Path directory = Files.createTempDirectory("search");
+    // a store of four cold slots fills up long before the level is solved
+    SolverResult full = new BoundedSolver(directory, 1, 4).solve(this.aroundHoles);
+    SolverResult limited = new BoundedSolver(directory, 4, 1 << 12, 3).solve(this.aroundHoles);
+    boolean passed = t.checkExpect(full.complete, false)
+        && t.checkExpect(full.moves, null)
+        && t.checkExpect(full.stored, 3L)
+        && t.checkExpect(limited.complete, false)
+        && t.checkExpect(limited.expanded, 3L)
+        && t.checkExpect(Files.list(directory).count(), 0L)
+        && t.checkConstructorException(
+            new IllegalArgumentException("the solver must be able to expand a state"),
+            "BoundedSolver", directory, 4, 16L, 0L);
+    Files.delete(directory);
+    return passed;
+  }
+}
+
+class ExamplesReachability {
+  ExamplesSolver levels = new ExamplesSolver();
+
+  // a run of ice the player can only slide across
+  Level iceRun = new Level("______\n" + "__II__\n" + "______",
+      "WWWWWW\n" + "W>___W\n" + "WWWWWW");
+
+  boolean testReachableRegion(Tester t) {
+    Board board = this.levels.aroundHoles.board;
+    Reachability reach = new Reachability(board);
+    int canonical = reach.fill(board);
+    return t.checkExpect(canonical, board.index(1, 1))
+        && t.checkExpect(reach.size(), 24)
+        && t.checkExpect(reach.symmetric, true)
+        && t.checkExpect(reach.reachable(board.index(1, 5)), true)
+        && t.checkExpect(reach.reachable(board.player), true)
+        // holes, pieces, walls and tiles cut off by holes are not in the region
+        && t.checkExpect(reach.reachable(board.index(2, 2)), false)
+        && t.checkExpect(reach.reachable(board.index(3, 4)), false)
+        && t.checkExpect(reach.reachable(board.index(0, 0)), false)
+        && t.checkExpect(reach.reachable(board.index(3, 2)), false)
+        && t.checkExpect(reach.reachable(-1), false);
+  }
+
+  boolean testReachableCache(Tester t) {
+    Board board = this.levels.aroundHoles.board;
+    Reachability reach = new Reachability(board);
+    reach.fill(board);
+    // walking keeps the region
+    Board walked = board.move(0, 1).move(0, 1).move(1, 0);
+    int canonical = reach.fill(walked);
+    boolean cached = t.checkExpect(canonical, board.index(1, 1))
+        && t.checkExpect(reach.fills, 1L);
+    // pushing the trophy down changes it
+    Board pushed = walked.move(1, 0);
+    int after = reach.fill(pushed);
+    return cached && t.checkExpect(after, board.index(1, 1))
+        && t.checkExpect(reach.fills, 2L)
+        && t.checkExpect(reach.size(), 24)
+        && t.checkExpect(reach.reachable(board.index(3, 4)), true)
+        && t.checkExpect(reach.reachable(board.index(4, 4)), false);
+  }
+
+  boolean testReachableIce(Tester t) {
+    Board board = this.iceRun.board;
+    Reachability reach = new Reachability(board);
+    int canonical = reach.fill(board);
+    boolean region = t.checkExpect(canonical, board.index(1, 1))
+        && t.checkExpect(reach.size(), 2)
+        && t.checkExpect(reach.symmetric, false)
+        // the player can never stop on the ice
+        && t.checkExpect(reach.reachable(board.index(1, 2)), false)
+        && t.checkExpect(reach.reachable(board.index(1, 4)), true);
+    // with ice in the region, a fill from another tile of it is made again
+    reach.fill(board.move(0, 1));
+    Board pushOnly = this.levels.acrossIce.board;
+    Reachability stuck = new Reachability(pushOnly);
+    return region && t.checkExpect(reach.fills, 2L)
+        && t.checkExpect(stuck.fill(pushOnly), pushOnly.player)
+        && t.checkExpect(stuck.size(), 1);
+  }
+
+  boolean testPathTo(Tester t) {
+    Board board = this.levels.aroundHoles.board;
+    Reachability reach = new Reachability(board);
+    String path = reach.pathTo(board, board.index(6, 5));
+    Board walked = board;
+    for (int i = 0; i < path.length(); i += 1) {
+      int d = Solver.MOVES.indexOf(path.charAt(i));
+      walked = walked.move(Solver.DY[d], Solver.DX[d]);
+    }
+    Board ice = this.iceRun.board;
+    Reachability onIce = new Reachability(ice);
+    return t.checkExpect(path.length(), 8)
+        && t.checkExpect(walked.player, board.index(6, 5))
+        && t.checkExpect(walked.content.diff(board.content).length, 2)
+        && t.checkExpect(reach.pathTo(board, board.player), "")
+        && t.checkExpect(reach.pathTo(board, board.index(3, 2)), null)
+        && t.checkExpect(onIce.pathTo(ice, ice.index(1, 4)), "r")
+        && t.checkExpect(onIce.pathTo(ice.move(0, 1), ice.index(1, 1)), "l")
+        && t.checkExpect(onIce.pathTo(ice, ice.index(1, 3)), null);
+  }
+
+  boolean testReachableErrors(Tester t) {
+    Board noPlayer = new ExamplesSokoban().noPlayer.board;
+    Reachability reach = new Reachability(noPlayer);
+    return t.checkExpect(reach.fill(noPlayer), -1)
+        && t.checkExpect(reach.size(), 0)
+        && t.checkExpect(reach.pathTo(noPlayer, 0), null)
+        && t.checkException(
+            new IllegalArgumentException("the board does not have the dimensions of the fill"),
+            reach, "fill", this.levels.aroundHoles.board);
+  }
+}